@@ -0,0 +1,56 @@
+package dev.riss.jdbc.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.h2.tools.Server;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+
+/**
+ * 벤치마크용 임베디드 H2
+ * 같은 JVM 안에서 H2 tcp 서버를 띄워서 ConnectionConst.URL(jdbc:h2:tcp://localhost/~/test) 이 그대로 동작하게 함
+ * => DBConnectionUtil(DriverManager) 을 쓰는 V0 도 다른 버전과 같은 DB 에 붙어서 비교 가능
+ * 이미 H2 서버가 떠 있으면(포트 사용중) 그 서버를 그대로 사용
+ */
+public class H2Fixture implements AutoCloseable {
+
+    private final Server server;
+    private final HikariDataSource dataSource;
+
+    public H2Fixture(int maximumPoolSize) {
+        this.server = startServer();
+        this.dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setPoolName("BenchmarkPool");
+
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+    }
+
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+        if (null != server) server.stop();
+    }
+
+    private static Server startServer() {
+        try {
+            // -ifNotExists: 원격(tcp)으로 붙을 때도 ~/test DB 가 없으면 생성
+            return Server.createTcpServer("-tcpPort", "9092", "-ifNotExists").start();
+        } catch (SQLException e) {
+            // 이미 로컬에 H2 서버가 떠 있는 경우 (포트 충돌) -> 그 서버 사용
+            return null;
+        }
+    }
+
+}
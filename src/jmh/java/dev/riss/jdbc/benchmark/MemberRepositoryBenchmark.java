@@ -0,0 +1,188 @@
+package dev.riss.jdbc.benchmark;
+
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MemberRepositoryV0 ~ V5 의 CRUD 비용 비교
+ * - Throughput: 초당 처리량, AverageTime: 평균 지연, SampleTime: p50/p90/p99... 지연 분포
+ * - 할당량은 build.gradle 의 jmh { profilers = ['gc'] } 로 측정 (gc.alloc.rate.norm = 연산 당 할당 byte)
+ *
+ * V0 는 DBConnectionUtil(DriverManager) 로 매번 새 커넥션을 맺고, 나머지는 같은 HikariDataSource 를 공유함
+ * 실행: ./gradlew jmh -Pjmh.includes=MemberRepositoryBenchmark
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemberRepositoryBenchmark {
+
+    // member_id 는 VARCHAR(10) 이므로 "jmh" + 쓰레드(1자리) + 카운터(6자리, 36진수) 로 10자 이내 유지
+    static final String ID_PREFIX = "jmh";
+
+    /**
+     * 버전마다 메서드 시그니처(체크 예외 여부, 인터페이스)가 달라서 벤치마크용으로 맞춰주는 어댑터
+     */
+    interface Crud {
+        void save(Member member) throws Exception;
+        Member findById(String memberId) throws Exception;
+        void update(String memberId, int money) throws Exception;
+        void delete(String memberId) throws Exception;
+    }
+
+    @State(Scope.Benchmark)
+    public static class RepositoryState {
+
+        @Param({"V0", "V1", "V2", "V3", "V4_1", "V4_2", "V5"})
+        String version;
+
+        H2Fixture fixture;
+        Crud crud;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fixture = new H2Fixture(10);
+            cleanUp();      // 이전 실행이 비정상 종료돼서 남은 row 정리
+            crud = create(version, fixture.dataSource());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            cleanUp();
+            fixture.close();
+        }
+
+        private void cleanUp() {
+            new JdbcTemplate(fixture.dataSource()).update("DELETE FROM member WHERE member_id LIKE ?", ID_PREFIX + "%");
+        }
+
+        private static Crud create(String version, DataSource dataSource) {
+            switch (version) {
+                case "V0": {
+                    MemberRepositoryV0 repository = new MemberRepositoryV0();
+                    return crud(repository::save, repository::findById, repository::update, repository::delete);
+                }
+                case "V1": {
+                    MemberRepositoryV1 repository = new MemberRepositoryV1(dataSource);
+                    return crud(repository::save, repository::findById, repository::update, repository::delete);
+                }
+                case "V2": {
+                    MemberRepositoryV2 repository = new MemberRepositoryV2(dataSource);
+                    return crud(repository::save, repository::findById, repository::update, repository::delete);
+                }
+                case "V3": {
+                    MemberRepositoryEx repository = new MemberRepositoryV3(dataSource);
+                    return crud(repository::save, repository::findById, repository::update, repository::delete);
+                }
+                case "V4_1":
+                    return crud(new MemberRepositoryV4_1(dataSource));
+                case "V4_2":
+                    return crud(new MemberRepositoryV4_2(dataSource));
+                case "V5":
+                    return crud(new MemberRepositoryV5(dataSource));
+                default:
+                    throw new IllegalArgumentException("unknown version=" + version);
+            }
+        }
+
+        private static Crud crud(MemberRepository repository) {
+            return crud(repository::save, repository::findById, repository::update, repository::delete);
+        }
+
+        private static Crud crud(SaveOp save, FindOp find, UpdateOp update, DeleteOp delete) {
+            return new Crud() {
+                @Override
+                public void save(Member member) throws Exception {
+                    save.save(member);
+                }
+
+                @Override
+                public Member findById(String memberId) throws Exception {
+                    return find.findById(memberId);
+                }
+
+                @Override
+                public void update(String memberId, int money) throws Exception {
+                    update.update(memberId, money);
+                }
+
+                @Override
+                public void delete(String memberId) throws Exception {
+                    delete.delete(memberId);
+                }
+            };
+        }
+
+        interface SaveOp { Object save(Member member) throws Exception; }
+        interface FindOp { Member findById(String memberId) throws Exception; }
+        interface UpdateOp { void update(String memberId, int money) throws Exception; }
+        interface DeleteOp { void delete(String memberId) throws Exception; }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadIds {
+
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        String threadPrefix;
+        String seedId;      // findById, update 대상 (쓰레드마다 하나씩)
+        int sequence;
+        int money;
+
+        @Setup(Level.Trial)
+        public void setUp(RepositoryState state) throws Exception {
+            threadPrefix = ID_PREFIX + Character.forDigit(THREADS.getAndIncrement() % 36, 36);
+            seedId = threadPrefix + "seed";
+            state.crud.save(new Member(seedId, 10000));
+        }
+
+        String nextId() {
+            return threadPrefix + Integer.toString(sequence++, 36);
+        }
+    }
+
+    /**
+     * delete 는 지울 row 가 있어야 의미가 있으므로 호출마다 row 를 먼저 넣어둠 (측정 시간에는 포함되지 않음)
+     */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+
+        String memberId;
+
+        @Setup(Level.Invocation)
+        public void setUp(RepositoryState state, ThreadIds ids) throws Exception {
+            memberId = ids.nextId();
+            state.crud.save(new Member(memberId, 0));
+        }
+    }
+
+    @Benchmark
+    public Member save(RepositoryState state, ThreadIds ids) throws Exception {
+        Member member = new Member(ids.nextId(), 10000);
+        state.crud.save(member);
+        return member;
+    }
+
+    @Benchmark
+    public Member findById(RepositoryState state, ThreadIds ids) throws Exception {
+        return state.crud.findById(ids.seedId);
+    }
+
+    @Benchmark
+    public void update(RepositoryState state, ThreadIds ids) throws Exception {
+        state.crud.update(ids.seedId, ids.money++);
+    }
+
+    @Benchmark
+    public void delete(RepositoryState state, DeleteTarget target) throws Exception {
+        state.crud.delete(target.memberId);
+    }
+
+}
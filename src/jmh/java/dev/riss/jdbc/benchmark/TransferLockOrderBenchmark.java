@@ -0,0 +1,101 @@
+package dev.riss.jdbc.benchmark;
+
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 비관적 락 이체의 락 순서 비교 (적은 수의 회원 사이에서 양방향 이체를 동시에 많이)
+ * - requestOrder: from, to 순서대로 findByIdForUpdate -> A->B 와 B->A 가 엇갈리면 데드락 (H2 가 감지하거나 락 대기 시간 초과)
+ * - sorted: lockAll 로 member_id 순서대로 잠금 (MemberServiceV4.accountTransferPessimistic 방식) -> 데드락 없음
+ *
+ * 데드락/락 타임아웃 횟수는 @AuxCounters 로 같이 출력됨 (sorted 는 0 이어야 함)
+ * 실행: ./gradlew jmh -Pjmh.includes=TransferLockOrderBenchmark
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class TransferLockOrderBenchmark {
+
+    static final String ID_PREFIX = "jmhlock";
+    static final int MEMBER_COUNT = 4;
+
+    @State(Scope.Benchmark)
+    public static class TransferState {
+
+        @Param({"requestOrder", "sorted"})
+        String lockOrder;
+
+        H2Fixture fixture;
+        MemberRepository repository;
+        TransactionTemplate txTemplate;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fixture = new H2Fixture(20);
+            cleanUp();
+            repository = new MemberRepositoryV5(fixture.dataSource());
+            txTemplate = new TransactionTemplate(new DataSourceTransactionManager(fixture.dataSource()));
+            for (int i = 0; i < MEMBER_COUNT; i++) repository.save(new Member(ID_PREFIX + i, 1_000_000));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            cleanUp();
+            fixture.close();
+        }
+
+        private void cleanUp() {
+            new JdbcTemplate(fixture.dataSource()).update("DELETE FROM member WHERE member_id LIKE ?", ID_PREFIX + "%");
+        }
+
+        void transfer(String fromId, String toId, int money) {
+            txTemplate.executeWithoutResult(status -> {
+                Member fromMember;
+                Member toMember;
+                if ("sorted".equals(lockOrder)) {
+                    Map<String, Member> members = repository.lockAll(List.of(fromId, toId));
+                    fromMember = members.get(fromId);
+                    toMember = members.get(toId);
+                } else {
+                    fromMember = repository.findByIdForUpdate(fromId);
+                    toMember = repository.findByIdForUpdate(toId);
+                }
+                repository.update(fromId, fromMember.getMoney() - money);
+                repository.update(toId, toMember.getMoney() + money);
+            });
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class LockFailures {
+        public long deadlocks;
+    }
+
+    @Benchmark
+    public void transfer(TransferState state, LockFailures failures) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(MEMBER_COUNT);
+        int to = (from + 1 + random.nextInt(MEMBER_COUNT - 1)) % MEMBER_COUNT;
+        try {
+            state.transfer(ID_PREFIX + from, ID_PREFIX + to, 1);
+        } catch (PessimisticLockingFailureException e) {
+            failures.deadlocks++;       // 데드락 감지, 락 대기 시간 초과 (롤백됨)
+        }
+    }
+
+}
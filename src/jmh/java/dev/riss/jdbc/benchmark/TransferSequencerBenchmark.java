@@ -0,0 +1,124 @@
+package dev.riss.jdbc.benchmark;
+
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import dev.riss.jdbc.repository.TransferDeadLetterRepository;
+import dev.riss.jdbc.sevice.MemberServiceV4;
+import dev.riss.jdbc.sevice.ShardedTransferSequencer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 인기 계좌가 몰리는(Zipf 분포) 이체 처리량 비교
+ * - serviceV4: 요청 쓰레드마다 트랜잭션으로 MemberServiceV4.accountTransferByDelta (인기 계좌 row 락에서 대기, 반대 방향 이체끼리 데드락 가능)
+ * - sequencer: ShardedTransferSequencer 로 넘기고 완료까지 대기 (계좌마다 한 쓰레드만 변경)
+ *
+ * 실패한 이체(데드락, 락 타임아웃 등) 수는 @AuxCounters 로 같이 출력
+ * 실행: ./gradlew jmh -Pjmh.includes=TransferSequencerBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class TransferSequencerBenchmark {
+
+    static final String ID_PREFIX = "jmhseq";
+    static final int ACCOUNT_COUNT = 1000;
+
+    @State(Scope.Benchmark)
+    public static class TransferState {
+
+        @Param({"serviceV4", "sequencer"})
+        String mode;
+
+        @Param({"0.99"})
+        double zipfExponent;
+
+        @Param({"8"})
+        int lanes;
+
+        H2Fixture fixture;
+        List<String> accounts;
+        ZipfianGenerator zipf;
+
+        TransactionTemplate txTemplate;
+        MemberServiceV4 memberService;
+        ShardedTransferSequencer sequencer;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            fixture = new H2Fixture(20);
+            cleanUp();
+
+            MemberRepository repository = new MemberRepositoryV5(fixture.dataSource());
+            accounts = new ArrayList<>(ACCOUNT_COUNT);
+            List<Member> members = new ArrayList<>(ACCOUNT_COUNT);
+            for (int i = 0; i < ACCOUNT_COUNT; i++) {
+                String memberId = ID_PREFIX + i;
+                accounts.add(memberId);
+                members.add(new Member(memberId, 1_000_000_000));
+            }
+            repository.saveAll(members);
+            zipf = new ZipfianGenerator(ACCOUNT_COUNT, zipfExponent);
+
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(fixture.dataSource());
+            if ("sequencer".equals(mode)) {
+                sequencer = new ShardedTransferSequencer(transactionManager, repository,
+                        new TransferDeadLetterRepository(fixture.dataSource()), lanes, 1024);
+            } else {
+                // @Transactional 프록시가 없으므로 TransactionTemplate 으로 감싸서 호출
+                txTemplate = new TransactionTemplate(transactionManager);
+                memberService = new MemberServiceV4(repository);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (null != sequencer) sequencer.close();
+            cleanUp();
+            fixture.close();
+        }
+
+        private void cleanUp() {
+            new JdbcTemplate(fixture.dataSource()).update("DELETE FROM member WHERE member_id LIKE ?", ID_PREFIX + "%");
+        }
+
+        void transfer(String fromId, String toId) {
+            if (null != sequencer) {
+                sequencer.submit(fromId, toId, 1).join();
+            } else {
+                txTemplate.executeWithoutResult(status -> memberService.accountTransferByDelta(fromId, toId, 1));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+        public long failed;
+    }
+
+    @Benchmark
+    public void transfer(TransferState state, Failures failures) {
+        int from = state.zipf.next();
+        int to = state.zipf.next();
+        if (from == to) to = (to + 1) % ACCOUNT_COUNT;
+        try {
+            state.transfer(state.accounts.get(from), state.accounts.get(to));
+        } catch (CompletionException | DataAccessException e) {
+            failures.failed++;
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package dev.riss.jdbc.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 0 ~ n-1 중 하나를 Zipf 분포로 뽑음 (작은 번호일수록 자주, P(k) ∝ 1 / (k+1)^s)
+ * 누적 분포를 미리 계산해두고 이분 탐색 -> 뽑을 때 할당 없음
+ */
+class ZipfianGenerator {
+
+    private final double[] cumulative;
+
+    ZipfianGenerator(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) cumulative[k] /= sum;
+    }
+
+    int next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        int index = Arrays.binarySearch(cumulative, u);
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+}
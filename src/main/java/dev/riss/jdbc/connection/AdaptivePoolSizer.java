@@ -0,0 +1,183 @@
+package dev.riss.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * 풀 최대 크기 자동 조정기 - InstrumentedDataSource 의 측정값으로 interval 마다 풀 크기를 [minSize, maxSize] 안에서 조정
+ *
+ * 풀이 너무 크면 H2 서버가 동시 쿼리를 감당 못해서 쿼리마다 느려지고(커넥션을 오래 잡음), 너무 작으면 요청이 빌리기에서 줄을 섬
+ * -> 그 사이의 적당한 크기(knee)를 측정값으로 찾아감
+ *
+ * 매 구간(이전 스냅샷과의 차이)마다
+ * - 리틀의 법칙: 필요한 커넥션 수 ≈ 처리량(빌리기/초) × 평균 사용 시간 -> littleTarget (여유 HEADROOM 배)
+ * - 기울기(gradient): 부하가 없을 때의 사용 시간(baseline, 관측된 최소 p50) / 지금 사용 시간 p50
+ *   1 에 가까우면 DB 가 여유 있음, 작아지면 동시 커넥션이 많아서 DB 가 느려지는 중
+ *
+ * 결정
+ * - 기울기가 SATURATED 미만 (DB 과부하): 기울기 비율만큼 줄임 (최대 절반)
+ * - 빌리기 대기 p99 가 waitTarget 초과 + DB 여유: 늘림 (littleTarget 까지, 한 번에 최소 1 최대 25%)
+ * - 대기가 없고 littleTarget 이 지금보다 작음: 1 씩 줄임
+ * - 그 외 유지. 표본이 MIN_SAMPLES 미만인 구간은 판단하지 않음
+ * 모든 결정은 로그로 남기고(크기가 바뀌면 info, 유지는 debug) lastDecision() 으로 확인 가능
+ *
+ * baseline 은 관측된 최소값을 쓰되 구간마다 조금씩(BASELINE_DRIFT) 올려서, 쿼리 자체가 바뀐 경우도 따라감
+ */
+@Slf4j
+public class AdaptivePoolSizer implements AutoCloseable {
+
+    private static final double HEADROOM = 1.2;
+    private static final double SATURATED = 0.8;
+    private static final double HEALTHY = 0.9;
+    private static final double BASELINE_DRIFT = 1.02;
+    private static final long MIN_SAMPLES = 20;
+
+    private final InstrumentedDataSource metrics;
+    private final IntSupplier currentSize;
+    private final IntConsumer resize;
+    private final int minSize;
+    private final int maxSize;
+    private final long waitTargetNanos;
+    private final ScheduledExecutorService scheduler;
+
+    private PoolMetricsSnapshot previous;
+    private long previousAt;
+    private double baselineHeldNanos = Double.MAX_VALUE;
+    private volatile Decision lastDecision;
+
+    /**
+     * interval 이 null 이면 스케줄하지 않음 (adjust() 를 직접 호출)
+     */
+    public AdaptivePoolSizer(InstrumentedDataSource metrics, IntSupplier currentSize, IntConsumer resize,
+                             int minSize, int maxSize, Duration waitTarget, Duration interval) {
+        if (minSize <= 0 || maxSize < minSize) throw new IllegalArgumentException("invalid bounds minSize=" + minSize + ", maxSize=" + maxSize);
+        this.metrics = metrics;
+        this.currentSize = currentSize;
+        this.resize = resize;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.waitTargetNanos = waitTarget.toNanos();
+        this.previous = metrics.snapshot();
+        this.previousAt = System.nanoTime();
+
+        if (null == interval) {
+            this.scheduler = null;
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "adaptive-pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::adjustQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public static AdaptivePoolSizer forHikari(InstrumentedDataSource metrics, HikariDataSource pool,
+                                              int minSize, int maxSize, Duration waitTarget, Duration interval) {
+        return new AdaptivePoolSizer(metrics, pool::getMaximumPoolSize,
+                size -> pool.getHikariConfigMXBean().setMaximumPoolSize(size), minSize, maxSize, waitTarget, interval);
+    }
+
+    public static AdaptivePoolSizer forRissPool(InstrumentedDataSource metrics, RissConnectionPool pool,
+                                                int minSize, int maxSize, Duration waitTarget, Duration interval) {
+        return new AdaptivePoolSizer(metrics, pool::getMaximumPoolSize, pool::setMaximumPoolSize,
+                minSize, maxSize, waitTarget, interval);
+    }
+
+    /**
+     * 직전 호출 이후 구간의 측정값으로 한 번 조정하고 결정을 반환 (표본이 부족하면 null)
+     */
+    public synchronized Decision adjust() {
+        PoolMetricsSnapshot now = metrics.snapshot();
+        long nowAt = System.nanoTime();
+        HistogramSnapshot held = now.getHeld().minus(previous.getHeld());
+        HistogramSnapshot wait = now.getBorrowWait().minus(previous.getBorrowWait());
+        long timeouts = now.getTimeoutCount() - previous.getTimeoutCount();
+        double seconds = (nowAt - previousAt) / 1_000_000_000.0;
+        previous = now;
+        previousAt = nowAt;
+
+        if (held.getCount() < MIN_SAMPLES) {
+            log.debug("pool sizer skipped, samples={}", held.getCount());
+            return null;
+        }
+
+        double throughput = held.getCount() / seconds;
+        double heldMeanNanos = held.getMean();
+        long heldP50 = Math.max(1, held.valueAtPercentile(50));
+        long waitP99 = wait.valueAtPercentile(99);
+
+        baselineHeldNanos = Math.min(heldP50, baselineHeldNanos * BASELINE_DRIFT);
+        double gradient = Math.min(1.0, baselineHeldNanos / heldP50);
+        int littleTarget = (int) Math.ceil(throughput * heldMeanNanos / 1_000_000_000.0 * HEADROOM);
+
+        int current = currentSize.getAsInt();
+        int target;
+        String reason;
+        if (gradient < SATURATED) {
+            target = (int) Math.floor(current * Math.max(0.5, gradient));
+            reason = "database saturated";
+        } else if ((waitP99 > waitTargetNanos || 0 < timeouts) && gradient >= HEALTHY) {
+            int step = Math.max(1, current / 4);
+            target = Math.min(current + step, Math.max(current + 1, littleTarget));
+            reason = "borrowers waiting";
+        } else if (waitP99 <= waitTargetNanos && littleTarget < current) {
+            target = current - 1;
+            reason = "oversized";
+        } else {
+            target = current;
+            reason = "steady";
+        }
+        target = Math.max(minSize, Math.min(maxSize, target));
+
+        Decision decision = new Decision(current, target, reason, throughput, heldMeanNanos / 1_000_000.0,
+                waitP99 / 1_000_000.0, gradient, littleTarget);
+        lastDecision = decision;
+        if (target != current) {
+            resize.accept(target);
+            log.info("pool resize {}", decision);
+        } else {
+            log.debug("pool keep {}", decision);
+        }
+        return decision;
+    }
+
+    public Decision lastDecision() {
+        return lastDecision;
+    }
+
+    private void adjustQuietly() {
+        try {
+            adjust();
+        } catch (RuntimeException e) {
+            log.error("pool sizer failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (null != scheduler) scheduler.shutdownNow();
+    }
+
+    /**
+     * 조정 한 번의 근거 (시간은 밀리초, 처리량은 빌리기/초)
+     */
+    public record Decision(int previousSize, int newSize, String reason, double throughput, double heldMeanMillis,
+                           double borrowWaitP99Millis, double gradient, int littleTarget) {
+
+        @Override
+        public String toString() {
+            return String.format("%d -> %d (%s) throughput=%.0f/s heldMean=%.2fms waitP99=%.2fms gradient=%.2f littleTarget=%d",
+                    previousSize, newSize, reason, throughput, heldMeanMillis, borrowWaitP99Millis, gradient, littleTarget);
+        }
+    }
+
+}
@@ -11,9 +11,15 @@ import static dev.riss.jdbc.connection.ConnectionConst.*;
 @Slf4j
 public class DBConnectionUtil {
 
+    // null 이면 DriverManager 로 매번 새 커넥션, 있으면 풀에서 빌려줌 (close 하면 반납)
+    private static volatile RissConnectionPool pool;
+
     public static Connection getConnection () {
         try {
-            Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+            RissConnectionPool current = pool;
+            Connection connection = null == current
+                    ? DriverManager.getConnection(URL, USERNAME, PASSWORD)
+                    : current.getConnection();
             log.info("get connection={}, class={}", connection, connection.getClass());
             return connection;
         } catch (SQLException e) {
@@ -21,4 +27,23 @@ public class DBConnectionUtil {
         }
     }
 
+    /**
+     * 이후 getConnection 은 풀의 커넥션을 줌 -> 쓰는 쪽(MemberRepositoryV0 등)은 그대로 close 만 하면 반납됨
+     */
+    public static synchronized void enablePooling (int maximumPoolSize) {
+        if (null != pool) return;
+        pool = new RissConnectionPool("RissPool", URL, USERNAME, PASSWORD, maximumPoolSize);
+    }
+
+    public static synchronized void disablePooling () {
+        RissConnectionPool current = pool;
+        pool = null;
+        if (null != current) current.close();
+    }
+
+    // 풀 상태 확인용 (풀을 안 쓰면 null)
+    public static RissConnectionPool pool () {
+        return pool;
+    }
+
 }
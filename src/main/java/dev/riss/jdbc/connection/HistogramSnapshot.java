@@ -0,0 +1,70 @@
+package dev.riss.jdbc.connection;
+
+/**
+ * Histogram 의 한 시점 복사본 - 백분위, 평균, 최대값 계산
+ * minus 로 두 시점의 차이(그 사이에 기록된 값만)를 구할 수 있음 -> 최근 구간 통계
+ */
+public class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long sum, long max) {
+        this.counts = counts;
+        long total = 0;
+        for (long c : counts) total += c;
+        this.count = total;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return 0 == count ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * percentile(0 ~ 100) 위치의 값 (칸의 상한값, 최대값을 넘지 않음). 기록이 없으면 0
+     */
+    public long valueAtPercentile(double percentile) {
+        if (0 == count) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(Histogram.highestValueAt(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * previous 이후에 기록된 값만의 분포 (최대값은 구간 최대를 알 수 없어서 칸 상한으로 근사)
+     */
+    public HistogramSnapshot minus(HistogramSnapshot previous) {
+        long[] diff = new long[counts.length];
+        int highest = -1;
+        for (int i = 0; i < counts.length; i++) {
+            diff[i] = counts[i] - previous.counts[i];
+            if (0 < diff[i]) highest = i;
+        }
+        long intervalMax = highest < 0 ? 0 : Math.min(Histogram.highestValueAt(highest), max);
+        return new HistogramSnapshot(diff, sum - previous.sum, intervalMax);
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot(count=" + count + ", mean=" + String.format("%.1f", getMean())
+                + ", p50=" + valueAtPercentile(50) + ", p99=" + valueAtPercentile(99)
+                + ", p999=" + valueAtPercentile(99.9) + ", max=" + max + ")";
+    }
+
+}
@@ -0,0 +1,314 @@
+package dev.riss.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 커넥션 풀 계측 DataSource - 풀(HikariDataSource, RissConnectionPool 등)을 감싸서 사용
+ *
+ * 풀이 바닥나면 getConnection 이 connectionTimeout(히카리 기본 30초) 동안 그냥 멈춰 있다가 예외가 남 -> 그 전에는 아무것도 안 보임
+ * -> 빌릴 때 기다린 시간, 빌려서 쓴 시간, 빌리는 시점의 사용 중/대기 수를 히스토그램(Histogram)으로 기록
+ *
+ * - 호출자별 기록: 빌리는 시점의 스택에서 애플리케이션 패키지(dev.riss.jdbc, 이 connection 패키지 제외)의 첫 메서드
+ *   ex. JdbcTemplate 을 거쳐도 "MemberRepositoryV5.findById", 트랜잭션 시작이면 서비스 메서드
+ *   스택을 훑는 비용이 있으므로 attributeCallers = false 로 끌 수 있음. 서로 다른 호출자는 MAX_CALLERS 개까지 (넘으면 "other")
+ * - 조회: snapshot() (PoolMetricsSnapshot) 또는 registerMBean 후 JMX
+ * - 기다린 시간이 slowBorrowThreshold 를 넘으면 경고 로그 (고갈 조짐)
+ */
+@Slf4j
+public class InstrumentedDataSource extends DelegatingDataSource implements InstrumentedDataSourceMXBean {
+
+    private static final String CONNECTION_PACKAGE = InstrumentedDataSource.class.getPackageName() + ".";
+    private static final String APPLICATION_PACKAGE =
+            CONNECTION_PACKAGE.substring(0, CONNECTION_PACKAGE.lastIndexOf('.', CONNECTION_PACKAGE.length() - 2) + 1);
+    private static final String UNKNOWN_CALLER = "unknown";
+    private static final String OTHER_CALLER = "other";
+    private static final int MAX_CALLERS = 64;
+
+    private final boolean attributeCallers;
+    private volatile long slowBorrowThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+
+    private final Histogram borrowWait = new Histogram();
+    private final Histogram held = new Histogram();
+    private final Histogram activeAtBorrow = new Histogram();
+    private final Histogram waitingAtBorrow = new Histogram();
+    private final Map<String, CallerHistograms> callers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAccumulator waitingMax = new LongAccumulator(Math::max, 0);
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    private volatile ObjectName objectName;
+
+    public InstrumentedDataSource(DataSource targetDataSource) {
+        this(targetDataSource, true);
+    }
+
+    public InstrumentedDataSource(DataSource targetDataSource, boolean attributeCallers) {
+        super(targetDataSource);
+        this.attributeCallers = attributeCallers;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return instrument(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return instrument(username, password);
+    }
+
+    public void setSlowBorrowThresholdMillis(long millis) {
+        this.slowBorrowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * 플랫폼 MBeanServer 에 dev.riss.jdbc:type=InstrumentedDataSource,name={name} 으로 등록
+     */
+    public void registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("dev.riss.jdbc:type=InstrumentedDataSource,name=" + name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("failed to register mbean name=" + name, e);
+        }
+    }
+
+    public void unregisterMBean() {
+        ObjectName current = objectName;
+        if (null == current) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(current);
+            objectName = null;
+        } catch (JMException e) {
+            log.warn("failed to unregister mbean {}", current, e);
+        }
+    }
+
+    public PoolMetricsSnapshot snapshot() {
+        Map<String, PoolMetricsSnapshot.CallerMetrics> callerMetrics = new TreeMap<>();
+        callers.forEach((caller, histograms) -> callerMetrics.put(caller,
+                new PoolMetricsSnapshot.CallerMetrics(histograms.borrowWait.snapshot(), histograms.held.snapshot())));
+        return new PoolMetricsSnapshot(borrows.sum(), timeouts.sum(), active.get(), getIdleConnections(), waiting.get(),
+                borrowWait.snapshot(), held.snapshot(), activeAtBorrow.snapshot(), waitingAtBorrow.snapshot(), callerMetrics);
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return active.get();
+    }
+
+    /**
+     * 감싼 풀이 알려주는 쉬는 커넥션 수 (HikariDataSource, RissConnectionPool 이 아니면 -1)
+     */
+    @Override
+    public int getIdleConnections() {
+        DataSource target = obtainTargetDataSource();
+        try {
+            if (target.isWrapperFor(RissConnectionPool.class)) {
+                return target.unwrap(RissConnectionPool.class).getIdleConnections();
+            }
+            if (target.isWrapperFor(HikariDataSource.class)) {
+                HikariPoolMXBean pool = target.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                return null == pool ? 0 : pool.getIdleConnections();
+            }
+        } catch (SQLException e) {
+            log.debug("idle connections unavailable", e);
+        }
+        return -1;
+    }
+
+    @Override
+    public int getWaitingThreads() {
+        return waiting.get();
+    }
+
+    @Override
+    public long getWaitingThreadsMax() {
+        return waitingMax.get();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return borrows.sum();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public double getBorrowWaitMeanMillis() {
+        return borrowWait.snapshot().getMean() / 1_000_000.0;
+    }
+
+    @Override
+    public double getBorrowWaitP99Millis() {
+        return borrowWait.snapshot().valueAtPercentile(99) / 1_000_000.0;
+    }
+
+    @Override
+    public double getBorrowWaitMaxMillis() {
+        return borrowWait.snapshot().getMax() / 1_000_000.0;
+    }
+
+    @Override
+    public double getHeldMeanMillis() {
+        return held.snapshot().getMean() / 1_000_000.0;
+    }
+
+    @Override
+    public double getHeldP99Millis() {
+        return held.snapshot().valueAtPercentile(99) / 1_000_000.0;
+    }
+
+    @Override
+    public double getHeldMaxMillis() {
+        return held.snapshot().getMax() / 1_000_000.0;
+    }
+
+    private Connection instrument(String username, String password) throws SQLException {
+        String caller = attributeCallers ? caller() : UNKNOWN_CALLER;
+        int waitingNow = waiting.incrementAndGet();
+        waitingMax.accumulate(waitingNow);
+        waitingAtBorrow.record(waitingNow);
+        activeAtBorrow.record(active.get());
+
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = null == username
+                    ? obtainTargetDataSource().getConnection()
+                    : obtainTargetDataSource().getConnection(username, password);
+        } catch (SQLException e) {
+            if (e instanceof SQLTransientConnectionException) {
+                timeouts.increment();
+                log.warn("connection borrow timed out caller={}, active={}, waiting={}", caller, active.get(), waiting.get());
+            }
+            throw e;
+        } finally {
+            waiting.decrementAndGet();
+            long waited = System.nanoTime() - start;
+            borrowWait.record(waited);      // 타임아웃도 기다린 시간에 포함
+            histogramsOf(caller).borrowWait.record(waited);
+            if (waited > slowBorrowThresholdNanos) {
+                log.warn("slow connection borrow caller={}, waited={}ms, active={}, waiting={}", caller,
+                        TimeUnit.NANOSECONDS.toMillis(waited), active.get(), waiting.get());
+            }
+        }
+
+        borrows.increment();
+        active.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection, caller, System.nanoTime()));
+    }
+
+    private CallerHistograms histogramsOf(String caller) {
+        CallerHistograms histograms = callers.get(caller);
+        if (null != histograms) return histograms;
+        if (callers.size() >= MAX_CALLERS) caller = OTHER_CALLER;
+        return callers.computeIfAbsent(caller, key -> new CallerHistograms());
+    }
+
+    /**
+     * 스택에서 connection 패키지 밖의 첫 애플리케이션 메서드 -> "클래스 단순 이름.메서드"
+     */
+    private static String caller() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(APPLICATION_PACKAGE)
+                        && !frame.getClassName().startsWith(CONNECTION_PACKAGE))
+                .findFirst()
+                .map(frame -> simpleName(frame.getClassName()) + "." + frame.getMethodName())
+                .orElse(UNKNOWN_CALLER));
+    }
+
+    // 스프링 프록시(MemberServiceV4$$SpringCGLIB$$0) 등의 꼬리는 떼어냄
+    private static String simpleName(String className) {
+        String simple = className.substring(className.lastIndexOf('.') + 1);
+        int proxySuffix = simple.indexOf("$$");
+        return proxySuffix < 0 ? simple : simple.substring(0, proxySuffix);
+    }
+
+    private static class CallerHistograms {
+        private final Histogram borrowWait = new Histogram();
+        private final Histogram held = new Histogram();
+    }
+
+    /**
+     * close 를 가로채서 빌려 쓴 시간을 기록
+     */
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final String caller;
+        private final long acquiredAt;
+        private boolean closed;
+
+        private ConnectionHandler(Connection connection, String caller, long acquiredAt) {
+            this.connection = connection;
+            this.caller = caller;
+            this.acquiredAt = acquiredAt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        try {
+                            connection.close();
+                        } finally {
+                            active.decrementAndGet();
+                            long used = System.nanoTime() - acquiredAt;
+                            held.record(used);
+                            histogramsOf(caller).held.record(used);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Instrumented[" + connection + "]";
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+}
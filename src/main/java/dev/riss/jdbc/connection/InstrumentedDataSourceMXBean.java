@@ -0,0 +1,33 @@
+package dev.riss.jdbc.connection;
+
+/**
+ * JMX 로 보이는 InstrumentedDataSource 지표 (jconsole, VisualVM 등에서 확인)
+ * 시간은 모두 밀리초
+ */
+public interface InstrumentedDataSourceMXBean {
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getWaitingThreads();
+
+    long getBorrowCount();
+
+    long getTimeoutCount();
+
+    double getBorrowWaitMeanMillis();
+
+    double getBorrowWaitP99Millis();
+
+    double getBorrowWaitMaxMillis();
+
+    double getHeldMeanMillis();
+
+    double getHeldP99Millis();
+
+    double getHeldMaxMillis();
+
+    long getWaitingThreadsMax();
+
+}
@@ -0,0 +1,40 @@
+package dev.riss.jdbc.connection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * InstrumentedDataSource 지표 스냅샷 (풀 크기 결정, 커넥션 고갈 감지용)
+ * - borrowWait: getConnection 에서 기다린 시간(ns), held: 빌려서 반납할 때까지 쓴 시간(ns)
+ * - activeAtBorrow / waitingAtBorrow: 빌리는 시점마다 기록한 사용 중 커넥션 수 / 대기 쓰레드 수의 분포
+ * - idleConnections: 감싼 풀이 알려주는 쉬는 커넥션 수 (알 수 없는 DataSource 면 -1)
+ * - callers: 호출한 메서드(ex. "MemberRepositoryV5.findById")별 borrowWait, held
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PoolMetricsSnapshot {
+
+    private final long borrowCount;
+    private final long timeoutCount;
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int waitingThreads;
+    private final HistogramSnapshot borrowWait;
+    private final HistogramSnapshot held;
+    private final HistogramSnapshot activeAtBorrow;
+    private final HistogramSnapshot waitingAtBorrow;
+    private final Map<String, CallerMetrics> callers;
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class CallerMetrics {
+        private final HistogramSnapshot borrowWait;
+        private final HistogramSnapshot held;
+    }
+
+}
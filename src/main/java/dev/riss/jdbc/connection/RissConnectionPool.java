@@ -0,0 +1,573 @@
+package dev.riss.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * 직접 만든 커넥션 풀 DataSource (HikariCP 의 구조를 단순화)
+ *
+ * DriverManager 는 getConnection 마다 TCP 연결 + H2 로그인을 새로 함 -> 물리 커넥션을 만들어두고 빌려주고 돌려받음
+ *
+ * 빌리기 (락 없는 빠른 경로)
+ * 1. 이 쓰레드가 전에 반납했던 커넥션 목록(ThreadLocal)에서 꺼냄 - 쓰레드가 같은 커넥션을 계속 쓰게 됨
+ * 2. 없으면 전체 목록(공유)을 훑으면서 CAS 로 상태(NOT_IN_USE -> IN_USE)를 바꾸는 데 성공한 것을 가져감
+ * 3. 없고 최대 개수 전이면 새로 만들고, 최대면 반납되는 커넥션을 직접 건네받을 때까지 connectionTimeout 동안 대기
+ *    반납하는 쪽은 대기자가 있으면 SynchronousQueue 로 직접 넘겨줌
+ *
+ * 반납 (close)
+ * - 빌린 쪽이 바꾼 세션 상태만 되돌림 (autoCommit, readOnly, isolation, catalog). 안 바꿨으면 DB 호출 없음
+ *   autoCommit = false 인 채로 반납하면 커밋 안 된 작업은 롤백
+ * - 빌린 쪽이 닫지 않은 Statement 는 반납할 때 닫음 (다음 사용자에게 열린 Statement, ResultSet 이 넘어가지 않도록)
+ *   Statement 도 감싸서 돌려주므로 getConnection() 은 물리 커넥션이 아니라 빌려준 프록시를 반환
+ * - 반납 전에 maxLifetime 이 지났으면 풀에 넣지 않고 닫음
+ *
+ * 검증: 마지막 사용 후 validationBypassWindow 가 지나지 않았으면 isValid 를 생략 (방금 쓴 커넥션은 살아있다고 봄)
+ * 정리: 백그라운드에서 주기적으로 idleTimeout 동안 쉰 커넥션(minimumIdle 초과분)과 maxLifetime 지난 커넥션을 닫음
+ */
+@Slf4j
+public class RissConnectionPool implements DataSource, AutoCloseable {
+
+    private static final int NOT_IN_USE = 0;
+    private static final int IN_USE = 1;
+    private static final int REMOVED = -1;
+    private static final int THREAD_LOCAL_LIMIT = 16;
+    private static final int HANDOFF_SPINS = 1024;
+
+    // 빌린 쪽이 바꾼 세션 상태 (반납할 때 이것만 되돌림)
+    private static final int DIRTY_AUTO_COMMIT = 1;
+    private static final int DIRTY_READ_ONLY = 1 << 1;
+    private static final int DIRTY_ISOLATION = 1 << 2;
+    private static final int DIRTY_CATALOG = 1 << 3;
+
+    private final String poolName;
+    private final String url;
+    private final String username;
+    private final String password;
+    private volatile int maximumPoolSize;
+
+    private volatile long connectionTimeoutMs = 30_000;
+    private volatile long validationBypassWindowMs = 500;
+    private volatile long maxLifetimeMs = 30 * 60_000;
+    private volatile long idleTimeoutMs = 10 * 60_000;
+    private volatile int minimumIdle = 0;
+
+    private final List<PoolEntry> entries = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<List<WeakReference<PoolEntry>>> threadEntries = ThreadLocal.withInitial(ArrayList::new);
+    private final SynchronousQueue<PoolEntry> handoff = new SynchronousQueue<>(true);
+    private final AtomicInteger totalConnections = new AtomicInteger();     // 만드는 중인 것 포함
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder validations = new LongAdder();
+    private final LongAdder validationSkips = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public RissConnectionPool(String poolName, String url, String username, String password, int maximumPoolSize) {
+        this(poolName, url, username, password, maximumPoolSize, 30_000);
+    }
+
+    public RissConnectionPool(String poolName, String url, String username, String password, int maximumPoolSize,
+                              long housekeepingPeriodMs) {
+        if (maximumPoolSize <= 0) throw new IllegalArgumentException("maximumPoolSize must be positive, maximumPoolSize=" + maximumPoolSize);
+        this.poolName = poolName;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maximumPoolSize = maximumPoolSize;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, poolName + " housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingPeriodMs, housekeepingPeriodMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException(poolName + " - pool is closed");
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(connectionTimeoutMs);
+        while (true) {
+            PoolEntry entry = borrow(deadline);
+            if (null == entry) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException(poolName + " - Connection is not available, request timed out after "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms.");
+            }
+            if (isUsable(entry)) return entry.proxy();
+            remove(entry, "dead or expired");
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException(poolName + " - pool connections use the configured credentials");
+    }
+
+    /**
+     * 1. ThreadLocal 2. 공유 목록 3. 새로 생성 4. 건네받기 대기
+     */
+    private PoolEntry borrow(long deadline) throws SQLException {
+        List<WeakReference<PoolEntry>> local = threadEntries.get();
+        for (int i = local.size() - 1; i >= 0; i--) {
+            PoolEntry entry = local.remove(i).get();
+            if (null != entry && entry.state.compareAndSet(NOT_IN_USE, IN_USE)) return entry;
+        }
+
+        waiters.incrementAndGet();
+        try {
+            while (true) {
+                for (PoolEntry entry : entries) {
+                    if (entry.state.compareAndSet(NOT_IN_USE, IN_USE)) return entry;
+                }
+
+                PoolEntry createdEntry = tryCreate();
+                if (null != createdEntry) return createdEntry;
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return null;
+                try {
+                    // 반납 쪽에서 넘겨주는 것을 기다림. 너무 오래 잡고 있지 않도록 짧게 끊어서 공유 목록도 다시 봄
+                    PoolEntry entry = handoff.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(10)), TimeUnit.NANOSECONDS);
+                    if (null != entry && entry.state.compareAndSet(NOT_IN_USE, IN_USE)) return entry;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException(poolName + " - interrupted while waiting for a connection", e);
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private PoolEntry tryCreate() throws SQLException {
+        while (true) {
+            int total = totalConnections.get();
+            if (total >= maximumPoolSize) return null;
+            if (totalConnections.compareAndSet(total, total + 1)) break;
+        }
+        Connection physical = null;
+        try {
+            physical = DriverManager.getConnection(url, username, password);
+            PoolEntry entry = new PoolEntry(physical);
+            entry.state.set(IN_USE);
+            entries.add(entry);
+            created.increment();
+            log.debug("{} - added connection {}", poolName, physical);
+            return entry;
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            // 기본 세션 상태를 읽다가 실패하면 풀에 들어가지 않은 물리 커넥션이 남음 -> 여기서 닫음
+            if (null != physical) closeQuietly(physical);
+            throw e;
+        }
+    }
+
+    private void closeQuietly(AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            log.warn("{} - failed to close {}", poolName, resource, e);
+        }
+    }
+
+    private boolean isUsable(PoolEntry entry) {
+        long now = System.nanoTime();
+        if (isExpired(entry, now)) return false;
+        if (now - entry.lastAccessed < TimeUnit.MILLISECONDS.toNanos(validationBypassWindowMs)) {
+            validationSkips.increment();
+            return true;
+        }
+        validations.increment();
+        try {
+            return entry.physical.isValid(5);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean isExpired(PoolEntry entry, long now) {
+        return 0 < maxLifetimeMs && now - entry.createdAt > TimeUnit.MILLISECONDS.toNanos(maxLifetimeMs);
+    }
+
+    /**
+     * 반납. 대기자가 있으면 직접 건네주고, 없으면 이 쓰레드의 ThreadLocal 목록에 기억
+     */
+    private void requite(PoolEntry entry) {
+        entry.lastAccessed = System.nanoTime();
+        if (closed || isExpired(entry, entry.lastAccessed)) {
+            entry.state.set(IN_USE);
+            remove(entry, closed ? "pool closed" : "max lifetime");
+            return;
+        }
+        if (totalConnections.get() > maximumPoolSize) {
+            remove(entry, "pool shrunk");       // 최대 크기를 줄였으면 반납되는 것부터 닫음
+            return;
+        }
+
+        entry.state.set(NOT_IN_USE);
+        // 대기자가 아직 poll 전이면(새 커넥션 생성 중 등) 조금만 시도하고 넘어감 -> 공유 목록에 있으므로 대기자가 다음 확인 때 가져감
+        for (int i = 0; i < HANDOFF_SPINS && 0 < waiters.get(); i++) {
+            // 그 사이 다른 쓰레드가 공유 목록에서 가져갔거나, 대기자가 받아감
+            if (NOT_IN_USE != entry.state.get() || handoff.offer(entry)) return;
+            if (0 == (i & 0xff)) Thread.yield();
+        }
+
+        List<WeakReference<PoolEntry>> local = threadEntries.get();
+        if (local.size() < THREAD_LOCAL_LIMIT) local.add(new WeakReference<>(entry));
+    }
+
+    private void remove(PoolEntry entry, String reason) {
+        entry.state.set(REMOVED);
+        if (entries.remove(entry)) {
+            totalConnections.decrementAndGet();
+            log.debug("{} - closing connection {} ({})", poolName, entry.physical, reason);
+            try {
+                entry.physical.close();
+            } catch (SQLException e) {
+                log.warn("{} - failed to close connection {}", poolName, entry.physical, e);
+            }
+        }
+    }
+
+    /**
+     * 쉬고 있는 커넥션 중 idleTimeout 지난 것(minimumIdle 초과분), maxLifetime 지난 것을 닫음
+     */
+    private void housekeep() {
+        long now = System.nanoTime();
+        int idle = getIdleConnections();
+        for (PoolEntry entry : entries) {
+            boolean expired = isExpired(entry, now);
+            boolean idleTooLong = 0 < idleTimeoutMs && idle > minimumIdle
+                    && now - entry.lastAccessed > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+            if ((expired || idleTooLong) && entry.state.compareAndSet(NOT_IN_USE, REMOVED)) {
+                remove(entry, expired ? "max lifetime" : "idle timeout");
+                idle--;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        for (PoolEntry entry : entries) {
+            if (entry.state.compareAndSet(NOT_IN_USE, REMOVED)) remove(entry, "pool closed");
+        }
+        log.info("{} - closed (in use connections are closed when returned)", poolName);
+    }
+
+    public void setConnectionTimeout(long connectionTimeoutMs) {
+        this.connectionTimeoutMs = connectionTimeoutMs;
+    }
+
+    public void setValidationBypassWindow(long validationBypassWindowMs) {
+        this.validationBypassWindowMs = validationBypassWindowMs;
+    }
+
+    public void setMaxLifetime(long maxLifetimeMs) {
+        this.maxLifetimeMs = maxLifetimeMs;
+    }
+
+    public void setIdleTimeout(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public void setMinimumIdle(int minimumIdle) {
+        this.minimumIdle = minimumIdle;
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    /**
+     * 실행 중 최대 크기 변경. 늘리면 다음 빌리기부터 더 만들고, 줄이면 반납되는 커넥션부터 닫아서 맞춤
+     */
+    public void setMaximumPoolSize(int maximumPoolSize) {
+        if (maximumPoolSize <= 0) throw new IllegalArgumentException("maximumPoolSize must be positive, maximumPoolSize=" + maximumPoolSize);
+        this.maximumPoolSize = maximumPoolSize;
+    }
+
+    public int getTotalConnections() {
+        return entries.size();
+    }
+
+    public int getActiveConnections() {
+        int active = 0;
+        for (PoolEntry entry : entries) {
+            if (IN_USE == entry.state.get()) active++;
+        }
+        return active;
+    }
+
+    public int getIdleConnections() {
+        int idle = 0;
+        for (PoolEntry entry : entries) {
+            if (NOT_IN_USE == entry.state.get()) idle++;
+        }
+        return idle;
+    }
+
+    public int getThreadsAwaitingConnection() {
+        return waiters.get();
+    }
+
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    public long getValidationCount() {
+        return validations.sum();
+    }
+
+    public long getValidationSkipCount() {
+        return validationSkips.sum();
+    }
+
+    // 반납할 때 바뀐 세션 상태를 되돌린 횟수
+    public long getResetCount() {
+        return resets.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return (T) this;
+        throw new SQLException(poolName + " - not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public String toString() {
+        return poolName + " (total=" + getTotalConnections() + ", active=" + getActiveConnections()
+                + ", idle=" + getIdleConnections() + ", waiting=" + getThreadsAwaitingConnection() + ")";
+    }
+
+    /**
+     * 풀이 관리하는 물리 커넥션 하나와 그 기본 세션 상태
+     */
+    private class PoolEntry {
+
+        private final Connection physical;
+        private final AtomicInteger state = new AtomicInteger(NOT_IN_USE);
+        private final long createdAt = System.nanoTime();
+        private volatile long lastAccessed = createdAt;
+
+        private final boolean defaultAutoCommit;
+        private final boolean defaultReadOnly;
+        private final int defaultIsolation;
+        private final String defaultCatalog;
+
+        private PoolEntry(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.defaultAutoCommit = physical.getAutoCommit();
+            this.defaultReadOnly = physical.isReadOnly();
+            this.defaultIsolation = physical.getTransactionIsolation();
+            this.defaultCatalog = physical.getCatalog();
+        }
+
+        private Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    new ConnectionHandler(this));
+        }
+    }
+
+    /**
+     * 빌려준 커넥션 - 세션 상태를 바꾸는 호출을 기록해두고, close 하면 바뀐 것만 되돌리고 반납
+     */
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final PoolEntry entry;
+        private final List<StatementHandler> statements = new ArrayList<>();
+        private int dirty;
+        private boolean autoCommit;
+        private boolean closed;
+
+        private ConnectionHandler(PoolEntry entry) {
+            this.entry = entry;
+            this.autoCommit = entry.defaultAutoCommit;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return poolName + "[" + entry.physical + "]";
+                default:
+                    break;
+            }
+            if (closed) throw new SQLException(poolName + " - connection is closed");
+
+            Object result = RissConnectionPool.invoke(entry.physical, method, args);
+            if (result instanceof Statement statement) return track((Connection) proxy, method.getReturnType(), statement);
+            switch (method.getName()) {
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    dirty |= DIRTY_AUTO_COMMIT;
+                    break;
+                case "setReadOnly":
+                    dirty |= DIRTY_READ_ONLY;
+                    break;
+                case "setTransactionIsolation":
+                    dirty |= DIRTY_ISOLATION;
+                    break;
+                case "setCatalog":
+                    dirty |= DIRTY_CATALOG;
+                    break;
+                default:
+                    break;
+            }
+            return result;
+        }
+
+        // createStatement, prepareStatement, prepareCall 의 반환 타입(인터페이스) 그대로 감쌈
+        private Object track(Connection connectionProxy, Class<?> type, Statement statement) {
+            StatementHandler handler = new StatementHandler(connectionProxy, this, statement);
+            statements.add(handler);
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+
+        private void release() {
+            // 닫지 않은 Statement 정리 (물리 커넥션은 계속 쓰므로 여기서 닫지 않으면 다음 사용자에게까지 남음)
+            for (StatementHandler statement : statements) statement.closePhysical();
+            statements.clear();
+            try {
+                if (!autoCommit) entry.physical.rollback();     // 커밋/롤백 안 하고 반납한 작업은 버림
+                if (0 != dirty) {
+                    Connection physical = entry.physical;
+                    if (0 != (dirty & DIRTY_AUTO_COMMIT)) physical.setAutoCommit(entry.defaultAutoCommit);
+                    if (0 != (dirty & DIRTY_READ_ONLY)) physical.setReadOnly(entry.defaultReadOnly);
+                    if (0 != (dirty & DIRTY_ISOLATION)) physical.setTransactionIsolation(entry.defaultIsolation);
+                    if (0 != (dirty & DIRTY_CATALOG)) physical.setCatalog(entry.defaultCatalog);
+                    resets.increment();
+                }
+            } catch (SQLException e) {
+                log.warn("{} - failed to reset connection {}, evicting", poolName, entry.physical, e);
+                remove(entry, "reset failed");
+                return;
+            }
+            requite(entry);
+        }
+    }
+
+    /**
+     * 빌려준 커넥션에서 만든 Statement - getConnection 은 프록시를 반환하고, close 하면 커넥션의 추적 목록에서 빠짐
+     */
+    private class StatementHandler implements InvocationHandler {
+
+        private final Connection connectionProxy;
+        private final ConnectionHandler owner;
+        private final Statement statement;
+        private boolean closed;
+
+        private StatementHandler(Connection connectionProxy, ConnectionHandler owner, Statement statement) {
+            this.connectionProxy = connectionProxy;
+            this.owner = owner;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        // 보통 마지막에 만든 것부터 닫으므로 뒤에서부터 찾음
+                        owner.statements.remove(owner.statements.lastIndexOf(this));
+                        closed = true;
+                        statement.close();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "getConnection":
+                    return connectionProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return poolName + "[" + statement + "]";
+                default:
+                    if (closed) throw new SQLException(poolName + " - statement is closed");
+                    return RissConnectionPool.invoke(statement, method, args);
+            }
+        }
+
+        private void closePhysical() {
+            closed = true;
+            closeQuietly(statement);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+package dev.riss.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PreparedStatement 캐시 - DataSource(ex. HikariDataSource)를 감싸서 사용
+ *
+ * 리포지토리(V1 ~ V4_2)는 매번 conn.prepareStatement(sql) 후 close 하는데,
+ * 이 DataSource 가 준 커넥션에서는 close 해도 statement 를 실제로 닫지 않고 (물리 커넥션, sql) 기준으로 보관했다가
+ * 같은 물리 커넥션에서 같은 sql 을 다시 prepare 하면 보관해둔 걸 꺼내줌
+ * -> 리포지토리 코드는 그대로 두고 DataSource 만 바꾸면 됨 (DataSource 추상화 덕분)
+ *
+ * - 키는 풀이 주는 프록시 커넥션(HikariProxyConnection)이 아니라 unwrap 한 물리 커넥션
+ *   -> 트랜잭션 안의 여러 리포지토리 호출뿐 아니라, 풀에 반납했다가 다시 빌려도 같은 물리 커넥션이면 재사용
+ * - statement 는 물리 커넥션에서 직접 prepare -> 풀이 커넥션 반납 시 열린 statement 를 닫는 동작에 걸리지 않음
+ * - 물리 커넥션당 sql 최대 maxStatementsPerConnection 개, 넘으면 가장 오래 안 쓴(LRU) statement 를 실제로 닫음
+ * - 물리 커넥션이 닫히면(풀의 maxLifetime 등) 커넥션을 빌려줄 때마다 닫힌 물리 커넥션의 캐시를 찾아서 statement 와 함께 버림
+ *   (statement 가 물리 커넥션을 참조하므로 WeakHashMap 으로는 GC 되지 않음 -> 직접 정리)
+ * - statement 가 풀의 프록시를 거치지 않으므로 풀은 실행 여부(commit 상태)를 모름
+ *   -> 캐시된 statement 로 실행한 뒤 커밋/롤백 없이 자동 커밋이 꺼진 커넥션을 반납하면 여기서 롤백 후 반납
+ * - 캐시에 반납할 때 열린 ResultSet 을 닫고 queryTimeout, maxRows, fetchSize 를 기본값(0)으로 되돌림
+ * - 같은 sql 을 동시에 두 개 쓰는 경우(ex. 스트림 열어둔 채로 같은 조회) 하나는 캐시에서 꺼내고 나머지는 새로 prepare
+ *
+ * prepareStatement(String) 만 캐시함 (resultSetType 등을 주는 다른 오버로드는 그대로 전달)
+ */
+@Slf4j
+public class StatementCachingDataSource extends DelegatingDataSource {
+
+    private final int maxStatementsPerConnection;
+    private final Map<Connection, StatementCache> caches = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public StatementCachingDataSource(DataSource targetDataSource, int maxStatementsPerConnection) {
+        super(targetDataSource);
+        this.maxStatementsPerConnection = maxStatementsPerConnection;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // statement 를 보관 중인 물리 커넥션 수
+    public int getCachedConnectionCount() {
+        return caches.size();
+    }
+
+    private Connection wrap(Connection connection) throws SQLException {
+        evictClosed();
+        Connection physical = connection.unwrap(Connection.class);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection, physical));
+    }
+
+    private StatementCache cacheOf(Connection physical) throws SQLException {
+        if (physical.isClosed()) {
+            evict(physical);
+            return null;
+        }
+        return caches.computeIfAbsent(physical, key -> new StatementCache());
+    }
+
+    private void evict(Connection physical) {
+        StatementCache cache = caches.remove(physical);
+        if (null != cache) cache.closeAll();
+    }
+
+    /**
+     * 풀이 폐기한 물리 커넥션은 다시 빌려지지 않으므로 close 시점이 아니라 여기서 정리 (캐시 대상은 풀 크기만큼이라 순회 비용 작음)
+     */
+    private void evictClosed() {
+        for (Connection physical : caches.keySet()) {
+            boolean closed;
+            try {
+                closed = physical.isClosed();
+            } catch (SQLException e) {
+                closed = true;
+            }
+            if (closed) evict(physical);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * 풀에서 받은 커넥션을 감싸서 prepareStatement(String), close 만 가로챔
+     * 캐시된 statement 로 실행했는지(dirty) 기록해뒀다가 커밋/롤백 없이 반납하면 롤백
+     */
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+        private final Connection physical;
+        private volatile boolean dirty;
+
+        private ConnectionHandler(Connection connection, Connection physical) {
+            this.connection = connection;
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    if (1 == args.length) return prepareStatement((Connection) proxy, (String) args[0]);
+                    break;
+                case "commit":
+                case "rollback":
+                case "setAutoCommit":
+                    Object result = StatementCachingDataSource.invoke(connection, method, args);
+                    dirty = false;
+                    return result;
+                case "close":
+                    if (connection.isClosed()) return null;
+                    try {
+                        if (dirty && !connection.getAutoCommit()) connection.rollback();
+                    } finally {
+                        dirty = false;
+                        connection.close();     // 풀에 반납 (물리 커넥션이 실제로 닫혔으면 캐시도 정리)
+                        if (physical.isClosed()) evict(physical);
+                    }
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StatementCaching[" + connection + "]";
+                default:
+                    break;
+            }
+            return StatementCachingDataSource.invoke(connection, method, args);
+        }
+
+        private PreparedStatement prepareStatement(Connection proxy, String sql) throws SQLException {
+            StatementCache cache = cacheOf(physical);
+            PreparedStatement statement = null == cache ? null : cache.borrow(sql);
+            if (null != statement) {
+                hits.increment();
+            } else {
+                misses.increment();
+                statement = physical.prepareStatement(sql);
+            }
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new StatementHandler(proxy, this, sql, statement));
+        }
+    }
+
+    /**
+     * close 를 가로채서 실제로 닫지 않고 캐시에 반납
+     */
+    private class StatementHandler implements InvocationHandler {
+
+        private final Connection connectionProxy;
+        private final ConnectionHandler owner;
+        private final String sql;
+        private final PreparedStatement statement;
+        private boolean closed;
+
+        private StatementHandler(Connection connectionProxy, ConnectionHandler owner, String sql, PreparedStatement statement) {
+            this.connectionProxy = connectionProxy;
+            this.owner = owner;
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "getConnection":
+                    return connectionProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StatementCaching[" + statement + "]";
+                default:
+                    if (closed) throw new SQLException("statement is closed");
+                    if (method.getName().startsWith("execute")) owner.dirty = true;
+                    return StatementCachingDataSource.invoke(statement, method, args);
+            }
+        }
+
+        private void release() throws SQLException {
+            if (statement.isClosed()) return;
+
+            StatementCache cache = cacheOf(owner.physical);
+            if (null == cache) {
+                JdbcUtils.closeStatement(statement);
+                return;
+            }
+            // 다음 사용자를 위해 열린 ResultSet, 이전 파라미터, 배치 정리
+            JdbcUtils.closeResultSet(statement.getResultSet());
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            // 실행 설정도 기본값으로 (JdbcTemplate 은 기본값이 아닐 때만 설정하고, 트랜잭션 타임아웃은 남은 시간으로 설정하므로
+            // 그대로 두면 다음 사용자가 이전 트랜잭션의 짧은 타임아웃이나 streamAll 의 fetchSize 를 물려받음)
+            statement.setQueryTimeout(0);
+            statement.setMaxRows(0);
+            statement.setFetchSize(0);
+            cache.release(sql, statement);
+        }
+    }
+
+    /**
+     * 물리 커넥션 하나의 statement 캐시 (sql -> 쉬고 있는 statement, LRU)
+     */
+    private class StatementCache {
+
+        private final LinkedHashMap<String, PreparedStatement> idle = new LinkedHashMap<>(16, 0.75f, true);
+
+        synchronized PreparedStatement borrow(String sql) throws SQLException {
+            PreparedStatement statement = idle.remove(sql);
+            if (null != statement && statement.isClosed()) return null;
+            return statement;
+        }
+
+        synchronized void release(String sql, PreparedStatement statement) {
+            PreparedStatement previous = idle.put(sql, statement);
+            if (null != previous) JdbcUtils.closeStatement(previous);     // 같은 sql 이 동시에 쓰였던 경우, 하나만 보관
+
+            if (idle.size() > maxStatementsPerConnection) {
+                Iterator<PreparedStatement> iterator = idle.values().iterator();
+                PreparedStatement eldest = iterator.next();
+                iterator.remove();
+                JdbcUtils.closeStatement(eldest);
+                evictions.increment();
+            }
+        }
+
+        synchronized void closeAll() {
+            idle.values().forEach(JdbcUtils::closeStatement);
+            idle.clear();
+        }
+    }
+
+}
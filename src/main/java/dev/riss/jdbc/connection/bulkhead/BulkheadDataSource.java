@@ -0,0 +1,278 @@
+package dev.riss.jdbc.connection.bulkhead;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * 작업 종류(Workload)별로 풀을 나눈 DataSource (bulkhead)
+ *
+ * 야간 배치/리포트가 같은 풀을 쓰면 긴 스캔이 커넥션을 다 잡아서 이체(accountTransfer)가 커넥션을 못 받음
+ * -> 작업 종류마다 따로 풀을 두고, WorkloadContext(또는 @WorkloadType)로 정해진 작업 종류의 풀에서만 빌림
+ *    지정이 없으면 defaultWorkload 의 풀
+ *
+ * - 작업 종류마다 최대 커넥션 수(maxConnections)와 대기 시간(connectionTimeout)을 따로 설정
+ *   자기 풀의 자리는 이 DataSource 가 세므로, 감싼 풀(HikariDataSource, RissConnectionPool 등)은 maxConnections 이상으로 잡아 둠
+ * - 공유 풀(setSharedPool): 자기 풀이 꽉 찼을 때 maxShared 개까지 빌려 쓰는 여유분
+ *   공유 풀에서는 우선순위(INTERACTIVE > REPORTING > BATCH)대로 줄을 섬 -> 이체가 기다리면 배치는 공유 자리를 못 가져감
+ *   공유 풀에서 기다리는 동안에도 자기 풀 자리가 나는지 SHARED_WAIT_SLICE 마다 확인
+ * - 대기 시간을 넘기면 SQLTransientConnectionException (다른 풀과 같음 -> InstrumentedDataSource 가 타임아웃으로 셈)
+ *
+ * 설정(addBulkhead, setSharedPool)은 사용하기 전에 끝내야 함
+ */
+@Slf4j
+public class BulkheadDataSource implements DataSource {
+
+    private static final long SHARED_WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Workload defaultWorkload;
+    private final Map<Workload, Bulkhead> bulkheads = new EnumMap<>(Workload.class);
+    private DataSource sharedPool;
+    private PriorityBorrowQueue sharedQueue;
+
+    public BulkheadDataSource(Workload defaultWorkload) {
+        this.defaultWorkload = defaultWorkload;
+    }
+
+    /**
+     * @param maxShared 자기 풀이 꽉 찼을 때 공유 풀에서 빌릴 수 있는 최대 개수 (0 이면 공유 안 함)
+     */
+    public void addBulkhead(Workload workload, DataSource pool, int maxConnections, Duration connectionTimeout, int maxShared) {
+        if (maxConnections <= 0 || maxShared < 0) {
+            throw new IllegalArgumentException("invalid bulkhead workload=" + workload + ", maxConnections=" + maxConnections + ", maxShared=" + maxShared);
+        }
+        bulkheads.put(workload, new Bulkhead(workload, pool, maxConnections, connectionTimeout.toNanos(), maxShared));
+        if (null != sharedQueue) sharedQueue.setLimit(workload, maxShared);
+    }
+
+    public void setSharedPool(DataSource pool, int maxConnections) {
+        this.sharedPool = pool;
+        this.sharedQueue = new PriorityBorrowQueue(maxConnections);
+        bulkheads.values().forEach(bulkhead -> sharedQueue.setLimit(bulkhead.workload, bulkhead.maxShared));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Workload workload = WorkloadContext.current();
+        Bulkhead bulkhead = bulkheads.get(null == workload ? defaultWorkload : workload);
+        if (null == bulkhead) bulkhead = bulkheads.get(defaultWorkload);
+        if (null == bulkhead) throw new SQLException("no bulkhead for workload=" + workload + ", default=" + defaultWorkload);
+        return bulkhead.borrow();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("bulkhead connections use the credentials of each pool");
+    }
+
+    public int getActiveConnections(Workload workload) {
+        Bulkhead bulkhead = bulkheads.get(workload);
+        return null == bulkhead ? 0 : bulkhead.maxConnections - bulkhead.permits.availablePermits();
+    }
+
+    public int getSharedConnections(Workload workload) {
+        return null == sharedQueue ? 0 : sharedQueue.inUse(workload);
+    }
+
+    public int getWaitingThreads(Workload workload) {
+        Bulkhead bulkhead = bulkheads.get(workload);
+        return null == bulkhead ? 0 : bulkhead.permits.getQueueLength();
+    }
+
+    public long getBorrowCount(Workload workload) {
+        Bulkhead bulkhead = bulkheads.get(workload);
+        return null == bulkhead ? 0 : bulkhead.borrows.sum();
+    }
+
+    public long getSharedBorrowCount(Workload workload) {
+        Bulkhead bulkhead = bulkheads.get(workload);
+        return null == bulkhead ? 0 : bulkhead.sharedBorrows.sum();
+    }
+
+    public long getTimeoutCount(Workload workload) {
+        Bulkhead bulkhead = bulkheads.get(workload);
+        return null == bulkhead ? 0 : bulkhead.timeouts.sum();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return (T) this;
+        throw new SQLException("not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("BulkheadDataSource(");
+        bulkheads.values().forEach(bulkhead -> sb.append(bulkhead.workload).append(": active=")
+                .append(getActiveConnections(bulkhead.workload)).append('/').append(bulkhead.maxConnections)
+                .append(", shared=").append(getSharedConnections(bulkhead.workload)).append("; "));
+        return sb.append(')').toString();
+    }
+
+    /**
+     * 작업 종류 하나의 풀과 자리
+     */
+    private class Bulkhead {
+
+        private final Workload workload;
+        private final DataSource pool;
+        private final int maxConnections;
+        private final long connectionTimeoutNanos;
+        private final int maxShared;
+        private final Semaphore permits;
+
+        private final LongAdder borrows = new LongAdder();
+        private final LongAdder sharedBorrows = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+
+        private Bulkhead(Workload workload, DataSource pool, int maxConnections, long connectionTimeoutNanos, int maxShared) {
+            this.workload = workload;
+            this.pool = pool;
+            this.maxConnections = maxConnections;
+            this.connectionTimeoutNanos = connectionTimeoutNanos;
+            this.maxShared = maxShared;
+            this.permits = new Semaphore(maxConnections, true);
+        }
+
+        private Connection borrow() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                if (0 == maxShared || null == sharedQueue) {
+                    if (permits.tryAcquire(connectionTimeoutNanos, TimeUnit.NANOSECONDS)) return open(pool, false);
+                } else {
+                    long deadline = start + connectionTimeoutNanos;
+                    while (true) {
+                        if (permits.tryAcquire()) return open(pool, false);
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) break;
+                        if (sharedQueue.acquire(workload, Math.min(remaining, SHARED_WAIT_SLICE_NANOS))) return open(sharedPool, true);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(workload + " bulkhead - interrupted while waiting for a connection", e);
+            }
+
+            timeouts.increment();
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.warn("{} bulkhead exhausted, waited={}ms, active={}, shared={}", workload, waited,
+                    getActiveConnections(workload), getSharedConnections(workload));
+            throw new SQLTransientConnectionException(workload + " bulkhead - Connection is not available, request timed out after "
+                    + waited + "ms.");
+        }
+
+        // 자리를 잡은 뒤 실제 풀에서 빌림. 실패하면 자리를 돌려줌
+        private Connection open(DataSource source, boolean shared) throws SQLException {
+            Connection connection;
+            try {
+                connection = source.getConnection();
+            } catch (SQLException | RuntimeException e) {
+                release(shared);
+                throw e;
+            }
+            borrows.increment();
+            if (shared) sharedBorrows.increment();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    new ConnectionHandler(this, connection, shared));
+        }
+
+        private void release(boolean shared) {
+            if (shared) sharedQueue.release(workload);
+            else permits.release();
+        }
+    }
+
+    /**
+     * close 를 가로채서 자리를 돌려줌
+     */
+    private static class ConnectionHandler implements InvocationHandler {
+
+        private final Bulkhead bulkhead;
+        private final Connection connection;
+        private final boolean shared;
+        private boolean closed;
+
+        private ConnectionHandler(Bulkhead bulkhead, Connection connection, boolean shared) {
+            this.bulkhead = bulkhead;
+            this.connection = connection;
+            this.shared = shared;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        try {
+                            connection.close();
+                        } finally {
+                            bulkhead.release(shared);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return bulkhead.workload + (shared ? "(shared)" : "") + "[" + connection + "]";
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+}
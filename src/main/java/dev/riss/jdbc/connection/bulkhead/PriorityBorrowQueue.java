@@ -0,0 +1,109 @@
+package dev.riss.jdbc.connection.bulkhead;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 공유 풀의 자리(permit) 배분 - 우선순위가 높은 작업(Workload 선언 순서)이 기다리고 있으면 낮은 작업은 가져가지 못함
+ * 작업마다 공유 자리를 최대 limit 개까지만 가져갈 수 있음 (0 이면 공유 안 함)
+ */
+class PriorityBorrowQueue {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Workload, Condition> turns = new EnumMap<>(Workload.class);
+    private final Map<Workload, Integer> limits = new EnumMap<>(Workload.class);
+    private final int[] waiting = new int[Workload.values().length];
+    private final int[] inUse = new int[Workload.values().length];
+    private int available;
+
+    PriorityBorrowQueue(int size) {
+        this.available = size;
+        for (Workload workload : Workload.values()) {
+            turns.put(workload, lock.newCondition());
+            limits.put(workload, 0);
+        }
+    }
+
+    void setLimit(Workload workload, int limit) {
+        lock.lock();
+        try {
+            limits.put(workload, limit);
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * timeoutNanos 동안 자리를 기다림. 받으면 true (나중에 release 필수)
+     */
+    boolean acquire(Workload workload, long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            int index = workload.ordinal();
+            long remaining = timeoutNanos;
+            waiting[index]++;
+            try {
+                while (!canTake(workload)) {
+                    if (remaining <= 0) return false;
+                    remaining = turns.get(workload).awaitNanos(remaining);
+                }
+                available--;
+                inUse[index]++;
+                return true;
+            } finally {
+                waiting[index]--;
+                signalNext();       // 받은 뒤 자리가 남았거나, 우선순위 높은 쪽이 포기했으면 다음 차례를 깨움
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(Workload workload) {
+        lock.lock();
+        try {
+            available++;
+            inUse[workload.ordinal()]--;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int inUse(Workload workload) {
+        lock.lock();
+        try {
+            return inUse[workload.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canTake(Workload workload) {
+        if (0 == available || !underLimit(workload)) return false;
+        for (Workload higher : Workload.values()) {
+            if (higher == workload) return true;
+            if (0 < waiting[higher.ordinal()] && underLimit(higher)) return false;
+        }
+        return true;
+    }
+
+    private boolean underLimit(Workload workload) {
+        return inUse[workload.ordinal()] < limits.get(workload);
+    }
+
+    // 가져갈 수 있는 가장 높은 우선순위의 대기자 하나를 깨움
+    private void signalNext() {
+        if (0 == available) return;
+        for (Workload workload : Workload.values()) {
+            if (0 < waiting[workload.ordinal()] && underLimit(workload)) {
+                turns.get(workload).signal();
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+package dev.riss.jdbc.connection.bulkhead;
+
+/**
+ * 커넥션을 빌리는 작업 종류 - 선언 순서가 우선순위 (공유 풀에서 앞의 것이 먼저 빌림)
+ */
+public enum Workload {
+    INTERACTIVE,        // 사용자 요청 (이체, 조회) - 응답 시간이 중요
+    REPORTING,          // 리포트/통계 조회 - 오래 걸리는 읽기
+    BATCH               // 야간 정산, 대량 적재 등
+}
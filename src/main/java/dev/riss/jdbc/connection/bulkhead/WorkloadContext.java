@@ -0,0 +1,51 @@
+package dev.riss.jdbc.connection.bulkhead;
+
+import java.util.function.Supplier;
+
+/**
+ * 현재 쓰레드의 작업 종류 - BulkheadDataSource 가 커넥션을 빌릴 때 보고 풀을 고름
+ *
+ * ex. WorkloadContext.run(Workload.BATCH, () -> settlementService.settle(date));
+ * 안쪽에서 다시 지정하면 안쪽 것이 쓰이고, 끝나면 바깥 것으로 돌아감
+ * 이미 트랜잭션에 묶인 커넥션이 있으면 그 커넥션을 계속 씀 (트랜잭션 시작 전에 지정해야 함)
+ */
+public class WorkloadContext {
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 지정된 작업 종류 (없으면 null -> BulkheadDataSource 의 기본 작업 종류)
+     */
+    public static Workload current() {
+        return CURRENT.get();
+    }
+
+    public static <T> T call(Workload workload, Supplier<T> work) {
+        Workload previous = enter(workload);
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public static void run(Workload workload, Runnable work) {
+        call(workload, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    // 지정하고 이전 값을 반환 -> 끝나면 restore(이전 값)
+    static Workload enter(Workload workload) {
+        Workload previous = CURRENT.get();
+        CURRENT.set(workload);
+        return previous;
+    }
+
+    static void restore(Workload previous) {
+        if (null == previous) CURRENT.remove();
+        else CURRENT.set(previous);
+    }
+
+}
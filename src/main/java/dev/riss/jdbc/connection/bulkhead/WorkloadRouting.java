@@ -0,0 +1,52 @@
+package dev.riss.jdbc.connection.bulkhead;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+
+import java.lang.reflect.Method;
+
+/**
+ * @WorkloadType 이 붙은 메서드를 호출하는 동안 WorkloadContext 를 지정하는 프록시
+ *
+ * ex. SettlementService settlement = WorkloadRouting.wrap(new SettlementService(...), SettlementService.class);
+ * - type 이 인터페이스면 JDK 프록시, 클래스면 CGLIB 프록시
+ * - @Transactional 프록시인 빈을 감싸야 트랜잭션이 커넥션을 빌리기 전에 작업 종류가 정해짐
+ */
+public class WorkloadRouting {
+
+    public static <T> T wrap(T target, Class<T> type) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        if (type.isInterface()) proxyFactory.addInterface(type);
+        else proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new WorkloadInterceptor());
+        return type.cast(proxyFactory.getProxy());
+    }
+
+    private static class WorkloadInterceptor implements MethodInterceptor {
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Workload workload = workloadOf(invocation);
+            if (null == workload) return invocation.proceed();
+
+            Workload previous = WorkloadContext.enter(workload);
+            try {
+                return invocation.proceed();
+            } finally {
+                WorkloadContext.restore(previous);
+            }
+        }
+
+        private static Workload workloadOf(MethodInvocation invocation) {
+            Class<?> targetClass = null == invocation.getThis() ? null : AopUtils.getTargetClass(invocation.getThis());
+            Method method = AopUtils.getMostSpecificMethod(invocation.getMethod(), targetClass);
+            WorkloadType type = AnnotatedElementUtils.findMergedAnnotation(method, WorkloadType.class);
+            if (null == type && null != targetClass) type = AnnotatedElementUtils.findMergedAnnotation(targetClass, WorkloadType.class);
+            return null == type ? null : type.value();
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package dev.riss.jdbc.connection.bulkhead;
+
+import java.lang.annotation.*;
+
+/**
+ * 이 메서드(클래스에 붙이면 모든 메서드)가 어떤 풀을 쓸지 지정 - WorkloadRouting.wrap 으로 만든 프록시에서 적용
+ * 메서드의 것이 클래스의 것보다 우선
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface WorkloadType {
+
+    Workload value();
+
+}
@@ -11,5 +11,12 @@ public class Member {
 
     private String memberId;
     private int money;
+    // 낙관적 락용 버전 (versioned 모드 리포지토리에서만 채워짐, 아니면 0)
+    private long version;
+
+    public Member(String memberId, int money) {
+        this.memberId = memberId;
+        this.money = money;
+    }
 
 }
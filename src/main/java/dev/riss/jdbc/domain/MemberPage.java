@@ -0,0 +1,25 @@
+package dev.riss.jdbc.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 키셋 페이지네이션 결과
+ * nextToken: 다음 페이지 조회 시 afterMemberId 로 넘길 값 (이 페이지 마지막 member_id). 마지막 페이지면 null
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class MemberPage {
+
+    private final List<Member> members;
+    private final String nextToken;
+
+    public boolean hasNext() {
+        return null != nextToken;
+    }
+
+}
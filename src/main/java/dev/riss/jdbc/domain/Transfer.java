@@ -0,0 +1,19 @@
+package dev.riss.jdbc.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 이체 요청 한 건 (fromId -> toId 로 money 만큼)
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class Transfer {
+
+    private final String fromId;
+    private final String toId;
+    private final int money;
+
+}
@@ -0,0 +1,29 @@
+package dev.riss.jdbc.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 일괄 이체에서 요청 한 건의 처리 결과
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class TransferResult {
+
+    public enum Status {
+        APPLIED,                // 반영됨
+        INSUFFICIENT_FUNDS,     // 앞선 이체까지 반영한 잔액이 부족
+        MEMBER_NOT_FOUND,       // 출금 또는 입금 회원 없음
+        INVALID                 // 금액이 0 이하, 검증 실패("ex") 등
+    }
+
+    private final Transfer transfer;
+    private final Status status;
+
+    public boolean isApplied() {
+        return Status.APPLIED == status;
+    }
+
+}
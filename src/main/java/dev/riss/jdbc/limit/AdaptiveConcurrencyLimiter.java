@@ -0,0 +1,241 @@
+package dev.riss.jdbc.limit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 적응형 동시 처리 한도 (admission control)
+ *
+ * 커넥션 풀이 바닥나면 요청들이 전부 커넥션을 기다리며 쌓이고, 모두의 응답 시간이 같이 늘어남
+ * -> 처리 중(in-flight) 요청 수를 limit 으로 제한하고, 넘는 요청은 최대 maxWait 동안만(최대 maxQueue 명) 기다렸다가 거절
+ *    받아들인 요청의 p99 는 일정하게 유지하고, 나머지는 빨리 실패(LimitExceededException)시킴
+ *
+ * limit 은 관측한 응답 시간으로 계속 조정
+ * - AIMD: 과부하 신호(dropped 또는 응답 시간 > latencyTarget)면 limit × BACKOFF, 아니고 limit 의 절반 이상을 쓰고 있으면 +1
+ * - VEGAS: 부하 없을 때 응답 시간(rttNoLoad, 관측 최소값)과 지금 응답 시간으로 DB 앞에 쌓인 요청 수를 추정
+ *          queue = limit × (1 - rttNoLoad / rtt). queue <= alpha 면 늘리고, >= beta 면 줄임 (alpha, beta 는 log10(limit) 배수)
+ *          dropped 면 limit × BACKOFF
+ *
+ * 사용: acquire() 로 받은 Permit 을 작업 후 success() 또는 dropped() 로 반납 (또는 call(Supplier))
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Algorithm {
+        AIMD, VEGAS
+    }
+
+    private static final double BACKOFF = 0.9;
+    private static final int VEGAS_PROBE_INTERVAL = 1000;      // 이만큼 표본마다 rttNoLoad 를 다시 잼 (워크로드 변화 반영)
+
+    private final Algorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final long maxWaitNanos;
+    private final int maxQueue;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long rttNoLoadNanos = Long.MAX_VALUE;
+    private long samples;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param latencyTarget AIMD 에서 이보다 느린 응답은 과부하 신호 (VEGAS 에서는 사용하지 않음)
+     * @param maxWait       limit 이 찼을 때 기다리는 최대 시간 (0 이면 바로 거절)
+     * @param maxQueue      기다릴 수 있는 최대 요청 수
+     */
+    public AdaptiveConcurrencyLimiter(Algorithm algorithm, int initialLimit, int minLimit, int maxLimit,
+                                      Duration latencyTarget, Duration maxWait, int maxQueue) {
+        if (minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("invalid limits initial=" + initialLimit + ", min=" + minLimit + ", max=" + maxLimit);
+        }
+        this.algorithm = algorithm;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.maxWaitNanos = maxWait.toNanos();
+        this.maxQueue = maxQueue;
+    }
+
+    /**
+     * 처리 권한을 받음. limit 이 찼으면 maxWait 동안 기다리고, 그래도 안 되거나 대기열이 가득이면 LimitExceededException
+     */
+    public Permit acquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) return admit();
+            if (0 == maxWaitNanos || waiting >= maxQueue) return reject();
+
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) return reject();
+                    remaining = released.awaitNanos(remaining);
+                }
+                return admit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return reject();
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 권한을 받아 work 실행 - 과부하 예외(ConcurrencyLimiting.isOverload)면 dropped, 그 외는 success 로 반납
+     * Error(OutOfMemoryError 등)도 finally 에서 반납 (dropped) -> inFlight 가 새지 않음
+     */
+    public <T> T call(Supplier<T> work) {
+        Permit permit = acquire();
+        boolean overload = true;
+        try {
+            T result = work.get();
+            overload = false;
+            return result;
+        } catch (RuntimeException e) {
+            overload = ConcurrencyLimiting.isOverload(e);
+            throw e;
+        } finally {
+            if (overload) permit.dropped();
+            else permit.success();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private Permit admit() {
+        inFlight++;
+        accepted.increment();
+        return new Permit(System.nanoTime());
+    }
+
+    private Permit reject() {
+        rejected.increment();
+        throw new LimitExceededException("concurrency limit exceeded limit=" + (int) limit + ", inFlight=" + inFlight + ", waiting=" + waiting);
+    }
+
+    private void release(long rttNanos, boolean overload) {
+        lock.lock();
+        try {
+            int previousInFlight = inFlight;
+            inFlight--;
+            int before = (int) limit;
+            limit = overload ? Math.max(minLimit, limit * BACKOFF) : update(rttNanos, previousInFlight);
+            if ((int) limit != before) log.debug("concurrency limit {} -> {} rtt={}us", before, (int) limit, rttNanos / 1000);
+            released.signalAll();     // limit 이 늘었으면 여러 명이 들어갈 수 있음
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double update(long rttNanos, int inFlightAtRelease) {
+        return switch (algorithm) {
+            case AIMD -> aimd(rttNanos, inFlightAtRelease);
+            case VEGAS -> vegas(rttNanos);
+        };
+    }
+
+    private double aimd(long rttNanos, int inFlightAtRelease) {
+        if (rttNanos > latencyTargetNanos) return Math.max(minLimit, limit * BACKOFF);
+        // 한도를 절반도 안 쓰고 있으면 늘릴 근거가 없음 (부하가 없어서 빠른 것)
+        if (inFlightAtRelease * 2 >= (int) limit) return Math.min(maxLimit, limit + 1);
+        return limit;
+    }
+
+    private double vegas(long rttNanos) {
+        if (0 == ++samples % VEGAS_PROBE_INTERVAL) rttNoLoadNanos = rttNanos;
+        else rttNoLoadNanos = Math.min(rttNoLoadNanos, rttNanos);
+
+        double log = Math.max(1, Math.log10(limit));
+        double queue = limit * (1 - (double) rttNoLoadNanos / Math.max(1, rttNanos));
+        if (queue <= 3 * log) return Math.min(maxLimit, limit + log);
+        if (queue >= 6 * log) return Math.max(minLimit, limit - log);
+        return limit;
+    }
+
+    /**
+     * 받아들인 요청 하나 - 끝나면 한 번만 반납 (success 또는 dropped)
+     */
+    public class Permit {
+
+        private final long startedAt;
+        private boolean released;
+
+        private Permit(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        // 정상 처리 (비즈니스 예외로 끝났어도 응답 시간은 유효)
+        public void success() {
+            finish(false);
+        }
+
+        // 과부하 신호 (커넥션 획득 실패, 쿼리 타임아웃 등)
+        public void dropped() {
+            AdaptiveConcurrencyLimiter.this.dropped.increment();
+            finish(true);
+        }
+
+        private void finish(boolean overload) {
+            if (released) return;
+            released = true;
+            release(System.nanoTime() - startedAt, overload);
+        }
+    }
+
+}
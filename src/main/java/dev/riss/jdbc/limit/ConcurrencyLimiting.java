@@ -0,0 +1,57 @@
+package dev.riss.jdbc.limit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+/**
+ * 서비스/리포지토리 앞에 AdaptiveConcurrencyLimiter 를 붙이는 프록시
+ *
+ * ex. MemberServiceV4 limited = ConcurrencyLimiting.wrap(memberService, MemberServiceV4.class, limiter);
+ *     MemberRepository limited = ConcurrencyLimiting.wrap(memberRepository, MemberRepository.class, limiter);
+ * - type 이 인터페이스면 JDK 프록시, 클래스면 CGLIB 프록시 (이미 @Transactional 프록시인 빈도 감쌀 수 있음)
+ * - 과부하 예외(커넥션 획득 실패, 트랜잭션 시작 실패, 락/쿼리 타임아웃 등 일시적 예외)는 dropped -> limit 을 줄임
+ *   그 외 예외(잔액 부족, 없는 회원 등)는 정상 응답과 같이 응답 시간만 반영
+ * - 한도를 넘으면 대상은 호출되지 않고 LimitExceededException
+ */
+public class ConcurrencyLimiting {
+
+    public static <T> T wrap(T target, Class<T> type, AdaptiveConcurrencyLimiter limiter) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        if (type.isInterface()) proxyFactory.addInterface(type);
+        else proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(new LimitInterceptor(limiter));
+        return type.cast(proxyFactory.getProxy());
+    }
+
+    static boolean isOverload(Throwable e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof CannotGetJdbcConnectionException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private record LimitInterceptor(AdaptiveConcurrencyLimiter limiter) implements MethodInterceptor {
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            // Object 의 메서드(toString 등)는 제한하지 않음
+            if (Object.class == invocation.getMethod().getDeclaringClass()) return invocation.proceed();
+
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+            try {
+                Object result = invocation.proceed();
+                permit.success();
+                return result;
+            } catch (Throwable e) {
+                // AdaptiveConcurrencyLimiter.call 과 같이 Error 도 과부하로 봄
+                if (e instanceof Error || isOverload(e)) permit.dropped();
+                else permit.success();
+                throw e;
+            }
+        }
+    }
+
+}
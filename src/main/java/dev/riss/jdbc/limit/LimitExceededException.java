@@ -0,0 +1,13 @@
+package dev.riss.jdbc.limit;
+
+/**
+ * 동시 처리 한도를 넘어서 받아들이지 않은 요청 (과부하 시 빠른 실패)
+ * 과부하일수록 자주 만들어지므로 스택 트레이스를 채우지 않음
+ */
+public class LimitExceededException extends RuntimeException {
+
+    public LimitExceededException(String message) {
+        super(message, null, true, false);
+    }
+
+}
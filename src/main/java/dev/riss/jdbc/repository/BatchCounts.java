@@ -0,0 +1,30 @@
+package dev.riss.jdbc.repository;
+
+import java.sql.BatchUpdateException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * 배치가 중간에 실패했을 때 입력 순서대로의 row 별 결과
+ * - 앞에서 끝난 executeBatch 들의 결과 (자동 커밋이면 이미 반영됨)
+ * - 실패한 executeBatch 에 대해 드라이버가 알려준 결과 (H2 는 실패한 row 만 EXECUTE_FAILED, 나머지는 계속 실행)
+ * - 드라이버가 결과를 주지 않았거나 아직 보내지 않은 row 는 EXECUTE_FAILED (반영되지 않음)
+ */
+class BatchCounts {
+
+    static int[] afterFailure(int[] results, int offset, BatchUpdateException e) {
+        int[] counts = results.clone();
+        int[] failedBatch = null == e.getUpdateCounts() ? new int[0] : e.getUpdateCounts();
+        int copied = Math.min(failedBatch.length, counts.length - offset);
+        System.arraycopy(failedBatch, 0, counts, offset, copied);
+        Arrays.fill(counts, offset + copied, counts.length, Statement.EXECUTE_FAILED);
+        return counts;
+    }
+
+    static String describe(String task, int[] counts) {
+        int failed = 0;
+        for (int count : counts) if (Statement.EXECUTE_FAILED == count) failed++;
+        return task + " batch failed, rows=" + counts.length + ", failed=" + failed;
+    }
+
+}
@@ -0,0 +1,37 @@
+package dev.riss.jdbc.repository;
+
+import java.util.NoSuchElementException;
+
+/**
+ * 조회 없이 증감(delta) UPDATE 두 번으로 이체
+ * - 출금: money >= 이체금액 조건을 UPDATE 문에 포함 -> 잔액 확인과 차감이 원자적으로 처리됨
+ * - 읽고(findById) 계산해서 덮어쓰는 방식이 아니므로 동시에 이체가 몰려도 갱신 손실이 없음 (높은 격리 수준 불필요)
+ * 두 UPDATE 가 함께 커밋/롤백되어야 하므로 트랜잭션 안에서 호출해야 함
+ */
+public class DeltaMemberTransfer implements MemberTransfer {
+
+    private final MemberRepository memberRepository;
+
+    public DeltaMemberTransfer(MemberRepository memberRepository) {
+        this.memberRepository = memberRepository;
+    }
+
+    @Override
+    public void transfer(String fromId, String toId, int money) {
+        // 음수면 출금 조건(money >= 이체금액)이 항상 참이 되어 받는 쪽에서 거꾸로 빠져나감 -> 쓰기 전에 거절
+        if (money <= 0) throw new IllegalArgumentException("money must be positive, money=" + money);
+        validation(toId);   // 쓰기 전에 검증 -> 실패하면 DB 에 아무것도 보내지 않음
+
+        if (!memberRepository.addMoney(fromId, -money, money)) {
+            throw new IllegalStateException("잔액 부족 또는 회원 없음 fromId=" + fromId);
+        }
+        if (!memberRepository.addMoney(toId, money)) {
+            throw new NoSuchElementException("member not found memberId=" + toId);   // 롤백되어 출금도 취소됨
+        }
+    }
+
+    private void validation(String toId) {
+        if (toId.equals("ex")) throw new IllegalStateException("이체 중 예외 발생");
+    }
+
+}
@@ -0,0 +1,107 @@
+package dev.riss.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.CallableStatementCallback;
+import org.springframework.jdbc.core.CallableStatementCreator;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Types;
+import java.util.NoSuchElementException;
+
+/**
+ * H2 사용자 정의 함수(CREATE ALIAS)로 DB 안에서 검증, 출금, 입금을 한 번에 처리
+ * 클라이언트는 CallableStatement 로 CALL 한 번만 보냄 -> tcp 로 붙어도 이체 당 DB 왕복 1번
+ *
+ * 함수는 소스 코드로 등록(CREATE ALIAS ... AS $$ ... $$)하기 때문에 H2 서버가 직접 컴파일함
+ * -> H2 서버가 JRE 가 아닌 JDK 위에서 떠 있어야 함 (클래스를 서버 classpath 에 올리지 않아도 됨)
+ *
+ * 함수 반환값
+ *  0: 성공, -1: 잔액 부족 또는 출금 회원 없음, -2: 입금 회원 없음, -3: 검증 실패("ex")
+ * 실패는 모두 출금 전에 판단하므로 DB 에 반영되는 게 없음.
+ * 출금 후 입금이 실패하는 경우(그 사이 입금 회원이 삭제)는 함수에서 예외를 던져서 CALL 문장 전체가 취소되게 함
+ *
+ * 두 UPDATE 모두 version 도 증가 (versioned 모드 리포지토리와 같은 규칙 -> updateIfVersion 으로 읽은 쪽이 이 이체를 덮어쓰지 않음)
+ * version 컬럼은 schema.sql 에 있음
+ */
+@Slf4j
+public class H2FunctionMemberTransfer implements MemberTransfer {
+
+    // 함수 본문을 바꾸면 이름도 바꿈 (IF NOT EXISTS 라서 DB 에 이미 등록된 이전 함수는 교체되지 않음)
+    static final String FUNCTION_NAME = "MEMBER_TRANSFER_V2";
+
+    private static final String CREATE_FUNCTION = """
+            CREATE ALIAS IF NOT EXISTS MEMBER_TRANSFER_V2 AS $$
+            int transfer(java.sql.Connection conn, String fromId, String toId, int money) throws java.sql.SQLException {
+                if ("ex".equals(toId)) return -3;
+                try (java.sql.PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM member WHERE member_id=?")) {
+                    pstmt.setString(1, toId);
+                    try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                        if (!rs.next()) return -2;
+                    }
+                }
+                try (java.sql.PreparedStatement pstmt = conn.prepareStatement("UPDATE member SET money=money-?, version=version+1 WHERE member_id=? AND money>=?")) {
+                    pstmt.setInt(1, money);
+                    pstmt.setString(2, fromId);
+                    pstmt.setInt(3, money);
+                    if (0 == pstmt.executeUpdate()) return -1;
+                }
+                try (java.sql.PreparedStatement pstmt = conn.prepareStatement("UPDATE member SET money=money+?, version=version+1 WHERE member_id=?")) {
+                    pstmt.setInt(1, money);
+                    pstmt.setString(2, toId);
+                    if (0 == pstmt.executeUpdate()) throw new java.sql.SQLException("member not found memberId=" + toId);
+                }
+                return 0;
+            }
+            $$
+            """;
+
+    private final JdbcTemplate template;
+
+    public H2FunctionMemberTransfer(DataSource dataSource) {
+        this.template = new JdbcTemplate(dataSource);
+        install();
+    }
+
+    /**
+     * 함수 등록 (IF NOT EXISTS 라서 여러 번 호출해도 됨). 생성 시점에 한 번 호출
+     */
+    public void install() {
+        template.execute(CREATE_FUNCTION);
+        log.info("h2 function installed name={}", FUNCTION_NAME);
+    }
+
+    @Override
+    public void transfer(String fromId, String toId, int money) {
+        // 함수 안의 출금 조건(money >= 이체금액)도 음수면 항상 참 -> CALL 전에 거절
+        if (money <= 0) throw new IllegalArgumentException("money must be positive, money=" + money);
+
+        // JdbcTemplate 이라서 트랜잭션 동기화된 커넥션 사용 -> @Transactional 안에서 호출하면 같은 트랜잭션으로 CALL
+        CallableStatementCreator csc = conn -> conn.prepareCall("{? = call " + FUNCTION_NAME + "(?, ?, ?)}");
+        CallableStatementCallback<Integer> action = cs -> {
+            cs.registerOutParameter(1, Types.INTEGER);
+            cs.setString(2, fromId);
+            cs.setString(3, toId);
+            cs.setInt(4, money);
+            cs.execute();
+            return cs.getInt(1);
+        };
+
+        Integer result = template.execute(csc, action);
+        log.info("transfer result={}", result);
+
+        switch (result) {
+            case 0:
+                return;
+            case -1:
+                throw new IllegalStateException("잔액 부족 또는 회원 없음 fromId=" + fromId);
+            case -2:
+                throw new NoSuchElementException("member not found memberId=" + toId);
+            case -3:
+                throw new IllegalStateException("이체 중 예외 발생");
+            default:
+                throw new IllegalStateException("unknown transfer result=" + result);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package dev.riss.jdbc.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * IN (?, ?, ...) 절의 모양(파라미터 개수)을 몇 가지로만 고정
+ *
+ * 조회하는 id 개수마다 파라미터 개수가 다른 sql 을 만들면, 개수마다 다른 sql 문자열이 되어서
+ * 드라이버/DB 쪽 statement(쿼리 플랜) 캐시를 계속 새로 채우게 됨
+ * => 1, 4, 16, 64 개짜리 모양만 사용하고, 남는 자리는 마지막 id 를 반복해서 채움 (IN 이라 결과는 같음)
+ * => 64 개를 넘으면 64 개씩 나눠서(chunk) 여러 번 조회
+ */
+final class InClauseShapes {
+
+    private static final int[] SHAPES = {1, 4, 16, 64};
+    static final int MAX_SHAPE = SHAPES[SHAPES.length - 1];
+
+    private static final String[] PLACEHOLDERS = new String[SHAPES.length];
+
+    static {
+        for (int i = 0; i < SHAPES.length; i++) {
+            PLACEHOLDERS[i] = "(" + String.join(", ", Collections.nCopies(SHAPES[i], "?")) + ")";
+        }
+    }
+
+    private InClauseShapes() {
+    }
+
+    /**
+     * size 개를 담을 수 있는 가장 작은 모양
+     */
+    static int shapeFor(int size) {
+        for (int shape : SHAPES) {
+            if (size <= shape) return shape;
+        }
+        throw new IllegalArgumentException("chunk size must be <= " + MAX_SHAPE + ", size=" + size);
+    }
+
+    /**
+     * ex. sql("SELECT * FROM member WHERE member_id IN ", 4) -> "SELECT * FROM member WHERE member_id IN (?, ?, ?, ?)"
+     */
+    static String sql(String prefix, int shape) {
+        for (int i = 0; i < SHAPES.length; i++) {
+            if (SHAPES[i] == shape) return prefix + PLACEHOLDERS[i];
+        }
+        throw new IllegalArgumentException("unknown shape=" + shape);
+    }
+
+    /**
+     * chunk 를 1번 파라미터부터 바인딩하고, 모양보다 모자라는 자리는 마지막 값으로 채움
+     */
+    static void bind(PreparedStatement pstmt, List<String> chunk, int shape) throws SQLException {
+        bind(pstmt, chunk, shape, 1);
+    }
+
+    /**
+     * IN 절 앞에 다른 파라미터가 있는 경우 - firstIndex 번 파라미터부터 바인딩
+     */
+    static void bind(PreparedStatement pstmt, List<String> chunk, int shape, int firstIndex) throws SQLException {
+        String last = chunk.get(chunk.size() - 1);
+        for (int i = 0; i < shape; i++) {
+            pstmt.setString(firstIndex + i, i < chunk.size() ? chunk.get(i) : last);
+        }
+    }
+
+}
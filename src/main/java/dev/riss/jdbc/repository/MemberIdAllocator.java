@@ -0,0 +1,142 @@
+package dev.riss.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * member_id 발급기 (hi/lo)
+ *
+ * 랜덤 id 를 만들어서 INSERT 해보고 키 중복이면 다시 시도하는 대신, DB 시퀀스에서 블록 단위로 id 범위를 예약해두고 메모리에서 나눠줌
+ * - 시퀀스 값 hi 하나 = [hi * blockSize, (hi + 1) * blockSize) 범위 -> 시퀀스 조회(DB 왕복)는 blockSize 개마다 한 번
+ * - 블록 안에서는 AtomicLong 으로 나눠줌 (락 없음). 블록을 다 쓴 경우에만 쓰레드 하나가 다음 블록을 받아옴
+ * - 시퀀스는 트랜잭션과 무관하게 증가하므로 다른 인스턴스(서버)와 겹치지 않음. 재시작하면 쓰다 남은 블록은 버려짐(빈 번호)
+ * - 같은 시퀀스를 쓰는 인스턴스는 모두 같은 blockSize 를 써야 함 (다르면 범위가 겹침)
+ * - 시퀀스(member_id_seq)는 schema.sql 에서 만듦
+ *
+ * id 는 10자리(member_id VARCHAR(10)) 36진수 문자열. 길이가 고정이라 문자열 순서 = 발급 순서 -> 인덱스 끝에 추가되는 형태
+ * timeOrdered = true 면 앞 6자리는 블록을 예약한 시각(초), 뒤 4자리는 번호 % 36^4 -> id 만으로 생성 시점(블록 예약 시점)을 알 수 있고 시간 순으로 정렬됨
+ * - 번호를 36^4 로 나눈 나머지만 쓰므로, 같은 초에 예약된 번호끼리 36^4 이상 차이 나면 id 가 겹침
+ *   -> 모든 인스턴스를 합쳐 1초에 36^4 = 1,679,616 개를 넘게 예약하지 않는다는 가정
+ * - 이 인스턴스 안에서 가정이 깨지면(같은 초에 예약한 범위가 36^4 를 넘으면) 겹치는 id 를 내주지 않고 IllegalStateException
+ * - 36^4 경계를 넘는 블록은 경계에서 자름 (뒤 4자리가 0 으로 돌아가면서 정렬 순서가 뒤집히지 않도록)
+ */
+@Slf4j
+public class MemberIdAllocator {
+
+    static final int ID_LENGTH = 10;
+    private static final int SEQUENCE_DIGITS = 4;
+    private static final long SEQUENCE_MODULO = 36L * 36 * 36 * 36;
+    private static final long EPOCH_SECOND = Instant.parse("2024-01-01T00:00:00Z").getEpochSecond();
+
+    private final JdbcTemplate template;
+    private final int blockSize;
+    private final boolean timeOrdered;
+    private final Clock clock;
+
+    private final AtomicReference<Block> current = new AtomicReference<>(Block.EMPTY);
+    private final Object refillLock = new Object();
+
+    // timeOrdered 용. refillLock 안에서만 읽고 씀
+    private long lastSecond;
+    private long secondStart;       // lastSecond 에 처음 예약한 번호
+
+    public MemberIdAllocator(DataSource dataSource, int blockSize) {
+        this(dataSource, blockSize, false);
+    }
+
+    public MemberIdAllocator(DataSource dataSource, int blockSize, boolean timeOrdered) {
+        this(dataSource, blockSize, timeOrdered, Clock.systemUTC());
+    }
+
+    MemberIdAllocator(DataSource dataSource, int blockSize, boolean timeOrdered, Clock clock) {
+        if (blockSize <= 0) throw new IllegalArgumentException("blockSize must be positive, blockSize=" + blockSize);
+        if (timeOrdered && blockSize > SEQUENCE_MODULO) {
+            throw new IllegalArgumentException("blockSize must not exceed " + SEQUENCE_MODULO + " when time ordered, blockSize=" + blockSize);
+        }
+        this.template = new JdbcTemplate(dataSource);
+        this.blockSize = blockSize;
+        this.timeOrdered = timeOrdered;
+        this.clock = clock;
+    }
+
+    public String nextId() {
+        while (true) {
+            Block block = current.get();
+            long value = block.next.getAndIncrement();
+            if (value < block.end) return timeOrdered ? timeOrderedId(block.second, value) : pad(Long.toString(value, 36), ID_LENGTH);
+            refill(block);
+        }
+    }
+
+    /**
+     * 블록에서 다음 번호. 블록이 남아있으면 DB 접근 없음
+     */
+    public long nextValue() {
+        while (true) {
+            Block block = current.get();
+            long value = block.next.getAndIncrement();
+            if (value < block.end) return value;
+            refill(block);
+        }
+    }
+
+    // 블록 소진 -> 하나의 쓰레드만 새 블록을 받아오고, 나머지는 기다렸다가 새 블록에서 다시 시도
+    private void refill(Block exhausted) {
+        synchronized (refillLock) {
+            if (current.get() == exhausted) current.set(fetchBlock());
+        }
+    }
+
+    private Block fetchBlock() {
+        Long hi = template.queryForObject("SELECT NEXT VALUE FOR member_id_seq", Long.class);
+        long start = hi * blockSize;
+        long end = start + blockSize;
+        if (!timeOrdered) {
+            log.debug("member id block reserved [{}, {})", start, end);
+            return new Block(start, end, 0);
+        }
+
+        end = Math.min(end, (start / SEQUENCE_MODULO + 1) * SEQUENCE_MODULO);     // 36^4 경계에서 자름
+        long now = clock.instant().getEpochSecond() - EPOCH_SECOND;
+        if (now > lastSecond) {         // 시계가 뒤로 가면 이전 초를 계속 씀 -> 순서 유지
+            lastSecond = now;
+            secondStart = start;
+        } else if (end - secondStart > SEQUENCE_MODULO) {
+            throw new IllegalStateException("too many member ids reserved in one second, range=["
+                    + secondStart + ", " + end + ") exceeds " + SEQUENCE_MODULO);
+        }
+        log.debug("member id block reserved [{}, {}) second={}", start, end, lastSecond);
+        return new Block(start, end, lastSecond);
+    }
+
+    private static String timeOrderedId(long second, long value) {
+        return pad(Long.toString(second, 36), ID_LENGTH - SEQUENCE_DIGITS)
+                + pad(Long.toString(value % SEQUENCE_MODULO, 36), SEQUENCE_DIGITS);
+    }
+
+    private static String pad(String digits, int length) {
+        if (digits.length() > length) throw new IllegalStateException("member id overflow digits=" + digits);
+        return "0".repeat(length - digits.length()) + digits;
+    }
+
+    private static class Block {
+        private static final Block EMPTY = new Block(0, 0, 0);
+
+        private final AtomicLong next;
+        private final long end;
+        private final long second;
+
+        private Block(long start, long end, long second) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+            this.second = second;
+        }
+    }
+
+}
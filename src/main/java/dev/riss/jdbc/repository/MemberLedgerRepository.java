@@ -0,0 +1,174 @@
+package dev.riss.jdbc.repository;
+
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.domain.Transfer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import javax.sql.DataSource;
+import java.util.*;
+
+/**
+ * 이체 원장(member_ledger) - 이체 한 건 = 변경되지 않는 row 한 줄 (INSERT 만 함)
+ *
+ * member.money 는 원장을 순서대로 반영한 결과(materialized balance)이고, 어디까지 반영했는지는 체크포인트 테이블에 ledger_id 로 기록
+ * - 반영된 잔액: member.money 그대로 (빠르지만 아직 반영 안 된 최근 이체가 빠져 있을 수 있음)
+ * - 정확한 잔액: member.money + 체크포인트 이후 원장(꼬리)의 입금 합 - 출금 합 (from_id, to_id 인덱스로 꼬리만 읽음)
+ *
+ * ledger_id 순서 = 커밋 순서여야 체크포인트 이후만 읽어도 빠지는 이체가 없음
+ * -> 원장 INSERT 와 반영(LedgerProjector)은 모두 체크포인트 row 락(lockCheckpoint)을 잡은 트랜잭션 안에서 함 (서버가 여러 대여도 줄을 섬)
+ * 원장 모드에서는 member.money 를 원장 반영 외에 직접 바꾸지 않음
+ * 테이블, 인덱스와 체크포인트 row('member')는 schema.sql 에서 만듦
+ */
+@Slf4j
+public class MemberLedgerRepository {
+
+    public enum BalanceRead {
+        MATERIALIZED,       // 반영된 잔액 (member.money)
+        EXACT               // 반영된 잔액 + 아직 반영 안 된 원장
+    }
+
+    private static final String PROJECTION = "member";
+
+    private final JdbcTemplate template;
+    private final int batchSize;
+
+    public MemberLedgerRepository(DataSource dataSource) {
+        this(dataSource, MemberRepository.DEFAULT_BATCH_SIZE);
+    }
+
+    public MemberLedgerRepository(DataSource dataSource, int batchSize) {
+        this.template = new JdbcTemplate(dataSource);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 원장에 이체들을 배치 INSERT (lockCheckpoint 를 잡은 트랜잭션 안에서 호출 - 전부 커밋/전부 롤백)
+     */
+    public void appendAll(List<Transfer> transfers) {
+        String sql = "INSERT INTO member_ledger(from_id, to_id, money) VALUES (?, ?, ?)";
+        template.batchUpdate(sql, transfers, batchSize, (pstmt, transfer) -> {
+            pstmt.setString(1, transfer.getFromId());
+            pstmt.setString(2, transfer.getToId());
+            pstmt.setInt(3, transfer.getMoney());
+        });
+    }
+
+    public Member findById(String memberId, BalanceRead read) {
+        if (BalanceRead.MATERIALIZED == read) {
+            return template.queryForObject("SELECT member_id, money FROM member WHERE member_id = ?",
+                    (rs, rowNum) -> new Member(rs.getString("member_id"), rs.getInt("money")), memberId);
+        }
+        String sql = "SELECT m.member_id, m.money + " + tailSum("c.last_ledger_id") + " AS money " +
+                "FROM member m, member_ledger_checkpoint c WHERE c.projection = ? AND m.member_id = ?";
+        return template.queryForObject(sql,
+                (rs, rowNum) -> new Member(rs.getString("member_id"), rs.getInt("money")), PROJECTION, memberId);
+    }
+
+    /**
+     * 체크포인트 row 를 FOR UPDATE 로 잡고 값을 반환 (트랜잭션 안에서 호출)
+     * 원장 추가와 반영이 이 락으로 줄을 서므로, 락을 잡은 동안 읽은 member.money 와 원장 꼬리는 같은 체크포인트 기준
+     */
+    public long lockCheckpoint() {
+        Long last = template.queryForObject("SELECT last_ledger_id FROM member_ledger_checkpoint WHERE projection = ? FOR UPDATE",
+                Long.class, PROJECTION);
+        return null == last ? 0 : last;
+    }
+
+    public void updateCheckpoint(long lastLedgerId) {
+        template.update("UPDATE member_ledger_checkpoint SET last_ledger_id = ? WHERE projection = ?", lastLedgerId, PROJECTION);
+    }
+
+    /**
+     * checkpoint 기준 정확한 잔액 (memberId -> 잔액). 없는 회원은 결과에서 빠짐
+     */
+    public Map<String, Integer> exactBalances(Collection<String> memberIds, long checkpoint) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(memberIds));
+        Map<String, Integer> balances = new HashMap<>();
+
+        for (int from = 0; from < ids.size(); from += InClauseShapes.MAX_SHAPE) {
+            List<String> chunk = ids.subList(from, Math.min(from + InClauseShapes.MAX_SHAPE, ids.size()));
+            int shape = InClauseShapes.shapeFor(chunk.size());
+            String sql = InClauseShapes.sql("SELECT m.member_id, m.money + " + tailSum("?") + " AS money FROM member m WHERE m.member_id IN ", shape);
+
+            // IN 절 앞에 체크포인트 2개
+            PreparedStatementSetter pss = pstmt -> {
+                pstmt.setLong(1, checkpoint);
+                pstmt.setLong(2, checkpoint);
+                InClauseShapes.bind(pstmt, chunk, shape, 3);
+            };
+            template.query(sql, pss, rs -> {
+                balances.put(rs.getString("member_id"), rs.getInt("money"));
+            });
+        }
+        return balances;
+    }
+
+    /**
+     * after 다음부터 최대 limit 개 원장을 계좌별 증감으로 합침. 반영할 원장이 없으면 deltas 가 빈 Map
+     * deltas 는 member_id 순서 (addMoneyAll 의 락 순서)
+     */
+    public Projection nextProjection(long after, int limit) {
+        // ledger_id 는 롤백 등으로 빈 번호가 생길 수 있으므로 개수와 마지막 id 를 따로 셈
+        long[] range = template.queryForObject("SELECT COUNT(*) AS entries, MAX(ledger_id) AS up_to FROM " +
+                        "(SELECT ledger_id FROM member_ledger WHERE ledger_id > ? ORDER BY ledger_id LIMIT ?)",
+                (rs, rowNum) -> new long[]{rs.getLong("entries"), rs.getLong("up_to")}, after, limit);
+        if (null == range || 0 == range[0]) return new Projection(after, 0, new TreeMap<>());
+        long upTo = range[1];
+
+        Map<String, Integer> deltas = new TreeMap<>();
+        String sql = "SELECT member_id, SUM(delta) AS delta FROM (" +
+                "SELECT to_id AS member_id, money AS delta FROM member_ledger WHERE ledger_id > ? AND ledger_id <= ? " +
+                "UNION ALL " +
+                "SELECT from_id AS member_id, -money AS delta FROM member_ledger WHERE ledger_id > ? AND ledger_id <= ?" +
+                ") GROUP BY member_id";
+        template.query(sql, rs -> {
+            deltas.put(rs.getString("member_id"), rs.getInt("delta"));
+        }, after, upTo, after, upTo);
+        deltas.values().removeIf(delta -> 0 == delta);
+        return new Projection(upTo, (int) range[0], deltas);
+    }
+
+    /**
+     * (after, upTo] 구간에서 memberIds 중 하나가 보내거나 받은 원장 (ledger_id 순, 한 원장은 한 번만)
+     * 반영할 수 없는 원장을 따로 남길 때 사용 (LedgerProjector)
+     */
+    public List<Entry> findEntries(long after, long upTo, Collection<String> memberIds) {
+        Map<Long, Entry> entries = new TreeMap<>();
+        String sql = "SELECT ledger_id, from_id, to_id, money FROM member_ledger " +
+                "WHERE ledger_id > ? AND ledger_id <= ? AND (from_id = ? OR to_id = ?)";
+        for (String memberId : new LinkedHashSet<>(memberIds)) {
+            template.query(sql, rs -> {
+                long ledgerId = rs.getLong("ledger_id");
+                entries.put(ledgerId, new Entry(ledgerId, rs.getString("from_id"), rs.getString("to_id"), rs.getInt("money")));
+            }, after, upTo, memberId, memberId);
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * 아직 반영되지 않은 원장 수
+     */
+    public long lag() {
+        Long lag = template.queryForObject("SELECT COUNT(*) FROM member_ledger l, member_ledger_checkpoint c " +
+                "WHERE c.projection = ? AND l.ledger_id > c.last_ledger_id", Long.class, PROJECTION);
+        return null == lag ? 0 : lag;
+    }
+
+    // 체크포인트(ledger_id > checkpoint) 이후 입금 합 - 출금 합
+    private static String tailSum(String checkpoint) {
+        return "COALESCE((SELECT SUM(l.money) FROM member_ledger l WHERE l.to_id = m.member_id AND l.ledger_id > " + checkpoint + "), 0) - " +
+                "COALESCE((SELECT SUM(l.money) FROM member_ledger l WHERE l.from_id = m.member_id AND l.ledger_id > " + checkpoint + "), 0)";
+    }
+
+    /**
+     * 원장 (after, upTo] 구간을 계좌별 증감으로 합친 결과
+     */
+    public record Projection(long upTo, int entries, Map<String, Integer> deltas) {
+    }
+
+    public record Entry(long ledgerId, String fromId, String toId, int money) {
+    }
+
+}
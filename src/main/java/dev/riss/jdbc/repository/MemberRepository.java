@@ -1,14 +1,131 @@
 package dev.riss.jdbc.repository;
 
 import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.domain.MemberPage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * * 런타임 예외와 인터페이스
  * 런타임 예외는 위의 문제에 있어서 자유롭기 때문에 따로 선언하지 않아도 됨. -> 인터페이스가 특정 기술에 종속적일 필요가 없음!!
  */
 public interface MemberRepository {
+
+    // 배치 한 번(executeBatch)에 보내는 기본 row 수. 구현체 생성자에서 변경 가능
+    int DEFAULT_BATCH_SIZE = 1000;
+    // streamAll 에서 DB 로부터 한 번에 가져오는 기본 row 수
+    int DEFAULT_FETCH_SIZE = 500;
+
     Member save(Member member);
     Member findById(String memberId);
+
+    /**
+     * 여러 id 를 IN 절로 한 번에 조회 (많으면 나눠서 조회). 결과는 memberId -> Member
+     * 없는 id 는 예외(NoSuchElementException)를 던지지 않고 결과 Map 에서 빠짐 -> 호출하는 쪽에서 판단
+     */
+    Map<String, Member> findAllByIds(Collection<String> memberIds);
+
+    /**
+     * 비관적 락: SELECT ... FOR UPDATE 로 조회하면서 row 락을 잡음 (트랜잭션이 끝날 때까지 다른 트랜잭션의 변경/락 대기)
+     * 트랜잭션 안에서 호출해야 의미 있음. 없으면 findById 와 같은 예외
+     */
+    Member findByIdForUpdate(String memberId);
+
+    /**
+     * 여러 회원을 member_id 오름차순으로 FOR UPDATE (오름차순 chunk 마다 IN ... ORDER BY member_id FOR UPDATE 한 번)
+     * -> 락 순서가 항상 같아서 이체끼리 데드락이 생기지 않음
+     * 결과는 memberId -> Member, 없는 id 는 결과에서 빠짐 (findAllByIds 와 같음)
+     */
+    Map<String, Member> lockAll(Collection<String> memberIds);
+
+    /**
+     * 전체 회원을 List 로 다 올리지 않고 하나씩 흘려보냄 (forward-only, read-only 커서, fetchSize 단위로 가져옴)
+     * -> 회원 수와 상관없이 메모리 사용량 일정
+     * 스트림이 커넥션을 물고 있으므로 반드시 닫아야 함 (try-with-resources). 닫을 때 커넥션 반환
+     */
+    Stream<Member> streamAll(int fetchSize);
+
+    /**
+     * 키셋 페이지네이션: member_id > afterMemberId 인 회원을 member_id 순으로 limit 개
+     * OFFSET 처럼 앞 페이지를 읽고 버리지 않고 PK 인덱스에서 바로 시작 위치를 찾으므로 몇 번째 페이지든 비용이 같음
+     * 첫 페이지는 afterMemberId = null, 다음 페이지는 이전 결과의 nextToken 을 넘김
+     */
+    MemberPage findPage(String afterMemberId, int limit);
     void update(String memberId, int money);
+
+    /**
+     * money = money + delta 를 UPDATE 한 번으로 처리 (조회 후 계산해서 덮어쓰지 않으므로 동시 이체에도 갱신 손실 없음)
+     * 대상 회원이 없으면 false
+     */
+    boolean addMoney(String memberId, int delta);
+
+    /**
+     * money >= requiredMoney 인 경우에만 delta 적용 (ex. 출금 시 requiredMoney = 출금액 -> 잔액 부족이면 반영 안됨)
+     * 조건을 만족하지 않거나 대상 회원이 없으면 false
+     */
+    boolean addMoney(String memberId, int delta, int requiredMoney);
+
+    /**
+     * 낙관적 락: 조회한 version 이 그대로일 때만 money 를 바꾸고 version 을 1 증가
+     * 조회 후 다른 트랜잭션이 먼저 바꿨으면(version 이 다르면) 반영하지 않고 false -> 호출한 쪽에서 다시 읽고 재시도
+     * version 컬럼을 쓰는 versioned 모드 리포지토리에서만 사용 가능 (컬럼은 schema.sql 로 만들어 둬야 함, 리포지토리는 DDL 을 실행하지 않음)
+     */
+    boolean updateIfVersion(String memberId, int money, long expectedVersion);
     void delete(String memberId);
+
+    /**
+     * 있으면 money 를 덮어쓰고 없으면 INSERT (MERGE INTO 한 문장, DB 왕복 1번)
+     * INSERT 됐으면 true, 이미 있어서 UPDATE 됐으면 false
+     */
+    boolean saveOrUpdate(Member member);
+
+    /**
+     * 없을 때만 INSERT. 이미 있으면 아무것도 하지 않고 false (키 중복 예외를 던지지 않음)
+     * -> INSERT 실패 후 예외를 잡아서 복구하는 흐름 대신 사용 (예외 생성, 변환 비용과 추가 왕복이 없음)
+     */
+    boolean insertIfAbsent(Member member);
+
+    /**
+     * JDBC 배치로 여러 건을 한 번에 처리 (batchSize 단위로 나눠서 executeBatch)
+     * 반환값은 입력 순서대로 각 row 에 대한 결과(영향받은 row 수, 드라이버가 모르면 Statement.SUCCESS_NO_INFO)
+     * 트랜잭션 밖(자동 커밋)에서 호출하면 중간에 실패해도 앞에서 처리된 row 는 이미 반영돼 있음. 전부 성공/전부 실패가 필요하면 트랜잭션 안에서 호출
+     * 중간에 실패하면 입력 순서대로의 row 별 결과를 예외로 넘겨줌 (V4_1: MyBatchUpdateException, V4_2/V5: PartialBatchUpdateException)
+     * -> 실패했거나 실행되지 않은 row 는 Statement.EXECUTE_FAILED
+     */
+    int[] saveAll(Collection<Member> members);
+    int[] updateAll(Collection<Member> members);
+    int[] deleteAll(Collection<String> memberIds);
+
+    /**
+     * addMoney(memberId, delta) 의 배치 버전 (memberId -> delta). 결과는 Map 의 순회 순서대로 영향받은 row 수
+     * 여러 트랜잭션이 동시에 호출한다면 TreeMap 처럼 항상 같은 순서로 넘겨야 row 락 순서가 엇갈리지 않음
+     */
+    int[] addMoneyAll(Map<String, Integer> deltas);
+
+    /**
+     * insertIfAbsent 의 배치 버전. 입력 순서대로 INSERT 됐는지 여부 (같은 id 가 여러 번 있으면 첫 번째만 true)
+     */
+    boolean[] insertIfAbsentAll(Collection<Member> members);
+
+    /**
+     * saveOrUpdate 의 배치 버전. 입력 순서대로 INSERT 됐는지 여부
+     * 배치 결과(row 수)로는 MERGE 가 INSERT 했는지 UPDATE 했는지 알 수 없어서
+     * insertIfAbsentAll 배치 후 INSERT 되지 않은 것만 updateAll 배치로 처리 (배치 2번)
+     * 두 배치 사이에 다른 곳에서 지운 회원은 반영되지 않음 -> 필요하면 트랜잭션 안에서 호출
+     */
+    default boolean[] saveOrUpdateAll(Collection<Member> members) {
+        boolean[] inserted = insertIfAbsentAll(members);
+
+        List<Member> existing = new ArrayList<>();
+        int index = 0;
+        for (Member member : members) {
+            if (!inserted[index++]) existing.add(member);
+        }
+        if (!existing.isEmpty()) updateAll(existing);
+        return inserted;
+    }
 }
@@ -1,14 +1,20 @@
 package dev.riss.jdbc.repository;
 
 import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.domain.MemberPage;
+import dev.riss.jdbc.repository.ex.MyBatchUpdateException;
 import dev.riss.jdbc.repository.ex.MyDbException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
 
 import javax.sql.DataSource;
 import java.sql.*;
-import java.util.NoSuchElementException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 예외 누수 문제 해결
@@ -20,9 +26,27 @@ import java.util.NoSuchElementException;
 public class MemberRepositoryV4_1 implements MemberRepository {
 
     private final DataSource dataSource;
+    private final int batchSize;
+    private final boolean versioned;
 
     public MemberRepositoryV4_1(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE);
+    }
+
+    public MemberRepositoryV4_1(DataSource dataSource, int batchSize) {
+        this(dataSource, batchSize, false);
+    }
+
+    // versioned = true -> 낙관적 락 모드 (version 컬럼 조회, 모든 변경에서 version 증가, updateIfVersion 사용 가능)
+    public MemberRepositoryV4_1(DataSource dataSource, boolean versioned) {
+        this(dataSource, DEFAULT_BATCH_SIZE, versioned);
+    }
+
+    public MemberRepositoryV4_1(DataSource dataSource, int batchSize, boolean versioned) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive, batchSize=" + batchSize);
         this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.versioned = versioned;
     }
 
     @Override
@@ -72,6 +96,94 @@ public class MemberRepositoryV4_1 implements MemberRepository {
                 Member member = new Member();
                 member.setMemberId(rs.getString("member_id"));
                 member.setMoney(rs.getInt("money"));
+                if (versioned) member.setVersion(rs.getLong("version"));
+                return member;
+
+            } else {
+                throw new NoSuchElementException("member not found memberId=" + memberId);
+            }
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds (Collection<String> memberIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(memberIds));     // 중복 id 제거
+        Map<String, Member> members = new HashMap<>();
+        if (ids.isEmpty()) return members;
+
+        String sql = null;
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+        ResultSet rs=null;
+
+        try {
+
+            conn=getConnection();
+
+            int preparedShape = 0;
+            for (int from = 0; from < ids.size(); from += InClauseShapes.MAX_SHAPE) {
+                List<String> chunk = ids.subList(from, Math.min(from + InClauseShapes.MAX_SHAPE, ids.size()));
+                int shape = InClauseShapes.shapeFor(chunk.size());
+
+                // 모양이 같으면(ex. 64개짜리 chunk 가 연속) 준비해둔 statement 재사용
+                if (shape != preparedShape) {
+                    JdbcUtils.closeStatement(pstmt);
+                    sql = InClauseShapes.sql("SELECT * FROM member WHERE member_id IN ", shape);
+                    pstmt = conn.prepareStatement(sql);
+                    preparedShape = shape;
+                }
+                InClauseShapes.bind(pstmt, chunk, shape);
+
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    Member member = new Member();
+                    member.setMemberId(rs.getString("member_id"));
+                    member.setMoney(rs.getInt("money"));
+                    if (versioned) member.setVersion(rs.getLong("version"));
+                    members.put(member.getMemberId(), member);
+                }
+                JdbcUtils.closeResultSet(rs);
+                rs = null;
+            }
+
+            if (members.size() < ids.size()) log.info("members not found count={}", ids.size() - members.size());
+            return members;
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public Member findByIdForUpdate (String memberId) {
+        // 트랜잭션 안에서 호출해야 함 (자동 커밋이면 조회가 끝나자마자 락이 풀림)
+        String sql = "SELECT * FROM member WHERE member_id = ? FOR UPDATE";
+
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+        ResultSet rs=null;
+
+        try {
+
+            conn=getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                if (versioned) member.setVersion(rs.getLong("version"));
                 return member;
 
             } else {
@@ -85,9 +197,230 @@ public class MemberRepositoryV4_1 implements MemberRepository {
         }
     }
 
+    @Override
+    public Map<String, Member> lockAll (Collection<String> memberIds) {
+        // id 를 member_id 오름차순으로 정렬해서 chunk 단위로 IN (...) ORDER BY member_id FOR UPDATE -> chunk 당 DB 왕복 1번
+        // chunk 도 오름차순으로 차례대로, chunk 안에서도 ORDER BY 순서대로 row 락을 잡으므로
+        // 모든 트랜잭션이 같은 순서로 락을 잡아서 서로 기다리는 순환(데드락)이 생기지 않음
+        List<String> ids = new ArrayList<>(new TreeSet<>(memberIds));
+        Map<String, Member> members = new HashMap<>();
+        if (ids.isEmpty()) return members;
+
+        String sql = null;
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+        ResultSet rs=null;
+
+        try {
+
+            conn=getConnection();
+
+            int preparedShape = 0;
+            for (int from = 0; from < ids.size(); from += InClauseShapes.MAX_SHAPE) {
+                List<String> chunk = ids.subList(from, Math.min(from + InClauseShapes.MAX_SHAPE, ids.size()));
+                int shape = InClauseShapes.shapeFor(chunk.size());
+
+                if (shape != preparedShape) {
+                    JdbcUtils.closeStatement(pstmt);
+                    sql = InClauseShapes.sql("SELECT * FROM member WHERE member_id IN ", shape) + " ORDER BY member_id FOR UPDATE";
+                    pstmt = conn.prepareStatement(sql);
+                    preparedShape = shape;
+                }
+                InClauseShapes.bind(pstmt, chunk, shape);
+
+                rs = pstmt.executeQuery();
+                while (rs.next()) {
+                    Member member = new Member();
+                    member.setMemberId(rs.getString("member_id"));
+                    member.setMoney(rs.getInt("money"));
+                    if (versioned) member.setVersion(rs.getLong("version"));
+                    members.put(member.getMemberId(), member);
+                }
+                JdbcUtils.closeResultSet(rs);
+                rs = null;
+            }
+
+            return members;
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public Stream<Member> streamAll (int fetchSize) {
+        String sql = "SELECT * FROM member";
+
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+        ResultSet rs=null;
+
+        try {
+
+            conn=getConnection();
+            // 앞으로만 읽는 읽기 전용 커서 -> 드라이버가 이미 읽은 row 를 들고 있을 필요 없음
+            pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            rs = pstmt.executeQuery();
+
+        } catch (SQLException e) {
+            close(conn, pstmt, rs);
+            throw new MyDbException(e);
+        }
+
+        // 여기서는 닫지 않고, 스트림을 닫을 때(onClose) 닫음
+        Connection streamConn = conn;
+        PreparedStatement streamPstmt = pstmt;
+        ResultSet streamRs = rs;
+
+        Spliterator<Member> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Member> action) {
+                try {
+                    if (!streamRs.next()) return false;
+
+                    Member member = new Member();
+                    member.setMemberId(streamRs.getString("member_id"));
+                    member.setMoney(streamRs.getInt("money"));
+                    if (versioned) member.setVersion(streamRs.getLong("version"));
+                    action.accept(member);
+                    return true;
+
+                } catch (SQLException e) {
+                    throw new MyDbException(e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> close(streamConn, streamPstmt, streamRs));
+    }
+
+    @Override
+    public MemberPage findPage (String afterMemberId, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive, limit=" + limit);
+
+        // limit + 1 개를 조회해서 다음 페이지가 있는지 확인 (COUNT 쿼리 없이)
+        String sql = null == afterMemberId
+                ? "SELECT * FROM member ORDER BY member_id LIMIT ?"
+                : "SELECT * FROM member WHERE member_id > ? ORDER BY member_id LIMIT ?";
+
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+        ResultSet rs=null;
+
+        try {
+
+            conn=getConnection();
+            pstmt = conn.prepareStatement(sql);
+            int index = 1;
+            if (null != afterMemberId) pstmt.setString(index++, afterMemberId);
+            pstmt.setInt(index, limit + 1);
+
+            rs = pstmt.executeQuery();
+
+            List<Member> members = new ArrayList<>(limit);
+            boolean hasNext = false;
+            while (rs.next()) {
+                if (members.size() == limit) {
+                    hasNext = true;
+                    break;
+                }
+                Member member = new Member();
+                member.setMemberId(rs.getString("member_id"));
+                member.setMoney(rs.getInt("money"));
+                if (versioned) member.setVersion(rs.getLong("version"));
+                members.add(member);
+            }
+
+            return new MemberPage(members, hasNext ? members.get(members.size() - 1).getMemberId() : null);
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
     @Override
     public void update (String memberId, int money) {
-        String sql = "UPDATE member SET money=? WHERE member_id=?";
+        String sql = "UPDATE member SET money=?" + versionBump() + " WHERE member_id=?";
+
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+
+        try {
+
+            conn=getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setInt(1, money);
+            pstmt.setString(2, memberId);
+            int resultSize = pstmt.executeUpdate();
+            log.info("resultSize (해당 쿼리를 통해 변경된 tuple(row) 수) = {}", resultSize);
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
+    @Override
+    public boolean addMoney (String memberId, int delta) {
+        String sql = "UPDATE member SET money=money+?" + versionBump() + " WHERE member_id=?";
+
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+
+        try {
+
+            conn=getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setInt(1, delta);
+            pstmt.setString(2, memberId);
+            int resultSize = pstmt.executeUpdate();
+            log.info("resultSize (해당 쿼리를 통해 변경된 tuple(row) 수) = {}", resultSize);
+            return 0 < resultSize;
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
+    @Override
+    public boolean addMoney (String memberId, int delta, int requiredMoney) {
+        // 조건(money >= ?)을 WHERE 에 넣어서 확인과 변경을 한 문장으로 -> 조건이 안 맞으면 변경된 row 가 0
+        String sql = "UPDATE member SET money=money+?" + versionBump() + " WHERE member_id=? AND money>=?";
+
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+
+        try {
+
+            conn=getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setInt(1, delta);
+            pstmt.setString(2, memberId);
+            pstmt.setInt(3, requiredMoney);
+            int resultSize = pstmt.executeUpdate();
+            log.info("resultSize (해당 쿼리를 통해 변경된 tuple(row) 수) = {}", resultSize);
+            return 0 < resultSize;
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
+    @Override
+    public boolean updateIfVersion (String memberId, int money, long expectedVersion) {
+        if (!versioned) throw new IllegalStateException("updateIfVersion requires versioned mode");
+        // 조회한 뒤로 아무도 안 바꿨을 때(version 그대로)만 변경 -> 누가 먼저 바꿨으면 변경된 row 가 0
+        String sql = "UPDATE member SET money=?, version=version+1 WHERE member_id=? AND version=?";
 
         Connection conn=null;
         PreparedStatement pstmt=null;
@@ -98,8 +431,10 @@ public class MemberRepositoryV4_1 implements MemberRepository {
             pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
+            pstmt.setLong(3, expectedVersion);
             int resultSize = pstmt.executeUpdate();
             log.info("resultSize (해당 쿼리를 통해 변경된 tuple(row) 수) = {}", resultSize);
+            return 0 < resultSize;
 
         } catch (SQLException e) {
             throw new MyDbException(e);
@@ -131,6 +466,157 @@ public class MemberRepositoryV4_1 implements MemberRepository {
 
     }
 
+    @Override
+    public boolean saveOrUpdate (Member member) {
+        // OLD TABLE: MERGE 로 바뀌기 전의 row (UPDATE 된 경우만 나옴) -> 0 개면 INSERT, 1 개면 UPDATE
+        String sql = "SELECT COUNT(*) FROM OLD TABLE (" +
+                "MERGE INTO member t USING (VALUES (?, ?)) s(member_id, money) ON t.member_id = s.member_id " +
+                "WHEN MATCHED THEN UPDATE SET t.money = s.money" + versionBump() + " " +
+                "WHEN NOT MATCHED THEN INSERT (member_id, money) VALUES (s.member_id, s.money))";
+
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+        ResultSet rs=null;
+
+        try {
+
+            conn=getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+            rs = pstmt.executeQuery();
+            rs.next();
+            return 0 == rs.getInt(1);
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, rs);
+        }
+    }
+
+    @Override
+    public boolean insertIfAbsent (Member member) {
+        // WHEN MATCHED 가 없으므로 이미 있으면 아무것도 안 함 (변경된 row 수 0)
+        String sql = "MERGE INTO member t USING (VALUES (?, ?)) s(member_id, money) ON t.member_id = s.member_id " +
+                "WHEN NOT MATCHED THEN INSERT (member_id, money) VALUES (s.member_id, s.money)";
+
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+
+        try {
+
+            conn=getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+            return 0 < pstmt.executeUpdate();
+
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
+    @Override
+    public int[] saveAll (Collection<Member> members) {
+        String sql = "INSERT INTO member(member_id, money) VALUES (?, ?)";
+        return executeBatch("saveAll", sql, members, (pstmt, member) -> {
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+        });
+    }
+
+    @Override
+    public int[] updateAll (Collection<Member> members) {
+        String sql = "UPDATE member SET money=?" + versionBump() + " WHERE member_id=?";
+        return executeBatch("updateAll", sql, members, (pstmt, member) -> {
+            pstmt.setInt(1, member.getMoney());
+            pstmt.setString(2, member.getMemberId());
+        });
+    }
+
+    @Override
+    public int[] deleteAll (Collection<String> memberIds) {
+        String sql = "DELETE FROM member WHERE member_id=?";
+        return executeBatch("deleteAll", sql, memberIds, (pstmt, memberId) -> pstmt.setString(1, memberId));
+    }
+
+    @Override
+    public boolean[] insertIfAbsentAll (Collection<Member> members) {
+        String sql = "MERGE INTO member t USING (VALUES (?, ?)) s(member_id, money) ON t.member_id = s.member_id " +
+                "WHEN NOT MATCHED THEN INSERT (member_id, money) VALUES (s.member_id, s.money)";
+        int[] counts = executeBatch("insertIfAbsentAll", sql, members, (pstmt, member) -> {
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+        });
+
+        boolean[] inserted = new boolean[counts.length];
+        for (int i = 0; i < counts.length; i++) inserted[i] = 0 < counts[i];
+        return inserted;
+    }
+
+    @Override
+    public int[] addMoneyAll (Map<String, Integer> deltas) {
+        String sql = "UPDATE member SET money=money+?" + versionBump() + " WHERE member_id=?";
+        return executeBatch("addMoneyAll", sql, deltas.entrySet(), (pstmt, delta) -> {
+            pstmt.setInt(1, delta.getValue());
+            pstmt.setString(2, delta.getKey());
+        });
+    }
+
+    /**
+     * 같은 PreparedStatement 에 addBatch 로 쌓아두고 batchSize 마다 executeBatch -> batchSize 건당 DB 왕복 1번
+     * 결과는 입력 순서대로 results 에 채움
+     */
+    private <T> int[] executeBatch (String task, String sql, Collection<T> items, ParameterizedPreparedStatementSetter<T> pss) {
+        int[] results = new int[items.size()];
+        int done = 0;
+
+        Connection conn=null;
+        PreparedStatement pstmt=null;
+
+        try {
+
+            conn=getConnection();
+            pstmt = conn.prepareStatement(sql);
+
+            int pending = 0;
+            for (T item : items) {
+                pss.setValues(pstmt, item);
+                pstmt.addBatch();
+                if (++pending == batchSize) {
+                    done = flush(pstmt, results, done);
+                    pending = 0;
+                }
+            }
+            if (0 < pending) done = flush(pstmt, results, done);
+            log.info("{} resultSize (배치로 처리된 row 수) = {}", task, done);
+
+            return results;
+
+        } catch (BatchUpdateException e) {
+            int[] counts = BatchCounts.afterFailure(results, done, e);
+            throw new MyBatchUpdateException(BatchCounts.describe(task, counts), e, counts);
+        } catch (SQLException e) {
+            throw new MyDbException(e);
+        } finally {
+            close(conn, pstmt, null);
+        }
+    }
+
+    // versioned 모드면 변경할 때마다 version 도 증가 -> 낙관적 락으로 읽은 쪽이 다른 변경(update, addMoney 등)을 감지할 수 있음
+    private String versionBump () {
+        return versioned ? ", version=version+1" : "";
+    }
+
+    private int flush (PreparedStatement pstmt, int[] results, int offset) throws SQLException {
+        int[] counts = pstmt.executeBatch();
+        System.arraycopy(counts, 0, results, offset, counts.length);
+        return offset + counts.length;
+    }
+
     private void close (Connection conn, Statement stmt, ResultSet rs) {
 
         JdbcUtils.closeResultSet(rs);
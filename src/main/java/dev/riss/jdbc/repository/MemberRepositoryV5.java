@@ -1,11 +1,21 @@
 package dev.riss.jdbc.repository;
 
 import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.domain.MemberPage;
+import dev.riss.jdbc.repository.ex.PartialBatchUpdateException;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.*;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
 
 import javax.sql.DataSource;
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * JdbcTemplate 사용
@@ -18,9 +28,33 @@ import javax.sql.DataSource;
 public class MemberRepositoryV5 implements MemberRepository {
 
     private final JdbcTemplate template;
+    private final int batchSize;
+    private final boolean versioned;
 
     public MemberRepositoryV5(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE);
+    }
+
+    public MemberRepositoryV5(DataSource dataSource, int batchSize) {
+        this(dataSource, batchSize, false);
+    }
+
+    // versioned = true -> 낙관적 락 모드 (version 컬럼 조회, 모든 변경에서 version 증가, updateIfVersion 사용 가능)
+    public MemberRepositoryV5(DataSource dataSource, boolean versioned) {
+        this(dataSource, DEFAULT_BATCH_SIZE, versioned);
+    }
+
+    public MemberRepositoryV5(DataSource dataSource, int batchSize, boolean versioned) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive, batchSize=" + batchSize);
         this.template=new JdbcTemplate(dataSource);
+        this.batchSize = batchSize;
+        this.versioned = versioned;
+    }
+
+    // JdbcTemplate 의 기본 변환기(SQLErrorCodeSQLExceptionTranslator) 대신 사용할 변환기 지정
+    public MemberRepositoryV5(DataSource dataSource, SQLExceptionTranslator exTranslator) {
+        this(dataSource);
+        this.template.setExceptionTranslator(exTranslator);
     }
 
     @Override
@@ -39,23 +73,222 @@ public class MemberRepositoryV5 implements MemberRepository {
         // 물론 매핑시킬 RowMapper<T> 는 구현해야 함 (기존처럼 resultSet 의 커서가 가리키는 column 이용하고 여러개면 next 자동으로 해주는 듯)
     }
 
+    @Override
+    public Map<String, Member> findAllByIds (Collection<String> memberIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(memberIds));     // 중복 id 제거
+        Map<String, Member> members = new HashMap<>();
+
+        for (int from = 0; from < ids.size(); from += InClauseShapes.MAX_SHAPE) {
+            List<String> chunk = ids.subList(from, Math.min(from + InClauseShapes.MAX_SHAPE, ids.size()));
+            int shape = InClauseShapes.shapeFor(chunk.size());
+            String sql = InClauseShapes.sql("SELECT * FROM member WHERE member_id IN ", shape);
+
+            PreparedStatementSetter pss = pstmt -> InClauseShapes.bind(pstmt, chunk, shape);
+            for (Member member : template.query(sql, pss, memberRowMapper())) {
+                members.put(member.getMemberId(), member);
+            }
+        }
+
+        if (members.size() < ids.size()) log.info("members not found count={}", ids.size() - members.size());
+        return members;
+    }
+
+    @Override
+    public Member findByIdForUpdate (String memberId) {
+        // 트랜잭션 안에서 호출해야 함 (자동 커밋이면 조회가 끝나자마자 락이 풀림)
+        String sql = "SELECT * FROM member WHERE member_id = ? FOR UPDATE";
+        return template.queryForObject(sql, memberRowMapper(), memberId);
+    }
+
+    @Override
+    public Map<String, Member> lockAll (Collection<String> memberIds) {
+        // 오름차순으로 정렬한 chunk 마다 IN (...) ORDER BY member_id FOR UPDATE 한 번
+        // -> 모든 트랜잭션이 같은 순서로 락을 잡으므로 데드락이 생기지 않음
+        List<String> ids = new ArrayList<>(new TreeSet<>(memberIds));
+        Map<String, Member> members = new HashMap<>();
+
+        for (int from = 0; from < ids.size(); from += InClauseShapes.MAX_SHAPE) {
+            List<String> chunk = ids.subList(from, Math.min(from + InClauseShapes.MAX_SHAPE, ids.size()));
+            int shape = InClauseShapes.shapeFor(chunk.size());
+            String sql = InClauseShapes.sql("SELECT * FROM member WHERE member_id IN ", shape) + " ORDER BY member_id FOR UPDATE";
+
+            PreparedStatementSetter pss = pstmt -> InClauseShapes.bind(pstmt, chunk, shape);
+            for (Member member : template.query(sql, pss, memberRowMapper())) {
+                members.put(member.getMemberId(), member);
+            }
+        }
+        return members;
+    }
+
+    @Override
+    public Stream<Member> streamAll (int fetchSize) {
+        String sql = "SELECT * FROM member";
+        PreparedStatementCreator psc = conn -> {
+            PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(fetchSize);
+            return pstmt;
+        };
+        // queryForStream: ResultSet 을 열어둔 채로 Stream 반환, 스트림을 닫으면 ResultSet, Statement, Connection 정리
+        return template.queryForStream(psc, memberRowMapper());
+    }
+
+    @Override
+    public MemberPage findPage (String afterMemberId, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive, limit=" + limit);
+
+        // limit + 1 개를 조회해서 다음 페이지가 있는지 확인 (COUNT 쿼리 없이)
+        List<Member> members = null == afterMemberId
+                ? template.query("SELECT * FROM member ORDER BY member_id LIMIT ?", memberRowMapper(), limit + 1)
+                : template.query("SELECT * FROM member WHERE member_id > ? ORDER BY member_id LIMIT ?", memberRowMapper(), afterMemberId, limit + 1);
+
+        if (members.size() <= limit) return new MemberPage(members, null);
+
+        List<Member> page = members.subList(0, limit);
+        return new MemberPage(page, page.get(limit - 1).getMemberId());
+    }
+
     @Override
     public void update (String memberId, int money) {
-        String sql = "UPDATE member SET money=? WHERE member_id=?";
+        String sql = "UPDATE member SET money=?" + versionBump() + " WHERE member_id=?";
         template.update(sql, money, memberId);
     }
 
+    @Override
+    public boolean addMoney (String memberId, int delta) {
+        String sql = "UPDATE member SET money=money+?" + versionBump() + " WHERE member_id=?";
+        return 0 < template.update(sql, delta, memberId);
+    }
+
+    @Override
+    public boolean addMoney (String memberId, int delta, int requiredMoney) {
+        String sql = "UPDATE member SET money=money+?" + versionBump() + " WHERE member_id=? AND money>=?";
+        return 0 < template.update(sql, delta, memberId, requiredMoney);
+    }
+
+    @Override
+    public boolean updateIfVersion (String memberId, int money, long expectedVersion) {
+        if (!versioned) throw new IllegalStateException("updateIfVersion requires versioned mode");
+        String sql = "UPDATE member SET money=?, version=version+1 WHERE member_id=? AND version=?";
+        return 0 < template.update(sql, money, memberId, expectedVersion);
+    }
+
     @Override
     public void delete (String memberId) {
         String sql = "DELETE FROM member WHERE member_id=?";
         template.update(sql, memberId);
     }
 
+    @Override
+    public boolean saveOrUpdate (Member member) {
+        // OLD TABLE: MERGE 로 바뀌기 전의 row (UPDATE 된 경우만 나옴) -> 0 개면 INSERT, 1 개면 UPDATE
+        String sql = "SELECT COUNT(*) FROM OLD TABLE (" +
+                "MERGE INTO member t USING (VALUES (?, ?)) s(member_id, money) ON t.member_id = s.member_id " +
+                "WHEN MATCHED THEN UPDATE SET t.money = s.money" + versionBump() + " " +
+                "WHEN NOT MATCHED THEN INSERT (member_id, money) VALUES (s.member_id, s.money))";
+        Integer updated = template.queryForObject(sql, Integer.class, member.getMemberId(), member.getMoney());
+        return null != updated && 0 == updated;
+    }
+
+    @Override
+    public boolean insertIfAbsent (Member member) {
+        String sql = "MERGE INTO member t USING (VALUES (?, ?)) s(member_id, money) ON t.member_id = s.member_id " +
+                "WHEN NOT MATCHED THEN INSERT (member_id, money) VALUES (s.member_id, s.money)";
+        return 0 < template.update(sql, member.getMemberId(), member.getMoney());
+    }
+
+    @Override
+    public int[] saveAll (Collection<Member> members) {
+        String sql = "INSERT INTO member(member_id, money) VALUES (?, ?)";
+        return executeBatch("saveAll", sql, members, (pstmt, member) -> {
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+        });
+    }
+
+    @Override
+    public int[] updateAll (Collection<Member> members) {
+        String sql = "UPDATE member SET money=?" + versionBump() + " WHERE member_id=?";
+        return executeBatch("updateAll", sql, members, (pstmt, member) -> {
+            pstmt.setInt(1, member.getMoney());
+            pstmt.setString(2, member.getMemberId());
+        });
+    }
+
+    @Override
+    public int[] deleteAll (Collection<String> memberIds) {
+        String sql = "DELETE FROM member WHERE member_id=?";
+        return executeBatch("deleteAll", sql, memberIds, (pstmt, memberId) -> pstmt.setString(1, memberId));
+    }
+
+    @Override
+    public int[] addMoneyAll (Map<String, Integer> deltas) {
+        String sql = "UPDATE member SET money=money+?" + versionBump() + " WHERE member_id=?";
+        return executeBatch("addMoneyAll", sql, deltas.entrySet(), (pstmt, delta) -> {
+            pstmt.setInt(1, delta.getValue());
+            pstmt.setString(2, delta.getKey());
+        });
+    }
+
+    @Override
+    public boolean[] insertIfAbsentAll (Collection<Member> members) {
+        String sql = "MERGE INTO member t USING (VALUES (?, ?)) s(member_id, money) ON t.member_id = s.member_id " +
+                "WHEN NOT MATCHED THEN INSERT (member_id, money) VALUES (s.member_id, s.money)";
+        int[] counts = executeBatch("insertIfAbsentAll", sql, members, (pstmt, member) -> {
+            pstmt.setString(1, member.getMemberId());
+            pstmt.setInt(2, member.getMoney());
+        });
+
+        boolean[] inserted = new boolean[counts.length];
+        for (int i = 0; i < counts.length; i++) inserted[i] = 0 < counts[i];
+        return inserted;
+    }
+
+    // versioned 모드면 변경할 때마다 version 도 증가 -> 낙관적 락으로 읽은 쪽이 다른 변경(update, addMoney 등)을 감지할 수 있음
+    private String versionBump () {
+        return versioned ? ", version=version+1" : "";
+    }
+
+    /**
+     * batchSize 마다 executeBatch (JdbcTemplate.batchUpdate 와 같지만, 실패하면 입력 순서대로 row 별 결과를 PartialBatchUpdateException 으로 넘겨줌)
+     * template.execute 로 실행하므로 커넥션 동기화/반환은 그대로
+     */
+    private <T> int[] executeBatch (String task, String sql, Collection<T> items, ParameterizedPreparedStatementSetter<T> pss) {
+        return template.execute(sql, (PreparedStatementCallback<int[]>) pstmt -> {
+            int[] results = new int[items.size()];
+            int done = 0;
+            int pending = 0;
+            try {
+                for (T item : items) {
+                    pss.setValues(pstmt, item);
+                    pstmt.addBatch();
+                    if (++pending == batchSize) {
+                        done = flush(pstmt, results, done);
+                        pending = 0;
+                    }
+                }
+                if (0 < pending) flush(pstmt, results, done);
+                return results;
+            } catch (BatchUpdateException e) {
+                int[] counts = BatchCounts.afterFailure(results, done, e);
+                DataAccessException translated = template.getExceptionTranslator().translate(task, sql, e);
+                throw new PartialBatchUpdateException(BatchCounts.describe(task, counts),
+                        null == translated ? new UncategorizedSQLException(task, sql, e) : translated, counts);
+            }
+        });
+    }
+
+    private int flush (PreparedStatement pstmt, int[] results, int offset) throws SQLException {
+        int[] counts = pstmt.executeBatch();
+        System.arraycopy(counts, 0, results, offset, counts.length);
+        return offset + counts.length;
+    }
+
     private RowMapper<Member> memberRowMapper () {
         return (rs, rowNum) -> {
             Member member = new Member();
             member.setMemberId(rs.getString("member_id"));
             member.setMoney(rs.getInt("money"));
+            if (versioned) member.setVersion(rs.getLong("version"));
 
             return member;
         };
@@ -0,0 +1,16 @@
+package dev.riss.jdbc.repository;
+
+/**
+ * 이체 전략 - 출금/입금/검증을 어디서(클라이언트 or DB 안) 몇 번의 왕복으로 처리할지 구현체마다 다름
+ * 설정 시점에 빈으로 골라서 MemberServiceV4 에 주입
+ * - DeltaMemberTransfer: 증감 UPDATE 두 번 (MemberRepository 사용, DB 종류 무관)
+ * - H2FunctionMemberTransfer: H2 사용자 정의 함수를 CALL 한 번 (DB 왕복 1번, H2 전용)
+ *
+ * 실패 시 예외는 기존 이체와 같게 맞춤
+ * - 이체 금액이 0 이하 => IllegalArgumentException (DB 에 아무것도 보내지 않음)
+ * - 잔액 부족, 출금 회원 없음, 검증 실패 => IllegalStateException
+ * - 입금 회원 없음 => NoSuchElementException
+ */
+public interface MemberTransfer {
+    void transfer(String fromId, String toId, int money);
+}
@@ -0,0 +1,50 @@
+package dev.riss.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * 자동으로 처리하지 못한 이체를 남겨두는 테이블(transfer_dead_letter) - 사람이 확인하고 직접 처리할 대상
+ * ex. 출금 후 입금이 실패했는데 환불까지 실패한 경우 (ShardedTransferSequencer) -> 돈이 어디로 가야 하는지 로그가 아니라 DB 에 남김
+ *
+ * INSERT 만 하고 처리 여부는 관리하지 않음 (처리 후 지우는 건 운영 쪽 몫). 테이블은 schema.sql 에 있음
+ */
+@Slf4j
+public class TransferDeadLetterRepository {
+
+    private final JdbcTemplate template;
+
+    public TransferDeadLetterRepository(DataSource dataSource) {
+        this.template = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * 트랜잭션이 있으면 참여함 -> 같이 롤백되면 안 되는 기록이면 트랜잭션 밖에서 호출
+     */
+    public void record(String source, String fromId, String toId, int money, String reason) {
+        String sql = "INSERT INTO transfer_dead_letter(source, from_id, to_id, money, reason) VALUES (?, ?, ?, ?, ?)";
+        template.update(sql, source, fromId, toId, money, truncate(reason));
+        log.warn("dead letter recorded source={}, fromId={}, toId={}, money={}, reason={}", source, fromId, toId, money, reason);
+    }
+
+    public List<DeadLetter> findBySource(String source) {
+        String sql = "SELECT * FROM transfer_dead_letter WHERE source = ? ORDER BY dead_letter_id";
+        return template.query(sql, (rs, rowNum) -> new DeadLetter(rs.getLong("dead_letter_id"), rs.getString("source"),
+                rs.getString("from_id"), rs.getString("to_id"), rs.getInt("money"), rs.getString("reason")), source);
+    }
+
+    public void deleteBySource(String source) {
+        template.update("DELETE FROM transfer_dead_letter WHERE source = ?", source);
+    }
+
+    private static String truncate(String reason) {
+        return null == reason || reason.length() <= 500 ? reason : reason.substring(0, 500);
+    }
+
+    public record DeadLetter(long deadLetterId, String source, String fromId, String toId, int money, String reason) {
+    }
+
+}
@@ -0,0 +1,29 @@
+package dev.riss.jdbc.repository.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 캐시 통계 스냅샷 (크기 조정용)
+ * - evictionCount: 크기 제한으로 밀려난 수 (rejectionCount 는 그 중 입장 정책에서 후보가 진 경우)
+ * - expirationCount: TTL 이 지나서 버려진 수
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long rejectionCount;
+    private final long expirationCount;
+    private final int size;
+
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return 0 == requests ? 0.0 : (double) hitCount / requests;
+    }
+
+}
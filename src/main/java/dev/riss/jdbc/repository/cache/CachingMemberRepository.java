@@ -0,0 +1,240 @@
+package dev.riss.jdbc.repository.cache;
+
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.domain.MemberPage;
+import dev.riss.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * 읽기 캐시 데코레이터 (read-through) - 다른 MemberRepository 를 감싸서 findById 결과를 캐시
+ *
+ * 트랜잭션을 고려한 무효화
+ * - 쓰기(save, update, addMoney, delete ...)는 즉시 캐시에서 지우고, 트랜잭션 안이면 트랜잭션이 끝날 때(커밋/롤백) 한 번 더 지움
+ *   -> 트랜잭션 도중 다른 쓰레드가 (커밋 전 값인) 예전 값을 읽어서 채워둔 경우도 정리됨
+ * - 현재 트랜잭션에서 쓴 키는 그 트랜잭션이 끝날 때까지 캐시를 거치지 않고 DB 에서 읽고, 캐시에 넣지도 않음
+ *   -> 커밋 전 값이 캐시에 들어가지 않으므로 롤백된 이체(MemberServiceV4 의 "ex" 예외 등)가 캐시를 오염시키지 않음
+ * - 조회 전에 받아둔 키별 stamp 로 put -> 조회하는 사이 그 키가 무효화됐으면 캐시에 넣지 않음 (다른 계좌의 쓰기는 상관없음)
+ *
+ * 캐시에는 복사본을 넣고 꺼낼 때도 복사본을 줌 (Member 가 가변 객체라서 호출한 쪽에서 바꿔도 캐시에 영향 없게)
+ * streamAll, findPage 는 대량 조회라서 캐시를 거치지 않음 (스캔이 캐시를 밀어내지 않도록)
+ */
+@Slf4j
+public class CachingMemberRepository implements MemberRepository {
+
+    private final MemberRepository delegate;
+    private final TinyLfuCache<String, Member> cache;
+
+    public CachingMemberRepository(MemberRepository delegate, int maximumSize, Duration ttl) {
+        this.delegate = delegate;
+        this.cache = new TinyLfuCache<>(maximumSize, ttl);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public Member save(Member member) {
+        Member saved = delegate.save(member);
+        invalidate(member.getMemberId());
+        return saved;
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        if (isWrittenInCurrentTransaction(memberId)) return delegate.findById(memberId);
+
+        Member cached = cache.get(memberId);
+        if (null != cached) return copy(cached);
+
+        long stamp = cache.stamp(memberId);
+        Member member = delegate.findById(memberId);    // 없으면 예외 -> 없는 결과는 캐시하지 않음
+        cache.put(memberId, copy(member), stamp);
+        return member;
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        Map<String, Member> members = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String memberId : new LinkedHashSet<>(memberIds)) {
+            Member cached = isWrittenInCurrentTransaction(memberId) ? null : cache.get(memberId);
+            if (null != cached) members.put(memberId, copy(cached));
+            else misses.add(memberId);
+        }
+        if (misses.isEmpty()) return members;
+
+        Map<String, Long> stamps = new HashMap<>();
+        for (String memberId : misses) stamps.put(memberId, cache.stamp(memberId));
+        for (Member member : delegate.findAllByIds(misses).values()) {
+            members.put(member.getMemberId(), member);
+            Long stamp = stamps.get(member.getMemberId());
+            if (null != stamp && !isWrittenInCurrentTransaction(member.getMemberId())) cache.put(member.getMemberId(), copy(member), stamp);
+        }
+        return members;
+    }
+
+    // 락은 DB 에서 잡아야 하므로 캐시를 거치지 않음
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        return delegate.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> lockAll(Collection<String> memberIds) {
+        return delegate.lockAll(memberIds);
+    }
+
+    @Override
+    public Stream<Member> streamAll(int fetchSize) {
+        return delegate.streamAll(fetchSize);
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        return delegate.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        delegate.update(memberId, money);
+        invalidate(memberId);
+    }
+
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        boolean updated = delegate.addMoney(memberId, delta);
+        invalidate(memberId);
+        return updated;
+    }
+
+    @Override
+    public boolean addMoney(String memberId, int delta, int requiredMoney) {
+        boolean updated = delegate.addMoney(memberId, delta, requiredMoney);
+        invalidate(memberId);
+        return updated;
+    }
+
+    @Override
+    public boolean updateIfVersion(String memberId, int money, long expectedVersion) {
+        boolean updated = delegate.updateIfVersion(memberId, money, expectedVersion);
+        invalidate(memberId);
+        return updated;
+    }
+
+    @Override
+    public void delete(String memberId) {
+        delegate.delete(memberId);
+        invalidate(memberId);
+    }
+
+    @Override
+    public boolean saveOrUpdate(Member member) {
+        boolean inserted = delegate.saveOrUpdate(member);
+        invalidate(member.getMemberId());
+        return inserted;
+    }
+
+    @Override
+    public boolean insertIfAbsent(Member member) {
+        boolean inserted = delegate.insertIfAbsent(member);
+        if (inserted) invalidate(member.getMemberId());
+        return inserted;
+    }
+
+    @Override
+    public int[] saveAll(Collection<Member> members) {
+        int[] results = delegate.saveAll(members);
+        members.forEach(member -> invalidate(member.getMemberId()));
+        return results;
+    }
+
+    @Override
+    public int[] updateAll(Collection<Member> members) {
+        int[] results = delegate.updateAll(members);
+        members.forEach(member -> invalidate(member.getMemberId()));
+        return results;
+    }
+
+    @Override
+    public int[] deleteAll(Collection<String> memberIds) {
+        int[] results = delegate.deleteAll(memberIds);
+        memberIds.forEach(this::invalidate);
+        return results;
+    }
+
+    @Override
+    public int[] addMoneyAll(Map<String, Integer> deltas) {
+        int[] results = delegate.addMoneyAll(deltas);
+        deltas.keySet().forEach(this::invalidate);
+        return results;
+    }
+
+    @Override
+    public boolean[] insertIfAbsentAll(Collection<Member> members) {
+        boolean[] inserted = delegate.insertIfAbsentAll(members);
+        int index = 0;
+        for (Member member : members) {
+            if (inserted[index++]) invalidate(member.getMemberId());     // insertIfAbsent 와 같이 INSERT 된 키만
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean[] saveOrUpdateAll(Collection<Member> members) {
+        boolean[] inserted = delegate.saveOrUpdateAll(members);
+        members.forEach(member -> invalidate(member.getMemberId()));
+        return inserted;
+    }
+
+    private void invalidate(String memberId) {
+        cache.invalidate(memberId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            writtenKeys(true).add(memberId);
+        }
+    }
+
+    private boolean isWrittenInCurrentTransaction(String memberId) {
+        Set<String> keys = writtenKeys(false);
+        return null != keys && keys.contains(memberId);
+    }
+
+    /**
+     * 현재 트랜잭션에서 쓴 키 목록 (트랜잭션 동기화 매니저에 리소스로 보관)
+     * 처음 만들 때 트랜잭션 종료 콜백을 등록해서, 끝나면(커밋이든 롤백이든) 키들을 한 번 더 무효화하고 정리
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> writtenKeys(boolean create) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+
+        Set<String> keys = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (null != keys || !create) return keys;
+
+        Set<String> newKeys = new HashSet<>();
+        TransactionSynchronizationManager.bindResource(this, newKeys);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(CachingMemberRepository.this);
+                newKeys.forEach(cache::invalidate);
+                log.debug("tx completed status={}, invalidated keys={}", status, newKeys);
+            }
+        });
+        return newKeys;
+    }
+
+    private static Member copy(Member member) {
+        return new Member(member.getMemberId(), member.getMoney(), member.getVersion());
+    }
+
+}
@@ -0,0 +1,69 @@
+package dev.riss.jdbc.repository.cache;
+
+/**
+ * 키별 최근 접근 빈도를 대략적으로 세는 Count-Min Sketch (TinyLFU 의 빈도 추정기)
+ * - 키마다 카운터를 따로 두지 않고 4 개 행의 카운터 배열에 해시해서 셈 -> 키 수와 상관없이 메모리 고정
+ * - 추정값은 4 개 행 중 최소값 (해시 충돌로 크게 나올 수는 있어도 작게 나오지는 않음)
+ * - 카운터는 15 에서 멈추고, 누적 증가가 sampleSize 에 도달하면 전부 절반으로 줄여서(aging) 오래된 인기는 잊음
+ *
+ * thread-safe 하지 않음 -> TinyLfuCache 의 락 안에서만 사용
+ */
+class FrequencySketch {
+
+    private static final int ROWS = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+        int width = Integer.highestOneBit(Math.max(16, maximumSize) * 4 * 2 - 1);   // maximumSize * 4 이상인 2의 제곱수 (충돌 줄이기)
+        this.table = new int[ROWS][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * Math.max(16, maximumSize);
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < ROWS; row++) {
+            int index = indexOf(hash, row);
+            if (table[row][index] < MAX_COUNT) {
+                table[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) reset();
+    }
+
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < ROWS; row++) {
+            frequency = Math.min(frequency, table[row][indexOf(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (int[] row : table) {
+            for (int i = 0; i < row.length; i++) row[i] >>>= 1;
+        }
+        additions = sampleSize / 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % ROWS];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x45D9F3B;
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,162 @@
+package dev.riss.jdbc.repository.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 크기 제한 + TTL 캐시 (W-TinyLFU 방식의 입장 정책)
+ *
+ * - window(전체의 1%, LRU): 새로 들어온 항목은 먼저 여기 들어감 -> 잠깐 몰리는 접근도 일단은 받아줌
+ * - main(나머지 99%, LRU): window 에서 밀려난 후보와 main 의 LRU 희생양을 FrequencySketch 빈도로 비교해서
+ *   후보가 더 자주 쓰였을 때만 들어옴 -> 한 번 쓰고 마는 키(스캔 등)가 인기 키를 밀어내지 못함
+ * - TTL 이 지난 항목은 조회 시점에 버림
+ *
+ * 무효화(invalidate)될 때마다 그 키의 stamp 를 올림. 조회 전에 stamp(key) 를 받아두고 put 할 때 넘기면,
+ * 조회하는 사이에 그 키가 무효화된 경우 넣지 않음 -> 무효화보다 먼저 읽은 오래된 값이 캐시에 남지 않음
+ * stamp 는 키 해시로 나눈 칸(stripe)마다 따로 셈 -> 다른 계좌의 쓰기가 이 키의 적재를 막지 않음 (같은 칸이면 막힐 수 있지만 안전한 쪽)
+ * invalidateAll 은 모든 칸 공통인 epoch 를 올림
+ *
+ * 연산은 전부 짧아서 하나의 락(synchronized)으로 보호
+ */
+public class TinyLfuCache<K, V> {
+
+    private final int windowSize;
+    private final int mainSize;
+    private final long ttlNanos;
+
+    // accessOrder = true -> get 할 때마다 뒤로 이동, 가장 앞(eldest)이 가장 오래 안 쓴 항목
+    private final LinkedHashMap<K, Entry<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Entry<V>> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final long[] keyStamps;
+    private long epoch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public TinyLfuCache(int maximumSize, Duration ttl) {
+        if (maximumSize < 2) throw new IllegalArgumentException("maximumSize must be >= 2, maximumSize=" + maximumSize);
+        this.windowSize = Math.max(1, maximumSize / 100);
+        this.mainSize = maximumSize - windowSize;
+        this.ttlNanos = ttl.toNanos();
+        this.sketch = new FrequencySketch(maximumSize);
+        // 2의 제곱수 (최소 64, 최대 65536) -> 해시로 칸 찾기를 & 로
+        int stripes = Integer.highestOneBit(Math.min(1 << 16, Math.max(64, maximumSize)) - 1) << 1;
+        this.keyStamps = new long[stripes];
+    }
+
+    public synchronized V get(K key) {
+        sketch.increment(key);
+
+        Entry<V> entry = window.get(key);
+        if (null == entry) entry = main.get(key);
+
+        if (null == entry) {
+            misses.increment();
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            window.remove(key);
+            main.remove(key);
+            expirations.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * key 의 지금까지의 무효화 횟수 (invalidateAll 포함). DB 에서 읽기 전에 받아두고 put 에 넘김
+     */
+    public synchronized long stamp(K key) {
+        return currentStamp(key);
+    }
+
+    /**
+     * @return 캐시에 들어갔으면 true (읽는 사이 무효화가 있었거나, 입장 정책에서 밀려나면 false)
+     */
+    public synchronized boolean put(K key, V value, long readStamp) {
+        if (readStamp != currentStamp(key)) return false;
+
+        Entry<V> entry = new Entry<>(value, System.nanoTime() + ttlNanos);
+        if (main.containsKey(key)) {
+            main.put(key, entry);
+            return true;
+        }
+        window.put(key, entry);
+        if (window.size() <= windowSize) return true;
+
+        // window 가 넘치면 가장 오래된 항목이 main 입장 후보
+        Iterator<Map.Entry<K, Entry<V>>> windowIterator = window.entrySet().iterator();
+        Map.Entry<K, Entry<V>> candidate = windowIterator.next();
+        windowIterator.remove();
+
+        if (main.size() < mainSize) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return true;
+        }
+
+        Iterator<Map.Entry<K, Entry<V>>> mainIterator = main.entrySet().iterator();
+        Map.Entry<K, Entry<V>> victim = mainIterator.next();
+        evictions.increment();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+            mainIterator.remove();
+            main.put(candidate.getKey(), candidate.getValue());
+            return true;
+        }
+        rejections.increment();     // 후보가 더 적게 쓰였으면 후보를 버림
+        return !candidate.getKey().equals(key);
+    }
+
+    public synchronized void invalidate(K key) {
+        keyStamps[stripeOf(key)]++;
+        window.remove(key);
+        main.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        epoch++;
+        window.clear();
+        main.clear();
+    }
+
+    public synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    // 둘 다 늘어나기만 하므로 합이 같으면 그 사이 무효화가 없었음
+    private long currentStamp(K key) {
+        return epoch + keyStamps[stripeOf(key)];
+    }
+
+    private int stripeOf(K key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (keyStamps.length - 1);
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), expirations.sum(), size());
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+}
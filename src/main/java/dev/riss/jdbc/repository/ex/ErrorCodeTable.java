@@ -0,0 +1,105 @@
+package dev.riss.jdbc.repository.ex;
+
+import org.springframework.jdbc.support.SQLErrorCodes;
+import org.springframework.jdbc.support.SQLErrorCodesFactory;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DB 별 에러코드 -> 예외 종류(Category) 조회 테이블
+ *
+ * SQLErrorCodeSQLExceptionTranslator(dataSource) 는 커넥션을 얻어서 DB 메타데이터(제품명)로 에러코드 목록을 찾아야 함
+ * -> DB 이름(sql-error-codes.xml 의 이름. ex. "H2", "MySQL")을 직접 지정해서 커넥션 없이 만들고,
+ *    에러코드 배열들을 미리 하나의 HashMap 으로 펼쳐둠 -> 변환할 때는 map 조회 한 번
+ *
+ * 같은 코드가 여러 목록에 있으면 스프링 변환기의 검사 순서(문법 오류 -> ... -> 직렬화 실패)에서 먼저 나온 종류로 정함
+ * DB 이름별로 한 번만 만들고 공유 (forDatabase)
+ */
+public final class ErrorCodeTable {
+
+    public enum Category {
+        BAD_SQL_GRAMMAR,
+        INVALID_RESULT_SET_ACCESS,
+        DUPLICATE_KEY,
+        DATA_INTEGRITY_VIOLATION,
+        PERMISSION_DENIED,
+        DATA_ACCESS_RESOURCE_FAILURE,
+        TRANSIENT_DATA_ACCESS_RESOURCE,
+        CANNOT_ACQUIRE_LOCK,
+        DEADLOCK_LOSER,
+        CANNOT_SERIALIZE_TRANSACTION,
+        UNKNOWN
+    }
+
+    private static final Map<String, ErrorCodeTable> TABLES = new ConcurrentHashMap<>();
+
+    private final String databaseName;
+    private final boolean useSqlState;
+    private final Map<String, Category> categories;
+
+    private ErrorCodeTable(String databaseName) {
+        // sql-error-codes.xml 은 팩토리가 처음 한 번만 읽음 (커넥션 필요 없음)
+        SQLErrorCodes codes = SQLErrorCodesFactory.getInstance().getErrorCodes(databaseName);
+
+        Map<String, Category> map = new HashMap<>();
+        register(map, codes.getBadSqlGrammarCodes(), Category.BAD_SQL_GRAMMAR);
+        register(map, codes.getInvalidResultSetAccessCodes(), Category.INVALID_RESULT_SET_ACCESS);
+        register(map, codes.getDuplicateKeyCodes(), Category.DUPLICATE_KEY);
+        register(map, codes.getDataIntegrityViolationCodes(), Category.DATA_INTEGRITY_VIOLATION);
+        register(map, codes.getPermissionDeniedCodes(), Category.PERMISSION_DENIED);
+        register(map, codes.getDataAccessResourceFailureCodes(), Category.DATA_ACCESS_RESOURCE_FAILURE);
+        register(map, codes.getTransientDataAccessResourceCodes(), Category.TRANSIENT_DATA_ACCESS_RESOURCE);
+        register(map, codes.getCannotAcquireLockCodes(), Category.CANNOT_ACQUIRE_LOCK);
+        register(map, codes.getDeadlockLoserCodes(), Category.DEADLOCK_LOSER);
+        register(map, codes.getCannotSerializeTransactionCodes(), Category.CANNOT_SERIALIZE_TRANSACTION);
+
+        this.databaseName = databaseName;
+        this.useSqlState = codes.isUseSqlStateForTranslation();
+        this.categories = Collections.unmodifiableMap(map);
+    }
+
+    public static ErrorCodeTable forDatabase(String databaseName) {
+        return TABLES.computeIfAbsent(databaseName, ErrorCodeTable::new);
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    /**
+     * 에러코드가 0 인 래퍼 예외면(ex. BatchUpdateException) 원인 SQLException 의 에러코드로 찾음
+     */
+    public Category categoryOf(SQLException e) {
+        SQLException current = e;
+        if (!useSqlState) {
+            while (0 == current.getErrorCode() && current.getCause() instanceof SQLException cause) {
+                current = cause;
+            }
+        }
+        String key = useSqlState ? current.getSQLState() : Integer.toString(current.getErrorCode());
+        if (null == key) return Category.UNKNOWN;
+        return categories.getOrDefault(key, Category.UNKNOWN);
+    }
+
+    /**
+     * 스프링 예외 대신 직접 만든 예외로 변환 (키 중복 -> MyDuplicateKeyException, 나머지 -> MyDbException)
+     * stackless = true 면 복구 대상인 키 중복 예외는 스택 트레이스 없이 만듦 (원인 SQLException 은 그대로 남김)
+     */
+    public MyDbException toMyDbException(SQLException e, boolean stackless) {
+        if (Category.DUPLICATE_KEY == categoryOf(e)) {
+            return new MyDuplicateKeyException(e.getMessage(), e, !stackless);
+        }
+        return new MyDbException(e);
+    }
+
+    private static void register(Map<String, Category> map, String[] codes, Category category) {
+        for (String code : codes) {
+            map.putIfAbsent(code, category);
+        }
+    }
+
+}
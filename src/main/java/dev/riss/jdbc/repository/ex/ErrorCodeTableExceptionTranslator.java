@@ -0,0 +1,101 @@
+package dev.riss.jdbc.repository.ex;
+
+import org.springframework.dao.*;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.InvalidResultSetAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.support.SQLExceptionSubclassTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import java.sql.SQLException;
+
+/**
+ * ErrorCodeTable 로 스프링 데이터 접근 예외를 만드는 변환기 (SQLErrorCodeSQLExceptionTranslator 대체)
+ *
+ * - 생성할 때 DataSource 가 필요 없음. DB 이름으로 미리 만든 테이블을 공유 -> 리포지토리마다 만들어도 비용 없음
+ * - 테이블에 없는 코드는 스프링 기본 변환기처럼 SQLException 하위 타입(SQLExceptionSubclassTranslator)으로 변환
+ * - stackless = true (opt-in): 서비스에서 잡아서 복구하는 예외(키 중복, 락 획득 실패/데드락)는 스택 트레이스 없이 만듦
+ *   -> 키 중복 후 새 id 로 재시도하는 흐름(ExTranslatorV1Test)이 정상 경로인 경우 예외 생성 비용이 대부분이라서
+ *   타입은 스프링 예외의 하위 타입이라 catch (DuplicateKeyException e) 등은 그대로 동작
+ */
+public class ErrorCodeTableExceptionTranslator implements SQLExceptionTranslator {
+
+    private final ErrorCodeTable table;
+    private final boolean stackless;
+    private final SQLExceptionTranslator fallback = new SQLExceptionSubclassTranslator();
+
+    public ErrorCodeTableExceptionTranslator(String databaseName) {
+        this(databaseName, false);
+    }
+
+    public ErrorCodeTableExceptionTranslator(String databaseName, boolean stackless) {
+        this.table = ErrorCodeTable.forDatabase(databaseName);
+        this.stackless = stackless;
+    }
+
+    @Override
+    public DataAccessException translate(String task, String sql, SQLException ex) {
+        String message = task + "; " + (null != sql ? "SQL [" + sql + "]; " : "") + ex.getMessage();
+
+        switch (table.categoryOf(ex)) {
+            case BAD_SQL_GRAMMAR:
+                return new BadSqlGrammarException(task, null != sql ? sql : "", ex);
+            case INVALID_RESULT_SET_ACCESS:
+                return new InvalidResultSetAccessException(task, null != sql ? sql : "", ex);
+            case DUPLICATE_KEY:
+                return stackless ? new StacklessDuplicateKeyException(message, ex) : new DuplicateKeyException(message, ex);
+            case DATA_INTEGRITY_VIOLATION:
+                return new DataIntegrityViolationException(message, ex);
+            case PERMISSION_DENIED:
+                return new PermissionDeniedDataAccessException(message, ex);
+            case DATA_ACCESS_RESOURCE_FAILURE:
+                return new DataAccessResourceFailureException(message, ex);
+            case TRANSIENT_DATA_ACCESS_RESOURCE:
+                return new TransientDataAccessResourceException(message, ex);
+            case CANNOT_ACQUIRE_LOCK:
+                return stackless ? new StacklessCannotAcquireLockException(message, ex) : new CannotAcquireLockException(message, ex);
+            case DEADLOCK_LOSER:
+            case CANNOT_SERIALIZE_TRANSACTION:
+                return stackless ? new StacklessPessimisticLockingFailureException(message, ex) : new PessimisticLockingFailureException(message, ex);
+            default:
+                DataAccessException translated = fallback.translate(task, sql, ex);
+                return null != translated ? translated : new UncategorizedSQLException(task, sql, ex);
+        }
+    }
+
+    // fillInStackTrace 를 오버라이드 -> 생성할 때 스택을 걷지 않음 (스프링 예외에는 writableStackTrace 생성자가 없어서)
+
+    static class StacklessDuplicateKeyException extends DuplicateKeyException {
+        StacklessDuplicateKeyException(String msg, Throwable cause) {
+            super(msg, cause);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    static class StacklessCannotAcquireLockException extends CannotAcquireLockException {
+        StacklessCannotAcquireLockException(String msg, Throwable cause) {
+            super(msg, cause);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    static class StacklessPessimisticLockingFailureException extends PessimisticLockingFailureException {
+        StacklessPessimisticLockingFailureException(String msg, Throwable cause) {
+            super(msg, cause);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+}
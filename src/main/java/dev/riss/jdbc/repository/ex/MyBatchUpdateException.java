@@ -0,0 +1,16 @@
+package dev.riss.jdbc.repository.ex;
+
+// 배치(saveAll 등) 실패 - 입력 순서대로 row 별 결과를 같이 넘겨줌 (실패했거나 실행되지 않은 row 는 Statement.EXECUTE_FAILED)
+public class MyBatchUpdateException extends MyDbException {
+
+    private final int[] updateCounts;
+
+    public MyBatchUpdateException(String message, Throwable cause, int[] updateCounts) {
+        super(message, cause);
+        this.updateCounts = updateCounts.clone();
+    }
+
+    public int[] getUpdateCounts() {
+        return updateCounts.clone();
+    }
+}
@@ -17,4 +17,11 @@ public class MyDbException extends RuntimeException {
     public MyDbException(Throwable cause) {
         super(cause);
     }
+
+    /**
+     * writableStackTrace = false 면 스택 트레이스를 채우지 않음 (예상된, 복구할 예외를 자주 만들 때 생성 비용 절감)
+     */
+    public MyDbException(String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+    }
 }
@@ -0,0 +1,22 @@
+package dev.riss.jdbc.repository.ex;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * 스프링 예외로 변환하는 리포지토리(V4_2, V5)의 배치 실패 - 입력 순서대로 row 별 결과를 같이 넘겨줌
+ * 실패한 이유는 원인(getCause)에 변환된 예외로 들어 있음 (ex. DuplicateKeyException)
+ * 실패했거나 실행되지 않은 row 는 Statement.EXECUTE_FAILED
+ */
+public class PartialBatchUpdateException extends DataAccessException {
+
+    private final int[] updateCounts;
+
+    public PartialBatchUpdateException(String message, Throwable cause, int[] updateCounts) {
+        super(message, cause);
+        this.updateCounts = updateCounts.clone();
+    }
+
+    public int[] getUpdateCounts() {
+        return updateCounts.clone();
+    }
+}
@@ -0,0 +1,587 @@
+package dev.riss.jdbc.repository.writebehind;
+
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.domain.MemberPage;
+import dev.riss.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * 쓰기 지연(write-behind) 데코레이터 - 다른 MemberRepository 를 감싸서 update, addMoney(memberId, delta) 를 모아서 씀
+ *
+ * 같은 계좌를 초당 여러 번 바꾸는 경우(수수료, 카운터 등) 매번 UPDATE 하지 않고 계좌별로 하나로 합쳐둠
+ * - update(memberId, money): 마지막 값만 남김 (절대값)
+ * - addMoney(memberId, delta): delta 를 누적 (절대값이 대기 중이면 거기에 더함)
+ * -> 합쳐진 변경을 updateAll / addMoneyAll 배치로 한 번에 씀
+ *
+ * 언제 DB 에 반영되는지 (내구성)
+ * - 트랜잭션 밖: 공용 버퍼에 쌓였다가 flushInterval 마다, 또는 대기 계좌가 maxPending 개가 되면(쓴 쓰레드가 직접) flush
+ *   flush 는 별도 트랜잭션(REQUIRES_NEW)으로 전부 반영/전부 실패. 실패하면 버퍼로 되돌려서 다음 flush 때 재시도
+ *   -> 호출이 끝나도 아직 DB 에 없음. 프로세스가 죽으면 대기 중인 변경은 사라짐. 종료 시 close() 로 남은 것을 flush
+ *   close() 뒤의 쓰기는 버퍼에 남겨두지 않고 쓴 쓰레드가 바로 flush (타이머가 없으므로)
+ * - 트랜잭션 안: 그 트랜잭션 전용 버퍼에 쌓았다가 커밋 직전(beforeCommit)에 같은 트랜잭션 안에서 배치로 씀
+ *   -> 커밋되면 반영, 롤백되면 버림 (트랜잭션의 의미는 그대로, 트랜잭션 안에서 같은 계좌를 여러 번 바꾸는 비용만 줄어듦)
+ *   같은 계좌의 절대값 update 를 트랜잭션 안/밖에서 섞어 쓰면 반영 순서는 flush 순서를 따름
+ *
+ * 조회
+ * - findById, findAllByIds: DB 값 위에 아직 반영 안 된 변경을 덧씌워서 돌려줌 (쓴 직후 읽어도 쓴 값이 보임)
+ * - 락, 스캔 조회와 버퍼를 거치지 않는 쓰기(save, delete, 조건부 addMoney 등): 관련 계좌의 대기 중인 변경을 먼저 반영하고 위임
+ * - flush 가 버퍼에서 변경을 옮기는 동안과 커밋하는 동안은 조회가 기다림 (버퍼와 반영 중인 변경 어느 쪽에서도 안 보이거나 두 번 보이지 않도록)
+ *   바쁜 대기가 아니라 flush 의 모니터에서 wait -> 옮기기가 끝나거나 flush 가 끝나면 깨움
+ *   조회하는 사이 지나간 flush 가 조회한 계좌를 건드렸을 때만 다시 조회 (다른 계좌의 flush 때문에 다시 읽지 않음)
+ *
+ * 없는 회원에 대한 변경
+ * - 버퍼에 쌓는 addMoney 는 대상 회원이 있는지 모르므로 일단 true
+ * - 트랜잭션 안에서 쌓은 변경이 커밋 직전 쓰기에서 없는 회원으로 확인되면 NoSuchElementException -> 트랜잭션 전체 롤백
+ *   (ex. DeltaMemberTransfer 로 없는 회원에게 이체하면 출금까지 롤백됨. false 를 받은 것과 같은 결과)
+ * - 트랜잭션 밖(공용 버퍼)의 변경은 알려줄 호출자가 없으므로 버리고 droppedCount 로 셈
+ */
+@Slf4j
+public class WriteBehindMemberRepository implements MemberRepository, AutoCloseable {
+
+    private final MemberRepository delegate;
+    private final TransactionTemplate flushTemplate;
+    private final int maxPending;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private volatile Flush flushing = Flush.idle();     // 지금 반영 중인 변경 (커밋 전까지 조회에 덧씌움). flush 마다 새 객체, flushLock 안에서만 교체
+    private volatile boolean closed;
+
+    private final LongAdder bufferedWrites = new LongAdder();
+    private final LongAdder coalescedWrites = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder droppedRows = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private final LongAccumulator maxFlushNanos = new LongAccumulator(Math::max, 0);
+
+    public WriteBehindMemberRepository(MemberRepository delegate, PlatformTransactionManager transactionManager,
+                                       Duration flushInterval, int maxPending) {
+        if (maxPending <= 0) throw new IllegalArgumentException("maxPending must be positive, maxPending=" + maxPending);
+        this.delegate = delegate;
+        this.flushTemplate = new TransactionTemplate(transactionManager);
+        this.flushTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxPending = maxPending;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 공용 버퍼의 변경을 지금 반영 (실패하면 버퍼로 되돌리고 예외)
+     */
+    public void flush() {
+        flush(null);
+    }
+
+    /**
+     * 타이머를 멈추고 남은 변경을 반영. 이후의 쓰기는 바로 반영됨
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    // 대기 중인 계좌 수 (공용 버퍼)
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getBufferedWriteCount() {
+        return bufferedWrites.sum();
+    }
+
+    // 이미 대기 중인 변경에 합쳐진 쓰기 수 (그만큼 UPDATE 가 줄어듦)
+    public long getCoalescedWriteCount() {
+        return coalescedWrites.sum();
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    public long getFlushedRowCount() {
+        return flushedRows.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedRows.sum();
+    }
+
+    public long getFailedFlushCount() {
+        return failedFlushes.sum();
+    }
+
+    public long getMaxFlushNanos() {
+        return maxFlushNanos.get();
+    }
+
+    public double averageFlushMillis() {
+        long count = flushes.sum() + failedFlushes.sum();
+        return 0 == count ? 0.0 : totalFlushNanos.sum() / 1_000_000.0 / count;
+    }
+
+    @Override
+    public Member save(Member member) {
+        flushBefore(List.of(member.getMemberId()));
+        return delegate.save(member);
+    }
+
+    @Override
+    public Member findById(String memberId) {
+        TxBuffer tx = txBuffer(false);
+        List<String> memberIds = List.of(memberId);
+        while (true) {
+            Flush flush = flushing;
+            if (!flush.awaitReadable()) continue;
+            Member member = delegate.findById(memberId);
+            Pending queued = pending.get(memberId);
+            Pending inFlight = flush.entries.get(memberId);
+            // 조회하는 사이 이 계좌를 옮기거나 커밋한 flush 가 있으면 DB 값과 덧씌울 값이 어긋날 수 있으므로 다시
+            if (flush.touchedSince(memberIds)) continue;
+
+            member.setMoney(apply(member.getMoney(), inFlight, queued, null == tx ? null : tx.entries.get(memberId)));
+            return member;
+        }
+    }
+
+    @Override
+    public Map<String, Member> findAllByIds(Collection<String> memberIds) {
+        TxBuffer tx = txBuffer(false);
+        while (true) {
+            Flush flush = flushing;
+            if (!flush.awaitReadable()) continue;
+            Map<String, Member> members = delegate.findAllByIds(memberIds);
+            Map<String, Pending> queued = new HashMap<>();
+            for (String memberId : members.keySet()) {
+                Pending entry = pending.get(memberId);
+                if (null != entry) queued.put(memberId, entry);
+            }
+            if (flush.touchedSince(memberIds)) continue;
+
+            members.forEach((memberId, member) -> member.setMoney(apply(member.getMoney(), flush.entries.get(memberId),
+                    queued.get(memberId), null == tx ? null : tx.entries.get(memberId))));
+            return members;
+        }
+    }
+
+    @Override
+    public Member findByIdForUpdate(String memberId) {
+        flushBefore(List.of(memberId));
+        return delegate.findByIdForUpdate(memberId);
+    }
+
+    @Override
+    public Map<String, Member> lockAll(Collection<String> memberIds) {
+        flushBefore(memberIds);
+        return delegate.lockAll(memberIds);
+    }
+
+    @Override
+    public Stream<Member> streamAll(int fetchSize) {
+        flushBefore(null);
+        return delegate.streamAll(fetchSize);
+    }
+
+    @Override
+    public MemberPage findPage(String afterMemberId, int limit) {
+        flushBefore(null);
+        return delegate.findPage(afterMemberId, limit);
+    }
+
+    @Override
+    public void update(String memberId, int money) {
+        buffer(memberId, new Pending(true, money));
+    }
+
+    @Override
+    public boolean addMoney(String memberId, int delta) {
+        buffer(memberId, new Pending(false, delta));
+        return true;
+    }
+
+    // 잔액 조건은 DB 값을 봐야 하므로 버퍼를 거치지 않음
+    @Override
+    public boolean addMoney(String memberId, int delta, int requiredMoney) {
+        flushBefore(List.of(memberId));
+        return delegate.addMoney(memberId, delta, requiredMoney);
+    }
+
+    @Override
+    public boolean updateIfVersion(String memberId, int money, long expectedVersion) {
+        flushBefore(List.of(memberId));
+        return delegate.updateIfVersion(memberId, money, expectedVersion);
+    }
+
+    @Override
+    public void delete(String memberId) {
+        flushBefore(List.of(memberId));
+        delegate.delete(memberId);
+    }
+
+    @Override
+    public boolean saveOrUpdate(Member member) {
+        flushBefore(List.of(member.getMemberId()));
+        return delegate.saveOrUpdate(member);
+    }
+
+    @Override
+    public boolean insertIfAbsent(Member member) {
+        flushBefore(List.of(member.getMemberId()));
+        return delegate.insertIfAbsent(member);
+    }
+
+    @Override
+    public int[] saveAll(Collection<Member> members) {
+        flushBefore(memberIdsOf(members));
+        return delegate.saveAll(members);
+    }
+
+    @Override
+    public int[] updateAll(Collection<Member> members) {
+        flushBefore(memberIdsOf(members));
+        return delegate.updateAll(members);
+    }
+
+    @Override
+    public int[] deleteAll(Collection<String> memberIds) {
+        flushBefore(memberIds);
+        return delegate.deleteAll(memberIds);
+    }
+
+    @Override
+    public int[] addMoneyAll(Map<String, Integer> deltas) {
+        flushBefore(deltas.keySet());
+        return delegate.addMoneyAll(deltas);
+    }
+
+    @Override
+    public boolean[] insertIfAbsentAll(Collection<Member> members) {
+        flushBefore(memberIdsOf(members));
+        return delegate.insertIfAbsentAll(members);
+    }
+
+    private void buffer(String memberId, Pending change) {
+        bufferedWrites.increment();
+        TxBuffer tx = txBuffer(true);
+        if (null != tx) {
+            Pending current = tx.entries.get(memberId);
+            if (null != current) coalescedWrites.increment();
+            tx.entries.put(memberId, null == current ? change : current.then(change));
+            return;
+        }
+
+        pending.compute(memberId, (key, current) -> {
+            if (null == current) return change;
+            coalescedWrites.increment();
+            return current.then(change);
+        });
+        // 버퍼가 가득 차면 쓴 쓰레드가 직접 반영 (쓰기 속도 조절)
+        // 버퍼에 넣은 뒤에 closed 를 확인 -> close 의 마지막 flush 가 이 변경을 못 봤다면 여기서 closed 를 보고 직접 반영
+        if (closed || pending.size() >= maxPending) flush();
+    }
+
+    /**
+     * 버퍼를 거치지 않는 작업 전에, 관련 계좌의 대기 중인 변경을 먼저 반영 (memberIds = null 이면 전부)
+     * 트랜잭션 안이면 공용 버퍼에서 가져온 것까지 현재 트랜잭션에서 씀 (롤백되면 공용 버퍼로 되돌림)
+     */
+    private void flushBefore(Collection<String> memberIds) {
+        TxBuffer tx = txBuffer(false);
+        if (null == tx) {
+            flush(memberIds);
+            return;
+        }
+
+        Map<String, Pending> entries = new HashMap<>();
+        moveFromPending(memberIds, entries);
+        entries.forEach((memberId, entry) -> tx.adopted.merge(memberId, entry, Pending::then));
+        Set<String> own = new HashSet<>();
+        for (String memberId : null == memberIds ? new ArrayList<>(tx.entries.keySet()) : memberIds) {
+            Pending entry = tx.entries.remove(memberId);
+            if (null == entry) continue;
+            own.add(memberId);
+            entries.merge(memberId, entry, Pending::then);
+        }
+        if (entries.isEmpty()) return;
+
+        // 이 트랜잭션이 쌓은 변경이 없는 회원이면 실패, 공용 버퍼에서 가져온 것만 없는 회원이면 버림
+        List<String> missing = write(entries);
+        List<String> ownMissing = new ArrayList<>(missing);
+        ownMissing.retainAll(own);
+        failIfMissing(ownMissing);      // 롤백되면 공용 버퍼에서 가져온 변경은 되돌아가므로 셀 필요 없음
+        drop(missing.size());
+    }
+
+    /**
+     * 공용 버퍼에서 memberIds 의 변경을 꺼내서(null 이면 전부) 별도 트랜잭션으로 반영
+     * 옮기는 동안(moved = false)과 커밋하는 동안(committing) 조회는 대기 -> 버퍼와 flushing 사이에서 변경이 사라지거나 겹쳐 보이지 않음
+     */
+    private void flush(Collection<String> memberIds) {
+        if (pending.isEmpty()) return;
+
+        synchronized (flushLock) {
+            Flush flush = new Flush();
+            publish(flush);
+            try {
+                moveFromPending(memberIds, flush.entries);
+            } finally {
+                flush.markMoved();
+            }
+            if (flush.entries.isEmpty()) {
+                publish(Flush.idle());
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                flushTemplate.executeWithoutResult(status -> {
+                    drop(write(flush.entries).size());
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void beforeCommit(boolean readOnly) {
+                            flush.committing = true;    // 이제부터 DB 값에 반영됐을 수 있음 -> 조회는 끝날 때까지(publish) 대기
+                        }
+                    });
+                });
+                flushes.increment();
+                flushedRows.add(flush.entries.size());
+            } catch (RuntimeException e) {
+                failedFlushes.increment();
+                flush.entries.forEach(this::requeue);
+                throw e;
+            } finally {
+                publish(Flush.idle());
+                long elapsed = System.nanoTime() - start;
+                totalFlushNanos.add(elapsed);
+                maxFlushNanos.accumulate(elapsed);
+            }
+        }
+    }
+
+    // flushLock 안에서 호출. next 를 먼저 이어두고 교체 -> 조회하는 쪽이 지나간 flush 를 빠짐없이 따라갈 수 있음
+    private void publish(Flush next) {
+        Flush previous = flushing;
+        previous.next = next;
+        flushing = next;
+        previous.finish();
+    }
+
+    // 키 단위로 원자적으로 꺼내서 옮김 (꺼내는 사이 같은 키에 들어온 쓰기는 버퍼에 새로 쌓임 -> 다음 flush 대상)
+    private void moveFromPending(Collection<String> memberIds, Map<String, Pending> target) {
+        for (String memberId : null == memberIds ? pending.keySet() : memberIds) {
+            pending.computeIfPresent(memberId, (key, entry) -> {
+                target.put(key, entry);
+                return null;
+            });
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("write-behind flush failed, pending={}", pending.size(), e);
+        }
+    }
+
+    /**
+     * 절대값은 updateAll, 누적값은 addMoneyAll 배치로 씀 (addMoneyAll 은 락 순서를 맞추기 위해 TreeMap)
+     * 반환값은 반영되지 않은(없는) 회원 id
+     */
+    private List<String> write(Map<String, Pending> entries) {
+        List<Member> absolutes = new ArrayList<>();
+        Map<String, Integer> deltas = new TreeMap<>();
+        entries.forEach((memberId, entry) -> {
+            if (entry.absolute()) absolutes.add(new Member(memberId, entry.value()));
+            else deltas.put(memberId, entry.value());
+        });
+
+        // 배치 결과는 입력 순서대로
+        List<String> missing = new ArrayList<>();
+        if (!absolutes.isEmpty()) {
+            int[] counts = delegate.updateAll(absolutes);
+            for (int i = 0; i < counts.length; i++) {
+                if (0 == counts[i]) missing.add(absolutes.get(i).getMemberId());
+            }
+        }
+        if (!deltas.isEmpty()) {
+            int[] counts = delegate.addMoneyAll(deltas);
+            int index = 0;
+            for (String memberId : deltas.keySet()) {
+                if (0 == counts[index++]) missing.add(memberId);
+            }
+        }
+        return missing;
+    }
+
+    private void drop(int count) {
+        if (0 == count) return;
+        droppedRows.add(count);
+        log.warn("write-behind changes for missing members dropped count={}", count);
+    }
+
+    // 트랜잭션 안에서 쌓은 변경 -> 예외로 트랜잭션 전체를 롤백 (호출자가 false 를 받은 것과 같은 결과)
+    private static void failIfMissing(List<String> missing) {
+        if (!missing.isEmpty()) throw new NoSuchElementException("member not found memberIds=" + missing);
+    }
+
+    // 실패한 변경을 되돌려 넣음. 그 사이 새로 쌓인 변경이 있으면 그게 더 나중 변경
+    private void requeue(String memberId, Pending entry) {
+        pending.merge(memberId, entry, (current, older) -> older.then(current));
+    }
+
+    private static int apply(int money, Pending... changes) {
+        for (Pending change : changes) {
+            if (null != change) money = change.applyTo(money);
+        }
+        return money;
+    }
+
+    private static List<String> memberIdsOf(Collection<Member> members) {
+        List<String> memberIds = new ArrayList<>(members.size());
+        for (Member member : members) memberIds.add(member.getMemberId());
+        return memberIds;
+    }
+
+    /**
+     * 현재 트랜잭션 전용 버퍼 (CachingMemberRepository 의 writtenKeys 처럼 트랜잭션 동기화 매니저에 리소스로 보관)
+     * 커밋 직전에 같은 트랜잭션에서 반영, 롤백되면 공용 버퍼에서 가져왔던 변경만 되돌림
+     */
+    private TxBuffer txBuffer(boolean create) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+
+        TxBuffer tx = (TxBuffer) TransactionSynchronizationManager.getResource(this);
+        if (null != tx || !create) return tx;
+
+        TxBuffer newTx = new TxBuffer();
+        TransactionSynchronizationManager.bindResource(this, newTx);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (!newTx.entries.isEmpty()) failIfMissing(write(newTx.entries));
+                newTx.entries.clear();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WriteBehindMemberRepository.this);
+                if (STATUS_COMMITTED != status) newTx.adopted.forEach(WriteBehindMemberRepository.this::requeue);
+            }
+        });
+        return newTx;
+    }
+
+    /**
+     * 대기 중인 변경 하나. absolute = true 면 money = value, 아니면 money += value
+     */
+    private record Pending(boolean absolute, int value) {
+
+        // this 다음에 next 가 일어난 것으로 합침
+        Pending then(Pending next) {
+            return next.absolute ? next : new Pending(absolute, value + next.value);
+        }
+
+        int applyTo(int money) {
+            return absolute ? value : money + value;
+        }
+    }
+
+    /**
+     * flush 한 번 (또는 반영 중인 변경이 없는 상태). 교체될 때마다 next 로 이어짐
+     * 조회하는 쪽은 자기가 본 Flush 부터 next 를 따라가며 그 사이 지나간 flush 가 조회한 계좌를 건드렸는지 확인
+     * (앞쪽으로만 이어지므로 조회 중인 쓰레드가 없으면 지나간 Flush 는 GC 됨)
+     */
+    private static class Flush {
+        private final Map<String, Pending> entries = new ConcurrentHashMap<>();
+        private volatile Flush next;
+        private volatile boolean moved;
+        private volatile boolean committing;
+        private volatile boolean finished;      // 다음 Flush 로 교체됨 (커밋 또는 실패 후)
+
+        private static Flush idle() {
+            Flush flush = new Flush();
+            flush.moved = true;
+            return flush;
+        }
+
+        private synchronized void markMoved() {
+            moved = true;
+            notifyAll();
+        }
+
+        private synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        /**
+         * 옮기는 중이거나 커밋 중이면 끝날 때까지 대기. 그 사이 교체됐으면 false (새 flushing 으로 다시)
+         */
+        private synchronized boolean awaitReadable() {
+            boolean interrupted = false;
+            while (!finished && (!moved || committing)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;     // 조회는 짧게 끝나므로 끝까지 기다리고 interrupt 상태만 되돌림
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            return !finished;
+        }
+
+        /**
+         * 이 flush 가 커밋/실패했거나 뒤이은 flush 가 memberIds 중 하나를 옮겼으면 true
+         */
+        private boolean touchedSince(Collection<String> memberIds) {
+            if ((committing || finished) && touches(memberIds)) return true;
+            for (Flush later = next; null != later; later = later.next) {
+                if (later.touches(memberIds)) return true;
+            }
+            return false;
+        }
+
+        private boolean touches(Collection<String> memberIds) {
+            if (entries.isEmpty()) return false;
+            for (String memberId : memberIds) {
+                if (entries.containsKey(memberId)) return true;
+            }
+            return false;
+        }
+    }
+
+    private static class TxBuffer {
+        private final Map<String, Pending> entries = new HashMap<>();
+        private final Map<String, Pending> adopted = new HashMap<>();
+    }
+
+}
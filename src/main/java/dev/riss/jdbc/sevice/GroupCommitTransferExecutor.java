@@ -0,0 +1,124 @@
+package dev.riss.jdbc.sevice;
+
+import dev.riss.jdbc.repository.MemberTransfer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 그룹 커밋 - 짧은 시간(window) 동안 들어온 이체들을 모아서(최대 maxBatchSize 개) 하나의 트랜잭션으로 처리하고 커밋은 한 번만
+ * 요청이 많을 때 이체마다 커밋을 기다리는 비용(커밋 지연)을 배치 크기만큼 나눠 가짐
+ *
+ * - 이체 하나하나는 중첩 트랜잭션(PROPAGATION_NESTED = savepoint) 안에서 실행
+ *   -> 한 이체가 실패(잔액 부족, "ex" 검증 실패 등)하면 그 이체만 savepoint 까지 롤백하고 나머지는 계속
+ * - 호출한 쪽은 CompletableFuture 를 받고, 공유 트랜잭션이 커밋된 뒤에 완료됨 (커밋 전에는 성공을 알리지 않음)
+ *   커밋 자체가 실패하면 그 배치의 모든 future 가 예외로 완료
+ * - 배치는 전용 쓰레드 하나가 순서대로 처리 (배치끼리 같은 계좌 락을 두고 다투지 않음). 모으는 방식은 RequestBatcher
+ * - close 와 동시에 들어온 요청은 처리되거나 RejectedExecutionException 으로 완료됨 (완료되지 않고 남는 future 없음)
+ *
+ * 이체 로직은 MemberTransfer 전략 사용 (ex. DeltaMemberTransfer - 트랜잭션 동기화된 커넥션을 쓰므로 같은 트랜잭션에 참여)
+ * DataSourceTransactionManager 는 기본으로 savepoint 기반 중첩 트랜잭션을 지원함
+ */
+@Slf4j
+public class GroupCommitTransferExecutor implements AutoCloseable {
+
+    private final TransactionTemplate batchTx;
+    private final TransactionTemplate transferTx;
+    private final MemberTransfer memberTransfer;
+    private final RequestBatcher<Request> batcher;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder transfers = new LongAdder();
+
+    public GroupCommitTransferExecutor(PlatformTransactionManager transactionManager, MemberTransfer memberTransfer,
+                                       Duration window, int maxBatchSize) {
+        this.batchTx = new TransactionTemplate(transactionManager);
+        this.transferTx = new TransactionTemplate(transactionManager);
+        this.transferTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.memberTransfer = memberTransfer;
+        this.batcher = new RequestBatcher<>("group-commit-transfer", window, maxBatchSize, this::execute, GroupCommitTransferExecutor::fail);
+    }
+
+    /**
+     * 이체 요청을 넣고 바로 반환. 결과는 배치가 커밋된 뒤 future 로 전달
+     */
+    public CompletableFuture<Void> submit(String fromId, String toId, int money) {
+        Request request = new Request(fromId, toId, money);
+        if (!batcher.offer(request)) {
+            request.future.completeExceptionally(new RejectedExecutionException("group commit executor closed"));
+        }
+        return request.future;
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getTransferCount() {
+        return transfers.sum();
+    }
+
+    public double averageBatchSize() {
+        long batchCount = batches.sum();
+        return 0 == batchCount ? 0.0 : (double) transfers.sum() / batchCount;
+    }
+
+    /**
+     * 새 요청은 받지 않고, 이미 들어온 요청은 처리한 뒤 종료
+     */
+    @Override
+    public void close() {
+        batcher.close();
+    }
+
+    /**
+     * 커밋이 실패하면(Error 포함) 예외가 RequestBatcher 로 올라가서 fail 로 배치 전체가 실패
+     */
+    private void execute(List<Request> batch) {
+        batchTx.executeWithoutResult(status -> {
+            for (Request request : batch) {
+                try {
+                    transferTx.executeWithoutResult(nested -> memberTransfer.transfer(request.fromId, request.toId, request.money));
+                } catch (RuntimeException e) {
+                    request.failure = e;        // 이 이체만 savepoint 로 롤백됨
+                }
+            }
+        });
+
+        batches.increment();
+        transfers.add(batch.size());
+        log.debug("group commit size={}", batch.size());
+
+        // 커밋이 끝난 뒤에 결과 전달
+        for (Request request : batch) {
+            if (null == request.failure) request.future.complete(null);
+            else request.future.completeExceptionally(request.failure);
+        }
+    }
+
+    private static void fail(List<Request> batch, Throwable e) {
+        batch.forEach(request -> request.future.completeExceptionally(e));
+    }
+
+    private static class Request {
+        private final String fromId;
+        private final String toId;
+        private final int money;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private RuntimeException failure;
+
+        private Request(String fromId, String toId, int money) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.money = money;
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package dev.riss.jdbc.sevice;
+
+import dev.riss.jdbc.repository.MemberLedgerRepository;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.TransferDeadLetterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 원장 -> member.money 반영기 (백그라운드)
+ *
+ * interval 마다 체크포인트 이후 원장을 최대 batchSize 개씩 읽어서 계좌별 증감으로 합치고,
+ * addMoneyAll 배치 + 체크포인트 갱신을 한 트랜잭션으로 커밋 -> 반영과 체크포인트가 항상 함께 움직이므로 두 번 반영되거나 빠지지 않음
+ * 밀려 있으면 따라잡을 때까지 연달아 반영
+ *
+ * 원장의 회원이 반영 전에 지워졌으면 그 회원 몫의 증감은 반영할 곳이 없음
+ * -> 나머지 계좌는 그대로 반영하고, 그 회원이 관련된 원장을 transfer_dead_letter 에 남긴 뒤 체크포인트를 넘김 (같은 트랜잭션)
+ *   (롤백하고 재시도하면 그 회원이 다시 생기기 전까지 이후의 모든 반영이 막힘)
+ */
+@Slf4j
+public class LedgerProjector implements AutoCloseable {
+
+    static final String DEAD_LETTER_SOURCE = "ledger-projection";
+
+    private final TransactionTemplate txTemplate;
+    private final MemberLedgerRepository ledgerRepository;
+    private final MemberRepository memberRepository;
+    private final TransferDeadLetterRepository deadLetters;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder projectedEntries = new LongAdder();
+    private final LongAdder updatedAccounts = new LongAdder();
+    private final LongAdder quarantinedEntries = new LongAdder();
+
+    public LedgerProjector(PlatformTransactionManager transactionManager, MemberLedgerRepository ledgerRepository,
+                           MemberRepository memberRepository, TransferDeadLetterRepository deadLetters,
+                           Duration interval, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive, batchSize=" + batchSize);
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.ledgerRepository = ledgerRepository;
+        this.memberRepository = memberRepository;
+        this.deadLetters = deadLetters;
+        this.batchSize = batchSize;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-projector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::projectQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 밀린 원장을 모두 반영하고 반영한 원장 수 반환
+     */
+    public long projectAll() {
+        long total = 0;
+        int projected;
+        do {
+            projected = projectOnce();
+            total += projected;
+        } while (projected >= batchSize);
+        return total;
+    }
+
+    private int projectOnce() {
+        Integer projected = txTemplate.execute(status -> {
+            long checkpoint = ledgerRepository.lockCheckpoint();
+            MemberLedgerRepository.Projection projection = ledgerRepository.nextProjection(checkpoint, batchSize);
+            if (0 == projection.entries()) return 0;
+
+            int[] updated = memberRepository.addMoneyAll(projection.deltas());
+            // 원장에 있는 회원은 이체 시점에 있었음. 그 사이 지워진 회원 (결과는 deltas 순회 순서)
+            List<String> missing = new ArrayList<>();
+            int index = 0;
+            for (String memberId : projection.deltas().keySet()) {
+                if (0 == updated[index++]) missing.add(memberId);
+            }
+            if (!missing.isEmpty()) quarantine(checkpoint, projection.upTo(), missing);
+
+            ledgerRepository.updateCheckpoint(projection.upTo());
+            updatedAccounts.add(projection.deltas().size() - missing.size());
+            return projection.entries();
+        });
+        int entries = null == projected ? 0 : projected;
+        runs.increment();
+        projectedEntries.add(entries);
+        return entries;
+    }
+
+    private void quarantine(long after, long upTo, List<String> missing) {
+        for (MemberLedgerRepository.Entry entry : ledgerRepository.findEntries(after, upTo, missing)) {
+            String reason = "member missing during projection ledgerId=" + entry.ledgerId() + ", missing=" + missing;
+            deadLetters.record(DEAD_LETTER_SOURCE, entry.fromId(), entry.toId(), entry.money(), reason);
+            quarantinedEntries.increment();
+        }
+    }
+
+    private void projectQuietly() {
+        try {
+            projectAll();
+        } catch (RuntimeException e) {
+            log.error("ledger projection failed", e);
+        }
+    }
+
+    public long getRunCount() {
+        return runs.sum();
+    }
+
+    public long getProjectedEntryCount() {
+        return projectedEntries.sum();
+    }
+
+    public long getUpdatedAccountCount() {
+        return updatedAccounts.sum();
+    }
+
+    public long getQuarantinedEntryCount() {
+        return quarantinedEntries.sum();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
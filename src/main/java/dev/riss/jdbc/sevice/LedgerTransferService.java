@@ -0,0 +1,165 @@
+package dev.riss.jdbc.sevice;
+
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.domain.Transfer;
+import dev.riss.jdbc.domain.TransferResult;
+import dev.riss.jdbc.repository.MemberLedgerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 원장 모드 이체 - member row 두 개를 고쳐 쓰는 대신 원장에 이체 한 줄을 추가 (잔액 반영은 LedgerProjector 가 나중에)
+ *
+ * 인기 계좌에 이체가 몰려도 같은 row 락을 두고 다투지 않음. 대신 원장 추가는 전용 쓰레드 하나가 모아서 처리
+ * - window 동안(최대 maxBatchSize 개) 들어온 이체를 모아서, 체크포인트 락을 잡고 관련 계좌의 정확한 잔액을 한 번에 조회
+ * - 메모리에서 순서대로 검증(잔액 부족, 회원 없음 등)하면서 잔액을 차감 -> 통과한 이체만 배치 INSERT, 커밋 한 번
+ * - 호출한 쪽의 future 는 커밋이 끝난 뒤 결과(TransferResult)로 완료. 모으는 방식은 RequestBatcher (GroupCommitTransferExecutor 와 같음)
+ * - close 와 동시에 들어온 요청은 처리되거나 RejectedExecutionException 으로 완료됨 (완료되지 않고 남는 future 없음)
+ *
+ * 조회는 findById(memberId, BalanceRead) - 반영된 잔액 또는 정확한 잔액(반영 안 된 원장 포함) 중 선택
+ */
+@Slf4j
+public class LedgerTransferService implements AutoCloseable {
+
+    private final TransactionTemplate txTemplate;
+    private final MemberLedgerRepository ledgerRepository;
+    private final RequestBatcher<Request> batcher;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public LedgerTransferService(PlatformTransactionManager transactionManager, MemberLedgerRepository ledgerRepository,
+                                 Duration window, int maxBatchSize) {
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.ledgerRepository = ledgerRepository;
+        this.batcher = new RequestBatcher<>("ledger-appender", window, maxBatchSize, this::execute, LedgerTransferService::fail);
+    }
+
+    public CompletableFuture<TransferResult> submit(String fromId, String toId, int money) {
+        Request request = new Request(new Transfer(fromId, toId, money));
+        if (!batcher.offer(request)) {
+            request.future.completeExceptionally(new RejectedExecutionException("ledger transfer service closed"));
+        }
+        return request.future;
+    }
+
+    /**
+     * 원장에 추가될 때까지 기다림. 반영되지 않으면 다른 서비스의 이체와 같은 예외
+     */
+    public void accountTransfer(String fromId, String toId, int money) {
+        TransferResult result;
+        try {
+            result = submit(fromId, toId, money).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+
+        switch (result.getStatus()) {
+            case APPLIED -> {
+            }
+            case INSUFFICIENT_FUNDS -> throw new IllegalStateException("잔액 부족 fromId=" + fromId);
+            case MEMBER_NOT_FOUND -> throw new NoSuchElementException("member not found fromId=" + fromId + ", toId=" + toId);
+            case INVALID -> throw new IllegalStateException("이체 중 예외 발생");
+        }
+    }
+
+    public Member findById(String memberId, MemberLedgerRepository.BalanceRead read) {
+        return ledgerRepository.findById(memberId, read);
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getAppendedCount() {
+        return appended.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 새 요청은 받지 않고, 이미 들어온 요청은 처리한 뒤 종료
+     */
+    @Override
+    public void close() {
+        batcher.close();
+    }
+
+    /**
+     * 커밋이 실패하면(Error 포함) 예외가 RequestBatcher 로 올라가서 fail 로 배치 전체가 실패
+     */
+    private void execute(List<Request> batch) {
+        List<TransferResult> results = txTemplate.execute(status -> {
+            Set<String> memberIds = new HashSet<>();
+            for (Request request : batch) {
+                memberIds.add(request.transfer.getFromId());
+                memberIds.add(request.transfer.getToId());
+            }
+
+            long checkpoint = ledgerRepository.lockCheckpoint();
+            Map<String, Integer> balances = new HashMap<>(ledgerRepository.exactBalances(memberIds, checkpoint));
+
+            List<TransferResult> batchResults = new ArrayList<>(batch.size());
+            List<Transfer> accepted = new ArrayList<>(batch.size());
+            for (Request request : batch) {
+                TransferResult.Status transferStatus = apply(request.transfer, balances);
+                if (TransferResult.Status.APPLIED == transferStatus) accepted.add(request.transfer);
+                batchResults.add(new TransferResult(request.transfer, transferStatus));
+            }
+            if (!accepted.isEmpty()) ledgerRepository.appendAll(accepted);
+            return batchResults;
+        });
+
+        batches.increment();
+        log.debug("ledger append batch size={}", batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            TransferResult result = results.get(i);
+            if (result.isApplied()) appended.increment();
+            else rejected.increment();
+            batch.get(i).future.complete(result);
+        }
+    }
+
+    private static void fail(List<Request> batch, Throwable e) {
+        batch.forEach(request -> request.future.completeExceptionally(e));
+    }
+
+    /**
+     * 앞선 이체까지 반영한 잔액으로 검증하고, 통과하면 메모리 잔액에 반영
+     */
+    private TransferResult.Status apply(Transfer transfer, Map<String, Integer> balances) {
+        String fromId = transfer.getFromId();
+        String toId = transfer.getToId();
+        int money = transfer.getMoney();
+
+        if (money <= 0 || toId.equals("ex") || fromId.equals(toId)) return TransferResult.Status.INVALID;
+        if (!balances.containsKey(fromId) || !balances.containsKey(toId)) return TransferResult.Status.MEMBER_NOT_FOUND;
+        if (balances.get(fromId) < money) return TransferResult.Status.INSUFFICIENT_FUNDS;
+
+        balances.merge(fromId, -money, Integer::sum);
+        balances.merge(toId, money, Integer::sum);
+        return TransferResult.Status.APPLIED;
+    }
+
+    private static class Request {
+        private final Transfer transfer;
+        private final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+
+        private Request(Transfer transfer) {
+            this.transfer = transfer;
+        }
+    }
+
+}
@@ -1,11 +1,17 @@
 package dev.riss.jdbc.sevice;
 
 import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.domain.Transfer;
+import dev.riss.jdbc.domain.TransferResult;
+import dev.riss.jdbc.repository.DeltaMemberTransfer;
 import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberTransfer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.*;
+
 /**
  * 예외 누수 문제 해결
  * SQLException 제거
@@ -15,9 +21,15 @@ import org.springframework.transaction.annotation.Transactional;
 @Slf4j
 public class MemberServiceV4 {
     private final MemberRepository memberRepository;
+    private final MemberTransfer memberTransfer;
 
     public MemberServiceV4(MemberRepository memberRepository) {
+        this(memberRepository, new DeltaMemberTransfer(memberRepository));
+    }
+
+    public MemberServiceV4(MemberRepository memberRepository, MemberTransfer memberTransfer) {
         this.memberRepository = memberRepository;
+        this.memberTransfer = memberTransfer;
     }
 
     @Transactional
@@ -25,9 +37,87 @@ public class MemberServiceV4 {
         bizLogicAccountTransfer(fromId, money, toId);
     }
 
+    /**
+     * 조회 없이 증감으로 이체 - 실제 처리 방식은 주입받은 MemberTransfer 전략에 따름
+     * (기본: DeltaMemberTransfer - 증감 UPDATE 두 번, H2FunctionMemberTransfer - DB 함수 안에서 증감, CALL 한 번)
+     */
+    @Transactional
+    public void accountTransferByDelta(String fromId, String toId, int money) {
+        memberTransfer.transfer(fromId, toId, money);
+    }
+
+    /**
+     * 비관적 락 이체 - 두 회원을 member_id 순서로 FOR UPDATE 한 뒤 계산해서 덮어씀
+     * 락을 잡은 뒤에 읽은 잔액이라 그 사이 다른 이체가 끼어들 수 없음 (갱신 손실 없음)
+     * A->B 와 B->A 가 동시에 와도 둘 다 작은 id 부터 잠그므로 서로 반대 순서로 기다리는 데드락이 없음
+     */
+    @Transactional
+    public void accountTransferPessimistic(String fromId, String toId, int money) {
+        Map<String, Member> members = memberRepository.lockAll(List.of(fromId, toId));
+        Member fromMember = getMember(members, fromId);
+        Member toMember = getMember(members, toId);
+
+        memberRepository.update(fromId, fromMember.getMoney() - money);
+        validation(toMember);
+        memberRepository.update(toId, toMember.getMoney() + money);
+    }
+
+    /**
+     * 일괄 이체 (정산 등) - 이체마다 UPDATE 하지 않고 계좌별로 상계(netting)해서 계좌당 UPDATE 한 번
+     * 1. 관련 계좌를 전부 member_id 순서로 FOR UPDATE (lockAll) -> 잔액이 확정되고 다른 이체와 데드락 없음
+     * 2. 요청 순서대로 메모리에서 잔액을 계산하면서 검증. 실패한 이체는 건너뜀(결과에 사유 기록), 나머지는 계속 처리
+     * 3. 계좌별 순증감(0 이 아닌 것만)을 addMoneyAll 배치로 한 번에 반영
+     * 결과는 요청 순서대로. 한 트랜잭션이므로 DB 오류가 나면 전부 롤백
+     */
+    @Transactional
+    public List<TransferResult> accountTransferAll(List<Transfer> transfers) {
+        Set<String> memberIds = new HashSet<>();
+        for (Transfer transfer : transfers) {
+            memberIds.add(transfer.getFromId());
+            memberIds.add(transfer.getToId());
+        }
+
+        Map<String, Integer> balances = new HashMap<>();
+        memberRepository.lockAll(memberIds).forEach((memberId, member) -> balances.put(memberId, member.getMoney()));
+
+        Map<String, Integer> deltas = new TreeMap<>();      // member_id 순서로 UPDATE (락 순서와 동일)
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        for (Transfer transfer : transfers) {
+            TransferResult.Status status = net(transfer, balances, deltas);
+            results.add(new TransferResult(transfer, status));
+        }
+
+        deltas.values().removeIf(delta -> 0 == delta);
+        int[] updated = memberRepository.addMoneyAll(deltas);
+        for (int count : updated) {
+            // 락을 잡고 있으므로 없어질 수 없음. 그래도 어긋나면 전체 롤백
+            if (0 == count) throw new IllegalStateException("member changed during batch transfer");
+        }
+        log.info("batch transfer requested={}, updated accounts={}", transfers.size(), deltas.size());
+        return results;
+    }
+
+    private TransferResult.Status net(Transfer transfer, Map<String, Integer> balances, Map<String, Integer> deltas) {
+        String fromId = transfer.getFromId();
+        String toId = transfer.getToId();
+        int money = transfer.getMoney();
+
+        if (money <= 0 || toId.equals("ex")) return TransferResult.Status.INVALID;
+        if (!balances.containsKey(fromId) || !balances.containsKey(toId)) return TransferResult.Status.MEMBER_NOT_FOUND;
+        if (balances.get(fromId) < money) return TransferResult.Status.INSUFFICIENT_FUNDS;
+
+        balances.merge(fromId, -money, Integer::sum);
+        balances.merge(toId, money, Integer::sum);
+        deltas.merge(fromId, -money, Integer::sum);
+        deltas.merge(toId, money, Integer::sum);
+        return TransferResult.Status.APPLIED;
+    }
+
     private void bizLogicAccountTransfer(String fromId, int money, String toId) {
-        Member fromMember = memberRepository.findById(fromId);
-        Member toMember = memberRepository.findById(toId);
+        // 두 회원을 IN 절 한 번으로 조회 (findById 두 번 -> DB 왕복 1번)
+        Map<String, Member> members = memberRepository.findAllByIds(List.of(fromId, toId));
+        Member fromMember = getMember(members, fromId);
+        Member toMember = getMember(members, toId);
 
         // 스프링 데이터 접근 예외를 활용한 복구 예시
         try {
@@ -40,6 +130,12 @@ public class MemberServiceV4 {
         memberRepository.update(toId, toMember.getMoney() + money);
     }
 
+    private Member getMember(Map<String, Member> members, String memberId) {
+        Member member = members.get(memberId);
+        if (null == member) throw new NoSuchElementException("member not found memberId=" + memberId);
+        return member;
+    }
+
     private void validation(Member toMember) {
         if (toMember.getMemberId().equals("ex")) throw new IllegalStateException("이체 중 예외 발생");
     }
@@ -0,0 +1,129 @@
+package dev.riss.jdbc.sevice;
+
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 낙관적 락(version) + 충돌 시 재시도
+ *
+ * MemberServiceV4.accountTransfer 는 조회한 잔액으로 덮어쓰기 때문에 동시에 이체하면 한쪽 변경이 사라짐(갱신 손실)
+ * -> SERIALIZABLE 로 올리지 않고 READ COMMITTED 에서 version 조건부 UPDATE(updateIfVersion)로 충돌을 감지
+ * -> 충돌하면 트랜잭션 전체를 롤백하고 처음(조회)부터 다시 시도 (최대 maxAttempts 번, 시도 사이 짧은 랜덤 대기)
+ *
+ * 재시도는 트랜잭션 바깥에서 해야 함 (롤백된 트랜잭션 안에서 다시 읽어봐야 의미 없음)
+ * -> @Transactional 대신 TransactionTemplate 으로 시도마다 새 트랜잭션
+ * 락 대기 시간 초과 등 다른 동시성 예외(ConcurrencyFailureException)도 같은 방식으로 재시도
+ *
+ * 리포지토리는 versioned 모드여야 함 (ex. new MemberRepositoryV5(dataSource, true))
+ */
+@Slf4j
+public class MemberServiceV5 {
+
+    private final TransactionTemplate txTemplate;
+    private final MemberRepository memberRepository;
+    private final int maxAttempts;
+
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public MemberServiceV5(PlatformTransactionManager transactionManager, MemberRepository memberRepository, int maxAttempts) {
+        if (maxAttempts <= 0) throw new IllegalArgumentException("maxAttempts must be positive, maxAttempts=" + maxAttempts);
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.txTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.memberRepository = memberRepository;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void accountTransfer(String fromId, String toId, int money) {
+        transfers.increment();
+        for (int attempt = 1; ; attempt++) {
+            attempts.increment();
+            try {
+                txTemplate.executeWithoutResult(status -> bizLogicAccountTransfer(fromId, money, toId));
+                return;
+            } catch (ConcurrencyFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    failures.increment();
+                    log.info("transfer conflict, give up attempts={}", attempt);
+                    throw e;
+                }
+                log.debug("transfer conflict, retry attempt={}", attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void bizLogicAccountTransfer(String fromId, int money, String toId) {
+        Map<String, Member> members = memberRepository.findAllByIds(List.of(fromId, toId));
+        Member fromMember = getMember(members, fromId);
+        Member toMember = getMember(members, toId);
+
+        if (!memberRepository.updateIfVersion(fromId, fromMember.getMoney() - money, fromMember.getVersion())) {
+            throw new OptimisticLockingFailureException("member changed memberId=" + fromId);
+        }
+        validation(toMember);
+        if (!memberRepository.updateIfVersion(toId, toMember.getMoney() + money, toMember.getVersion())) {
+            throw new OptimisticLockingFailureException("member changed memberId=" + toId);
+        }
+    }
+
+    /**
+     * 충돌 통계 (시도 중 충돌 비율, 재시도해도 실패한 이체 수 등)
+     */
+    public long getTransferCount() {
+        return transfers.sum();
+    }
+
+    public long getAttemptCount() {
+        return attempts.sum();
+    }
+
+    public long getConflictCount() {
+        return conflicts.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public double conflictRate() {
+        long attemptCount = attempts.sum();
+        return 0 == attemptCount ? 0.0 : (double) conflicts.sum() / attemptCount;
+    }
+
+    // 같은 회원을 두고 다투는 쓰레드들이 동시에 다시 부딪히지 않도록 시도 횟수에 비례한 랜덤 대기
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(1, 1 + Math.min(attempt, 10) * 2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Member getMember(Map<String, Member> members, String memberId) {
+        Member member = members.get(memberId);
+        if (null == member) throw new NoSuchElementException("member not found memberId=" + memberId);
+        return member;
+    }
+
+    private void validation(Member toMember) {
+        if (toMember.getMemberId().equals("ex")) throw new IllegalStateException("이체 중 예외 발생");
+    }
+
+}
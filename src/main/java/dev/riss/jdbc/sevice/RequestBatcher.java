@@ -0,0 +1,138 @@
+package dev.riss.jdbc.sevice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 요청을 큐에 쌓아두고 전용 쓰레드 하나가 모아서(window 동안 또는 maxBatchSize 개까지) handler 에 배치로 넘김
+ * GroupCommitTransferExecutor, LedgerTransferService 가 같이 사용
+ *
+ * - offer 와 close 는 읽기/쓰기 락으로 묶음 -> offer 끼리는 동시에 진행하고, close 는 진행 중인 offer 가 끝난 뒤에 닫음
+ *   -> 닫힌 뒤에는 큐에 들어가지 않고(false), 닫히기 전에 들어간 요청은 close 가 모두 처리 (처리도 거절도 안 된 요청이 남지 않음)
+ * - handler 가 던진 예외(Error 포함)는 onFailure 로 그 배치만 실패 처리하고 쓰레드는 계속 동작
+ */
+@Slf4j
+final class RequestBatcher<T> implements AutoCloseable {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final String name;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Consumer<List<T>> handler;
+    private final BiConsumer<List<T>, Throwable> onFailure;
+
+    private final BlockingQueue<T> queue = new LinkedBlockingQueue<>();
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    RequestBatcher(String name, Duration window, int maxBatchSize, Consumer<List<T>> handler, BiConsumer<List<T>, Throwable> onFailure) {
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive, maxBatchSize=" + maxBatchSize);
+        this.name = name;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.handler = handler;
+        this.onFailure = onFailure;
+
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 큐에 넣었으면 true, 이미 닫혔으면 false
+     */
+    boolean offer(T request) {
+        closeLock.readLock().lock();
+        try {
+            if (!running) return false;
+            queue.add(request);
+            return true;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 새 요청은 받지 않고, 이미 들어온 요청은 처리한 뒤 종료 (여러 번 호출해도 됨)
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+
+        // 처리 중인 배치를 끊지 않도록 interrupt 하지 않음 (커넥션 획득 등이 중단될 수 있음)
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<T> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += maxBatchSize) {
+            dispatch(rest.subList(from, Math.min(from + maxBatchSize, rest.size())));
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                List<T> batch = collect();
+                if (!batch.isEmpty()) dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 첫 요청이 올 때까지 기다리고, 그때부터 window 동안 또는 maxBatchSize 개가 찰 때까지 모음
+     * 종료 여부를 확인할 수 있도록 첫 요청은 일정 시간만 기다림 (없으면 빈 배치)
+     */
+    private List<T> collect() throws InterruptedException {
+        List<T> batch = new ArrayList<>(maxBatchSize);
+        T first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (null == first) return batch;
+        batch.add(first);
+
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            if (batch.size() >= maxBatchSize) break;
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+            T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (null == next) break;
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void dispatch(List<T> batch) {
+        try {
+            handler.accept(batch);
+        } catch (Throwable e) {
+            log.warn("{} batch failed size={}", name, batch.size(), e);
+            onFailure.accept(batch, e);
+        }
+    }
+
+}
@@ -0,0 +1,369 @@
+package dev.riss.jdbc.sevice;
+
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.TransferDeadLetterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 계좌 샤드별 단일 쓰레드(lane) 이체 처리기
+ *
+ * 계좌를 member_id 해시로 N 개 lane 에 나누고, 각 계좌는 자기 lane 의 쓰레드 하나만 변경함
+ * -> 같은 row 를 두 쓰레드가 동시에 변경하지 않으므로 DB row 락 대기가 없음 (인기 계좌도 lane 안에서 순서대로 처리)
+ *
+ * 이체 경로 (결정적인 규칙)
+ * - 같은 lane: 그 lane 에서 출금 + 입금을 한 트랜잭션으로 처리
+ * - 다른 lane: 출금 lane 에서 출금(잔액 조건부 UPDATE) -> 성공하면 입금 lane 으로 입금을 넘김
+ *   -> 출금 뒤의 실패(입금 회원 없음, 입금 중 예외, 입금 넘기기 실패)는 모두 출금 lane 으로 환불을 넘김 (보상)
+ *   -> 환불이 예외로 실패하면 잠깐 뒤 다시 시도하고, 그래도 안 되거나 출금 회원이 없으면 transfer_dead_letter 에 기록
+ *   출금과 입금 사이에는 돈이 "이동 중"인 상태가 잠깐 보임. 이체의 future 는 입금(또는 환불/기록)까지 끝나야 완료됨
+ *
+ * 외부 요청은 lane 별 고정 크기 링 버퍼(slot 미리 할당, 데이터는 slot 에 덮어씀)로 전달 -> 큐 노드 할당 없음
+ * lane 끼리 넘기는 입금/환불은 별도의 무제한 큐 사용 (lane 끼리 서로 가득 찬 링 버퍼를 기다리는 교착을 피하기 위해)
+ * -> 다른 lane 이체는 한 건당 Handoff 객체와 큐 노드를 할당함 (같은 lane 이체는 링만 거치므로 할당 없음, future 는 어느 경로든 할당)
+ */
+@Slf4j
+public class ShardedTransferSequencer implements AutoCloseable {
+
+    // lane 끼리 넘기는 작업 종류 (외부 이체 요청은 링으로 받음)
+    private static final int CREDIT = 1;
+    private static final int REFUND = 2;
+
+    static final String DEAD_LETTER_SOURCE = "sequencer-refund";
+    private static final int MAX_REFUND_ATTEMPTS = 3;
+    private static final long REFUND_BACKOFF_NANOS = 10_000_000;     // 재시도마다 10ms 씩 늘림
+
+    private final MemberRepository memberRepository;
+    private final TransferDeadLetterRepository deadLetters;
+    private final TransactionTemplate txTemplate;
+    private final Lane[] lanes;
+    private final AtomicLong inFlight = new AtomicLong();     // 받았지만 future 가 아직 완료되지 않은 이체 수
+    private volatile boolean running = true;
+
+    public ShardedTransferSequencer(PlatformTransactionManager transactionManager, MemberRepository memberRepository,
+                                    TransferDeadLetterRepository deadLetters, int laneCount, int ringCapacity) {
+        if (laneCount <= 0) throw new IllegalArgumentException("laneCount must be positive, laneCount=" + laneCount);
+        if (Integer.bitCount(ringCapacity) != 1) throw new IllegalArgumentException("ringCapacity must be a power of two, ringCapacity=" + ringCapacity);
+        this.memberRepository = memberRepository;
+        this.deadLetters = deadLetters;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, ringCapacity);
+        }
+        for (Lane lane : lanes) lane.thread.start();
+    }
+
+    public CompletableFuture<Void> submit(String fromId, String toId, int money) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        // 음수면 출금이 입금으로 바뀌고 입금 쪽은 잔액 확인 없이 빠져나감 -> 링에 넣기 전에 거절
+        if (money <= 0) {
+            future.completeExceptionally(new IllegalArgumentException("money must be positive, money=" + money));
+            return future;
+        }
+        // 먼저 inFlight 를 올리고 running 을 확인 -> close 뒤의 lane 이 inFlight 0 을 보고 끝나버린 다음에 링에 넣는 경우가 없음
+        // (running 을 true 로 봤다면 lane 은 이 이체가 끝날 때까지 inFlight > 0 을 봄)
+        inFlight.incrementAndGet();
+        if (!running) {
+            inFlight.decrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("sequencer closed"));
+            return future;
+        }
+        laneOf(fromId).ring.offer(fromId, toId, money, future);
+        return future;
+    }
+
+    int laneIndex(String memberId) {
+        return Math.floorMod(memberId.hashCode(), lanes.length);
+    }
+
+    private Lane laneOf(String memberId) {
+        return lanes[laneIndex(memberId)];
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Lane lane : lanes) {
+            LockSupport.unpark(lane.thread);
+            try {
+                lane.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class Lane implements Runnable {
+
+        private final Ring ring;
+        private final Queue<Handoff> handoffs = new ConcurrentLinkedQueue<>();
+        private final PriorityQueue<Handoff> retries = new PriorityQueue<>(Comparator.comparingLong(Handoff::dueNanos));     // lane 쓰레드만 사용
+        private final Thread thread;
+
+        private Lane(int index, int ringCapacity) {
+            this.ring = new Ring(ringCapacity);
+            this.thread = new Thread(this, "transfer-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Slot slot = new Slot();
+            int idle = 0;
+            // 종료 후에도 이미 받은 이체는 (다른 lane 에서 넘어올 입금/환불, 환불 재시도까지) 끝까지 처리
+            while (running || 0 < inFlight.get()) {
+                boolean worked = false;
+
+                Handoff handoff;
+                while (null != (handoff = handoffs.poll())) {
+                    execute(handoff);
+                    worked = true;
+                }
+                if (!retries.isEmpty() && retries.peek().dueNanos() - System.nanoTime() <= 0) {
+                    execute(retries.poll());
+                    worked = true;
+                }
+                if (ring.poll(slot)) {
+                    try {
+                        transfer(slot.fromId, slot.toId, slot.money, slot.future);
+                    } catch (RuntimeException e) {
+                        fail(slot.future, e);       // 출금 전 실패 또는 같은 lane 트랜잭션 롤백 -> 돈은 그대로
+                    }
+                    slot.clear();
+                    worked = true;
+                }
+
+                if (worked) {
+                    idle = 0;
+                } else if (++idle < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(50_000);
+                }
+            }
+        }
+
+        private void handoff(Handoff handoff) {
+            handoffs.add(handoff);
+            LockSupport.unpark(thread);
+        }
+
+        private void execute(Handoff handoff) {
+            try {
+                switch (handoff.type()) {
+                    case CREDIT -> credit(handoff);
+                    case REFUND -> refund(handoff);
+                    default -> throw new IllegalStateException("unknown type=" + handoff.type());
+                }
+            } catch (RuntimeException e) {
+                // credit, refund 는 안에서 예외를 모두 처리함. 여기까지 오면 돈의 위치를 알 수 없으므로 기록만 남김
+                log.error("handoff failed type={}, fromId={}, toId={}, money={}", handoff.type(), handoff.fromId(), handoff.toId(), handoff.money(), e);
+                fail(handoff.future(), e);
+            }
+        }
+
+        private void transfer(String fromId, String toId, int money, CompletableFuture<Void> future) {
+            validation(toId);
+
+            Lane target = laneOf(toId);
+            if (target == this) {
+                txTemplate.executeWithoutResult(status -> {
+                    debit(fromId, money);
+                    if (!memberRepository.addMoney(toId, money)) {
+                        throw new NoSuchElementException("member not found memberId=" + toId);     // 출금도 롤백
+                    }
+                });
+                complete(future);
+                return;
+            }
+
+            debit(fromId, money);
+            // 여기부터는 출금이 끝났으므로 실패하면 반드시 환불
+            try {
+                target.handoff(new Handoff(CREDIT, fromId, toId, money, future, null, 0, 0));
+            } catch (RuntimeException e) {
+                refund(new Handoff(REFUND, fromId, toId, money, future, e, 0, 0));     // 이 lane 이 출금 lane
+            }
+        }
+
+        /**
+         * 입금 lane 에서 실행. 입금하지 못하면(회원 없음, 예외) 원인과 함께 출금 lane 으로 환불을 넘김
+         */
+        private void credit(Handoff credit) {
+            RuntimeException cause;
+            try {
+                if (memberRepository.addMoney(credit.toId(), credit.money())) {
+                    complete(credit.future());
+                    return;
+                }
+                cause = new NoSuchElementException("member not found memberId=" + credit.toId());
+            } catch (RuntimeException e) {
+                cause = e;
+            }
+            laneOf(credit.fromId()).handoff(credit.toRefund(cause));
+        }
+
+        /**
+         * 출금 lane 에서 실행. 예외면 backoff 후 재시도, 재시도를 다 쓰거나 출금 회원이 없으면 dead letter 로 기록
+         * 어느 경우든 이체의 future 는 입금 실패 원인으로 완료
+         */
+        private void refund(Handoff refund) {
+            try {
+                if (memberRepository.addMoney(refund.fromId(), refund.money())) {
+                    fail(refund.future(), refund.cause());
+                    return;
+                }
+                deadLetter(refund, "refund target not found memberId=" + refund.fromId());      // 재시도해도 소용없음
+            } catch (RuntimeException e) {
+                int attempt = refund.attempt() + 1;
+                if (attempt < MAX_REFUND_ATTEMPTS) {
+                    log.warn("refund failed, retrying attempt={}, fromId={}, money={}", attempt, refund.fromId(), refund.money(), e);
+                    retries.add(refund.toRetry(attempt, System.nanoTime() + REFUND_BACKOFF_NANOS * attempt));
+                    return;
+                }
+                refund.cause().addSuppressed(e);
+                deadLetter(refund, "refund failed after " + attempt + " attempts: " + e);
+            }
+        }
+
+        private void deadLetter(Handoff refund, String reason) {
+            try {
+                deadLetters.record(DEAD_LETTER_SOURCE, refund.fromId(), refund.toId(), refund.money(), reason);
+            } catch (RuntimeException e) {
+                // DB 에 남기지도 못한 경우 - 로그가 유일한 기록
+                log.error("dead letter failed, manual refund required fromId={}, toId={}, money={}, reason={}",
+                        refund.fromId(), refund.toId(), refund.money(), reason, e);
+                refund.cause().addSuppressed(e);
+            }
+            fail(refund.future(), refund.cause());
+        }
+
+        private void debit(String fromId, int money) {
+            if (!memberRepository.addMoney(fromId, -money, money)) {
+                throw new IllegalStateException("잔액 부족 또는 회원 없음 fromId=" + fromId);
+            }
+        }
+    }
+
+    private void complete(CompletableFuture<Void> future) {
+        inFlight.decrementAndGet();
+        future.complete(null);
+    }
+
+    private void fail(CompletableFuture<Void> future, RuntimeException e) {
+        inFlight.decrementAndGet();
+        future.completeExceptionally(e);
+    }
+
+    private void validation(String toId) {
+        if (toId.equals("ex")) throw new IllegalStateException("이체 중 예외 발생");
+    }
+
+    /**
+     * lane 끼리 넘기는 입금/환불. cause 는 환불의 원인(입금 실패), attempt/dueNanos 는 환불 재시도용
+     */
+    private record Handoff(int type, String fromId, String toId, int money, CompletableFuture<Void> future,
+                           RuntimeException cause, int attempt, long dueNanos) {
+
+        private Handoff toRefund(RuntimeException cause) {
+            return new Handoff(REFUND, fromId, toId, money, future, cause, 0, 0);
+        }
+
+        private Handoff toRetry(int attempt, long dueNanos) {
+            return new Handoff(REFUND, fromId, toId, money, future, cause, attempt, dueNanos);
+        }
+    }
+
+    /**
+     * lane 쓰레드가 링에서 꺼낸 값을 옮겨 담는 그릇 (lane 당 하나를 재사용)
+     */
+    private static class Slot {
+        private String fromId;
+        private String toId;
+        private int money;
+        private CompletableFuture<Void> future;
+
+        private void clear() {
+            fromId = null;
+            toId = null;
+            future = null;
+        }
+    }
+
+    /**
+     * 다중 생산자 / 단일 소비자 고정 크기 링 버퍼
+     * 칸마다 sequence 를 두고 생산자는 tail 을 CAS 로 차지한 뒤 칸에 쓰고 sequence 로 공개, 소비자는 sequence 를 보고 읽음
+     * 칸 배열(필드별 배열)은 생성 시 한 번만 할당. 가득 차면 생산자가 잠깐씩 대기
+     */
+    private static class Ring {
+
+        private final int mask;
+        private final AtomicLongArray sequences;
+        private final String[] fromIds;
+        private final String[] toIds;
+        private final int[] moneys;
+        private final Object[] futures;
+        private final AtomicLong tail = new AtomicLong();
+        private long head;      // 소비자(lane 쓰레드)만 사용
+
+        private Ring(int capacity) {
+            this.mask = capacity - 1;
+            this.sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) sequences.set(i, i);
+            this.fromIds = new String[capacity];
+            this.toIds = new String[capacity];
+            this.moneys = new int[capacity];
+            this.futures = new Object[capacity];
+        }
+
+        void offer(String fromId, String toId, int money, CompletableFuture<Void> future) {
+            while (true) {
+                long position = tail.get();
+                int index = (int) (position & mask);
+                long diff = sequences.get(index) - position;
+                if (0 == diff) {
+                    if (!tail.compareAndSet(position, position + 1)) continue;
+                    fromIds[index] = fromId;
+                    toIds[index] = toId;
+                    moneys[index] = money;
+                    futures[index] = future;
+                    sequences.set(index, position + 1);     // 소비자에게 공개
+                    return;
+                }
+                if (diff < 0) LockSupport.parkNanos(1_000);     // 가득 참
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean poll(Slot slot) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) return false;
+
+            slot.fromId = fromIds[index];
+            slot.toId = toIds[index];
+            slot.money = moneys[index];
+            slot.future = (CompletableFuture<Void>) futures[index];
+            fromIds[index] = null;
+            toIds[index] = null;
+            futures[index] = null;
+
+            sequences.set(index, head + mask + 1);      // 한 바퀴 뒤의 생산자에게 칸 반환
+            head++;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package dev.riss.jdbc.sevice;
+
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * memberId 기준 JVM 안의 락 (stripe 개수만큼 락을 만들어두고 memberId 해시로 나눠 씀)
+ *
+ * 인기 계좌로 이체가 몰리면 요청 쓰레드마다 커넥션을 하나씩 빌린 채로 DB row 락을 기다림 -> 커넥션 풀이 바닥남
+ * -> 커넥션을 빌리기(트랜잭션 시작) 전에 이 락을 먼저 잡으면, 대기는 커넥션 없이 메모리에서 함
+ *    같은 계좌를 쓰는 요청은 한 번에 하나만 DB 로 가고, 나머지 요청들이 쓸 커넥션은 풀에 남음
+ *
+ * - 여러 계좌를 잡을 때는 stripe 번호 오름차순(중복 제거)으로 잡음 -> 이체끼리 데드락 없음
+ * - 다른 계좌가 같은 stripe 에 걸리면 불필요하게 기다릴 수 있음 -> stripe 수를 동시 요청 수보다 충분히 크게
+ * - 같은 JVM 안에서만 유효 (서버가 여러 대면 DB 락이 여전히 최종 보장)
+ * - 대기 시간 통계: 바로 잡은 횟수/기다린 횟수, 누적, 최대 대기 시간
+ */
+public class StripedAccountLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public StripedAccountLocks(int stripes) {
+        if (stripes <= 0) throw new IllegalArgumentException("stripes must be positive, stripes=" + stripes);
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;    // 2의 거듭제곱으로 올림 (1 -> 1, 16 -> 16, 17 -> 32)
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) locks[i] = new ReentrantLock();
+        this.mask = size - 1;
+    }
+
+    /**
+     * memberIds 의 락을 모두 잡음 (timeout 안에 못 잡으면 이미 잡은 것은 풀고 CannotAcquireLockException)
+     * 반환된 Handle 을 close 하면 해제 -> try-with-resources 로 사용
+     */
+    public Handle lock(Duration timeout, String... memberIds) {
+        int[] stripes = stripesOf(memberIds);
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        for (int i = 0; i < stripes.length; i++) {
+            if (!acquire(locks[stripes[i]], deadline)) {
+                for (int j = i - 1; j >= 0; j--) locks[stripes[j]].unlock();
+                timeouts.increment();
+                throw new CannotAcquireLockException("account lock timeout memberIds=" + Arrays.toString(memberIds));
+            }
+        }
+        return new Handle(stripes);
+    }
+
+    int stripeOf(String memberId) {
+        int h = memberId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    int stripeCount() {
+        return locks.length;
+    }
+
+    // 오름차순, 중복 제거 -> 항상 같은 순서로 락을 잡고, 같은 stripe 는 한 번만 잡음
+    int[] stripesOf(String... memberIds) {
+        int[] stripes = new int[memberIds.length];
+        for (int i = 0; i < memberIds.length; i++) stripes[i] = stripeOf(memberIds[i]);
+        Arrays.sort(stripes);
+
+        int size = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            if (0 == i || stripes[i] != stripes[size - 1]) stripes[size++] = stripes[i];
+        }
+        return size == stripes.length ? stripes : Arrays.copyOf(stripes, size);
+    }
+
+    private boolean acquire(ReentrantLock lock, long deadline) {
+        acquisitions.increment();
+        if (lock.tryLock()) return true;
+
+        contended.increment();
+        long start = System.nanoTime();
+        try {
+            return lock.tryLock(Math.max(0, deadline - start), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            long waited = System.nanoTime() - start;
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+        }
+    }
+
+    public long getAcquisitionCount() {
+        return acquisitions.sum();
+    }
+
+    public long getContendedCount() {
+        return contended.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * 기다려야 했던 락 획득의 평균 대기 시간
+     */
+    public double averageContendedWaitMillis() {
+        long count = contended.sum();
+        return 0 == count ? 0.0 : totalWaitNanos.sum() / 1_000_000.0 / count;
+    }
+
+    public class Handle implements AutoCloseable {
+
+        private final int[] stripes;
+
+        private Handle(int[] stripes) {
+            this.stripes = stripes;
+        }
+
+        @Override
+        public void close() {
+            for (int i = stripes.length - 1; i >= 0; i--) locks[stripes[i]].unlock();
+        }
+    }
+
+}
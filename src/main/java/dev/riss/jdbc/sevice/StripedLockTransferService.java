@@ -0,0 +1,39 @@
+package dev.riss.jdbc.sevice;
+
+import dev.riss.jdbc.repository.MemberTransfer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+/**
+ * JVM 락을 먼저 잡고 그 다음에 트랜잭션(커넥션)을 시작하는 이체
+ *
+ * @Transactional 메서드는 호출되는 순간 커넥션을 빌리므로, 락은 트랜잭션 바깥에서 잡아야 함
+ * -> @Transactional 대신 락 안에서 TransactionTemplate 으로 트랜잭션 시작
+ * 이체 로직은 MemberTransfer 전략 사용 (ex. DeltaMemberTransfer)
+ */
+@Slf4j
+public class StripedLockTransferService {
+
+    private final StripedAccountLocks locks;
+    private final TransactionTemplate txTemplate;
+    private final MemberTransfer memberTransfer;
+    private final Duration lockTimeout;
+
+    public StripedLockTransferService(StripedAccountLocks locks, PlatformTransactionManager transactionManager,
+                                      MemberTransfer memberTransfer, Duration lockTimeout) {
+        this.locks = locks;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.memberTransfer = memberTransfer;
+        this.lockTimeout = lockTimeout;
+    }
+
+    public void accountTransfer(String fromId, String toId, int money) {
+        try (StripedAccountLocks.Handle ignored = locks.lock(lockTimeout, fromId, toId)) {
+            txTemplate.executeWithoutResult(status -> memberTransfer.transfer(fromId, toId, money));
+        }
+    }
+
+}
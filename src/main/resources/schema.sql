@@ -0,0 +1,42 @@
+-- member 테이블 (H2)
+-- 스프링 부트는 임베디드 DB 일 때만 schema.sql 을 자동 실행함. tcp 로 붙는 H2 서버에는 직접 실행해주거나
+-- 벤치마크처럼 ResourceDatabasePopulator 로 실행 (전부 IF NOT EXISTS 라서 여러 번 실행해도 됨)
+CREATE TABLE IF NOT EXISTS member (
+    member_id VARCHAR(10),
+    money INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (member_id)
+);
+
+-- member_id 블록 할당용 시퀀스 (MemberIdAllocator - 값 하나가 blockSize 개짜리 id 블록 하나)
+CREATE SEQUENCE IF NOT EXISTS member_id_seq START WITH 1 INCREMENT BY 1;
+
+-- 낙관적 락용 버전 컬럼 (versioned 모드 리포지토리, H2FunctionMemberTransfer 가 사용)
+ALTER TABLE member ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- 이체 원장 (원장 모드 - MemberLedgerRepository)
+CREATE TABLE IF NOT EXISTS member_ledger (
+    ledger_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    from_id VARCHAR(10) NOT NULL,
+    to_id VARCHAR(10) NOT NULL,
+    money INTEGER NOT NULL
+);
+CREATE INDEX IF NOT EXISTS member_ledger_from_idx ON member_ledger(from_id, ledger_id);
+CREATE INDEX IF NOT EXISTS member_ledger_to_idx ON member_ledger(to_id, ledger_id);
+
+-- 원장을 member.money 에 어디까지 반영했는지 (LedgerProjector)
+CREATE TABLE IF NOT EXISTS member_ledger_checkpoint (
+    projection VARCHAR(30) PRIMARY KEY,
+    last_ledger_id BIGINT NOT NULL
+);
+MERGE INTO member_ledger_checkpoint KEY(projection) VALUES ('member', 0);
+
+-- 자동으로 처리하지 못한 이체 (TransferDeadLetterRepository, ex. 환불까지 실패한 lane 간 이체)
+CREATE TABLE IF NOT EXISTS transfer_dead_letter (
+    dead_letter_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    source VARCHAR(30) NOT NULL,
+    from_id VARCHAR(10) NOT NULL,
+    to_id VARCHAR(10) NOT NULL,
+    money INTEGER NOT NULL,
+    reason VARCHAR(500),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
@@ -0,0 +1,90 @@
+package dev.riss.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class AdaptivePoolSizerTest {
+
+    RissConnectionPool pool;
+    InstrumentedDataSource dataSource;
+
+    @BeforeEach
+    void before () {
+        pool = new RissConnectionPool("SizerPool", URL, USERNAME, PASSWORD, 2);
+        dataSource = new InstrumentedDataSource(pool, false);
+    }
+
+    @AfterEach
+    void after () {
+        pool.close();
+    }
+
+    @Test
+    void growWhenBorrowersWait () throws Exception {
+        AdaptivePoolSizer sizer = AdaptivePoolSizer.forRissPool(dataSource, pool, 1, 16, Duration.ofMillis(1), null);
+
+        // 8 쓰레드가 커넥션 2개를 두고 경쟁 (쿼리 시간은 일정 -> DB 는 여유)
+        load(8, 5, 300);
+
+        AdaptivePoolSizer.Decision decision = sizer.adjust();
+        log.info("decision={}", decision);
+        assertThat(decision.reason()).isEqualTo("borrowers waiting");
+        assertThat(pool.getMaximumPoolSize()).isGreaterThan(2);
+    }
+
+    @Test
+    void shrinkWhenOversized () throws Exception {
+        pool.setMaximumPoolSize(10);
+        try (Connection ignored = dataSource.getConnection()) {
+            // 첫 커넥션 생성 시간이 측정 구간에 섞이지 않도록 미리 만들어둠
+        }
+        AdaptivePoolSizer sizer = AdaptivePoolSizer.forRissPool(dataSource, pool, 1, 16, Duration.ofMillis(1), null);
+
+        load(1, 2, 200);
+
+        AdaptivePoolSizer.Decision decision = sizer.adjust();
+        log.info("decision={}", decision);
+        assertThat(decision.reason()).isEqualTo("oversized");
+        assertThat(pool.getMaximumPoolSize()).isEqualTo(9);
+    }
+
+    @Test
+    void skipWithoutSamples () {
+        AdaptivePoolSizer sizer = AdaptivePoolSizer.forRissPool(dataSource, pool, 1, 16, Duration.ofMillis(1), null);
+        assertThat(sizer.adjust()).isNull();
+        assertThat(pool.getMaximumPoolSize()).isEqualTo(2);
+    }
+
+    private void load (int threads, long holdMillis, long durationMillis) throws Exception {
+        long deadline = System.currentTimeMillis() + durationMillis;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                while (System.currentTimeMillis() < deadline) {
+                    try (Connection ignored = dataSource.getConnection()) {
+                        Thread.sleep(holdMillis);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,44 @@
+package dev.riss.jdbc.connection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HistogramTest {
+
+    @Test
+    void percentilesWithinRelativeError () {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100_000; value++) histogram.record(value * 1000);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(100_000);
+        assertThat(snapshot.getMax()).isEqualTo(100_000_000);
+        assertThat((double) snapshot.valueAtPercentile(50)).isCloseTo(50_000_000, within(50_000_000 / 64.0));
+        assertThat((double) snapshot.valueAtPercentile(99)).isCloseTo(99_000_000, within(99_000_000 / 64.0));
+        assertThat(snapshot.valueAtPercentile(100)).isEqualTo(100_000_000);
+    }
+
+    @Test
+    void bucketBoundaries () {
+        for (long value : new long[]{0, 1, 127, 128, 129, 130, 1_000_000, Long.MAX_VALUE}) {
+            int index = Histogram.indexOf(value);
+            assertThat(Histogram.highestValueAt(index)).isGreaterThanOrEqualTo(value);
+            if (0 < index) assertThat(Histogram.highestValueAt(index - 1)).isLessThan(value);
+        }
+    }
+
+    @Test
+    void intervalSnapshot () {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 100; i++) histogram.record(10);
+        HistogramSnapshot before = histogram.snapshot();
+        for (int i = 0; i < 100; i++) histogram.record(1000);
+
+        HistogramSnapshot interval = histogram.snapshot().minus(before);
+        assertThat(interval.getCount()).isEqualTo(100);
+        assertThat(interval.valueAtPercentile(1)).isGreaterThanOrEqualTo(1000);
+    }
+
+}
@@ -0,0 +1,89 @@
+package dev.riss.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class InstrumentedDataSourceTest {
+
+    HikariDataSource hikari;
+    InstrumentedDataSource dataSource;
+
+    @BeforeEach
+    void before () {
+        hikari = new HikariDataSource();
+        hikari.setJdbcUrl(URL);
+        hikari.setUsername(USERNAME);
+        hikari.setPassword(PASSWORD);
+        hikari.setMaximumPoolSize(2);
+        hikari.setConnectionTimeout(250);
+
+        dataSource = new InstrumentedDataSource(hikari);
+    }
+
+    @AfterEach
+    void after () {
+        dataSource.unregisterMBean();
+        hikari.close();
+    }
+
+    @Test
+    void timeoutVisibleWhenPoolRunsDry () throws Exception {
+        Connection conn1 = dataSource.getConnection();
+        Connection conn2 = dataSource.getConnection();
+        assertThat(dataSource.getActiveConnections()).isEqualTo(2);
+
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        conn1.close();
+        conn2.close();
+
+        PoolMetricsSnapshot snapshot = dataSource.snapshot();
+        log.info("snapshot={}", snapshot);
+        assertThat(snapshot.getBorrowCount()).isEqualTo(2);
+        assertThat(snapshot.getTimeoutCount()).isEqualTo(1);
+        assertThat(snapshot.getActiveConnections()).isZero();
+        assertThat(snapshot.getIdleConnections()).isEqualTo(2);
+        assertThat(snapshot.getBorrowWait().getMax()).isGreaterThanOrEqualTo(200_000_000L);
+        assertThat(snapshot.getHeld().getCount()).isEqualTo(2);
+        assertThat(snapshot.getActiveAtBorrow().getMax()).isEqualTo(2);
+    }
+
+    @Test
+    void attributeToRepositoryMethod () {
+        MemberRepository memberRepository = new MemberRepositoryV5(dataSource);
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.findById("memberA");
+        memberRepository.delete("memberA");
+
+        PoolMetricsSnapshot snapshot = dataSource.snapshot();
+        assertThat(snapshot.getCallers()).containsKeys("MemberRepositoryV5.save", "MemberRepositoryV5.findById",
+                "MemberRepositoryV5.delete");
+        assertThat(snapshot.getCallers().get("MemberRepositoryV5.findById").getHeld().getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void exposedThroughJmx () throws Exception {
+        dataSource.registerMBean("test");
+        try (Connection ignored = dataSource.getConnection()) {
+            Object active = ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName("dev.riss.jdbc:type=InstrumentedDataSource,name=test"), "ActiveConnections");
+            assertThat(active).isEqualTo(1);
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package dev.riss.jdbc.connection;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class RissConnectionPoolTest {
+
+    RissConnectionPool pool;
+
+    @BeforeEach
+    void before () {
+        pool = new RissConnectionPool("TestPool", URL, USERNAME, PASSWORD, 4);
+    }
+
+    @AfterEach
+    void after () {
+        pool.close();
+        DBConnectionUtil.disablePooling();
+    }
+
+    @Test
+    void reuseSamePhysicalConnection () throws Exception {
+        Connection physical1;
+        try (Connection conn = pool.getConnection()) {
+            physical1 = conn.unwrap(Connection.class);
+        }
+        Connection physical2;
+        try (Connection conn = pool.getConnection()) {
+            physical2 = conn.unwrap(Connection.class);
+        }
+
+        // 같은 쓰레드가 반납한 커넥션을 다시 받음 (ThreadLocal)
+        assertThat(physical2).isSameAs(physical1);
+        assertThat(pool.getCreatedCount()).isEqualTo(1);
+        assertThat(pool.getValidationSkipCount()).isEqualTo(2);
+    }
+
+    @Test
+    void resetOnlyChangedState () throws Exception {
+        try (Connection conn = pool.getConnection()) {
+            conn.createStatement().close();
+        }
+        assertThat(pool.getResetCount()).isZero();
+
+        try (Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+        }
+        assertThat(pool.getResetCount()).isEqualTo(1);
+
+        try (Connection conn = pool.getConnection()) {
+            assertThat(conn.getAutoCommit()).isTrue();
+            assertThat(conn.isReadOnly()).isFalse();
+        }
+    }
+
+    @Test
+    void closedProxyRejectsCalls () throws Exception {
+        Connection conn = pool.getConnection();
+        conn.close();
+        conn.close();       // 두 번 닫아도 한 번만 반납
+
+        assertThat(conn.isClosed()).isTrue();
+        assertThatThrownBy(conn::createStatement).isInstanceOf(java.sql.SQLException.class);
+        assertThat(pool.getIdleConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void unclosedStatementsClosedOnReturn () throws Exception {
+        Connection conn = pool.getConnection();
+        PreparedStatement pstmt = conn.prepareStatement("select 1");
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("select 1");
+
+        // Statement 에서 꺼낸 커넥션도 빌려준 프록시
+        assertThat(pstmt.getConnection()).isSameAs(conn);
+        assertThat(stmt.getConnection()).isSameAs(conn);
+
+        conn.close();
+        assertThat(pstmt.isClosed()).isTrue();
+        assertThat(stmt.isClosed()).isTrue();
+        assertThat(rs.isClosed()).isTrue();
+        stmt.close();       // 반납 후에 닫아도 예외 없음
+    }
+
+    @Test
+    void timeoutWhenExhausted () throws Exception {
+        pool.setConnectionTimeout(200);
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < 4; i++) connections.add(pool.getConnection());
+
+        assertThatThrownBy(pool::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        assertThat(pool.getTimeoutCount()).isEqualTo(1);
+
+        for (Connection connection : connections) connection.close();
+    }
+
+    @Test
+    void maxLifetimeEvictsOnReturn () throws Exception {
+        pool.setMaxLifetime(50);
+        Connection conn = pool.getConnection();
+        Thread.sleep(100);
+        conn.close();
+
+        assertThat(pool.getTotalConnections()).isZero();
+    }
+
+    @Test
+    void concurrentBorrow () throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    try (Connection conn = pool.getConnection()) {
+                        conn.createStatement().execute("SELECT 1");
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+
+        log.info("{}", pool);
+        assertThat(pool.getCreatedCount()).isLessThanOrEqualTo(4);
+        assertThat(pool.getActiveConnections()).isZero();
+    }
+
+    @Test
+    void dbConnectionUtilPooling () throws Exception {
+        DBConnectionUtil.enablePooling(2);
+
+        Connection physical1;
+        try (Connection conn = DBConnectionUtil.getConnection()) {
+            physical1 = conn.unwrap(Connection.class);
+        }
+        try (Connection conn = DBConnectionUtil.getConnection()) {
+            assertThat(conn.unwrap(Connection.class)).isSameAs(physical1);
+        }
+        assertThat(DBConnectionUtil.pool().getCreatedCount()).isEqualTo(1);
+    }
+
+}
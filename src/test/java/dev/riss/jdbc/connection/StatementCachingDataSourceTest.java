@@ -0,0 +1,160 @@
+package dev.riss.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepositoryV4_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class StatementCachingDataSourceTest {
+
+    public static final String MEMBER_ID = "stmtCache";
+
+    HikariDataSource hikariDataSource;
+
+    @BeforeEach
+    void beforeEach() {
+        hikariDataSource = new HikariDataSource();
+        hikariDataSource.setJdbcUrl(URL);
+        hikariDataSource.setUsername(USERNAME);
+        hikariDataSource.setPassword(PASSWORD);
+        hikariDataSource.setMaximumPoolSize(1);     // 항상 같은 물리 커넥션을 받도록
+    }
+
+    @AfterEach
+    void afterEach() {
+        hikariDataSource.close();
+    }
+
+    @Test
+    void reuseAcrossCheckouts() throws SQLException {
+        StatementCachingDataSource dataSource = new StatementCachingDataSource(hikariDataSource, 16);
+        String sql = "SELECT * FROM member WHERE member_id=?";
+
+        PreparedStatement first;
+        try (Connection conn = dataSource.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            first = pstmt.unwrap(PreparedStatement.class);
+        }
+        // 풀에 반납했다가 다시 빌려도 같은 물리 커넥션이면 같은 statement
+        try (Connection conn = dataSource.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            assertThat(pstmt.unwrap(PreparedStatement.class)).isSameAs(first);
+            assertThat(first.isClosed()).isFalse();
+        }
+        log.info("hit={}, miss={}", dataSource.getHitCount(), dataSource.getMissCount());
+        assertThat(dataSource.getHitCount()).isEqualTo(1);
+        assertThat(dataSource.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void lruEviction() throws SQLException {
+        StatementCachingDataSource dataSource = new StatementCachingDataSource(hikariDataSource, 2);
+
+        PreparedStatement eldest;
+        try (Connection conn = dataSource.getConnection()) {
+            PreparedStatement pstmt = conn.prepareStatement("SELECT 1");
+            eldest = pstmt.unwrap(PreparedStatement.class);
+            pstmt.close();
+            conn.prepareStatement("SELECT 2").close();
+            conn.prepareStatement("SELECT 3").close();     // 최대 2개 -> "SELECT 1" 이 실제로 닫힘
+        }
+        assertThat(dataSource.getEvictionCount()).isEqualTo(1);
+        assertThat(eldest.isClosed()).isTrue();
+    }
+
+    @Test
+    void physicalCloseInvalidates() throws SQLException {
+        StatementCachingDataSource dataSource = new StatementCachingDataSource(hikariDataSource, 16);
+        String sql = "SELECT 1";
+
+        PreparedStatement first;
+        try (Connection conn = dataSource.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            first = pstmt.unwrap(PreparedStatement.class);
+        }
+        hikariDataSource.getHikariPoolMXBean().softEvictConnections();  // 물리 커넥션 폐기 -> 새 물리 커넥션
+
+        try (Connection conn = dataSource.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            assertThat(pstmt.unwrap(PreparedStatement.class)).isNotSameAs(first);
+        }
+        assertThat(dataSource.getHitCount()).isZero();
+        assertThat(dataSource.getCachedConnectionCount()).isEqualTo(1);    // 폐기된 물리 커넥션의 캐시는 정리됨
+    }
+
+    @Test
+    void uncommittedWorkRolledBackOnClose() throws SQLException {
+        StatementCachingDataSource dataSource = new StatementCachingDataSource(hikariDataSource, 16);
+        MemberRepositoryV4_1 repository = new MemberRepositoryV4_1(dataSource);
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO member(member_id, money) VALUES (?, ?)")) {
+                pstmt.setString(1, MEMBER_ID);
+                pstmt.setInt(2, 10000);
+                pstmt.executeUpdate();
+            }
+            // 커밋/롤백 없이 반납 -> 풀은 캐시된 statement 의 실행을 모르므로 여기서 롤백해야 함
+        }
+        assertThat(repository.findAllByIds(List.of(MEMBER_ID))).isEmpty();
+    }
+
+    @Test
+    void settingsResetBeforeReuse() throws SQLException {
+        StatementCachingDataSource dataSource = new StatementCachingDataSource(hikariDataSource, 16);
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        txTemplate.setTimeout(30);
+        String sql = "SELECT ?";
+
+        // 타임아웃이 있는 트랜잭션 -> JdbcTemplate 이 남은 시간으로 queryTimeout 설정
+        txTemplate.executeWithoutResult(status -> template.queryForObject(sql, Integer.class, 1));
+
+        ResultSet unclosed;
+        try (Connection conn = dataSource.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            assertThat(pstmt.getQueryTimeout()).isZero();
+            pstmt.setMaxRows(1);
+            pstmt.setFetchSize(77);
+            pstmt.setInt(1, 1);
+            unclosed = pstmt.executeQuery();
+        }
+        assertThat(unclosed.isClosed()).isTrue();
+
+        try (Connection conn = dataSource.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            assertThat(pstmt.getMaxRows()).isZero();
+            assertThat(pstmt.getFetchSize()).isNotEqualTo(77);
+        }
+        assertThat(dataSource.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void repositoryReuse() {
+        StatementCachingDataSource dataSource = new StatementCachingDataSource(hikariDataSource, 16);
+        MemberRepositoryV4_1 repository = new MemberRepositoryV4_1(dataSource);
+
+        repository.save(new Member(MEMBER_ID, 10000));
+        try {
+            repository.findById(MEMBER_ID);
+            repository.update(MEMBER_ID, 20000);
+            Member findMember = repository.findById(MEMBER_ID);   // 두 번째 조회는 캐시된 statement
+
+            assertThat(findMember.getMoney()).isEqualTo(20000);
+            assertThat(dataSource.getHitCount()).isGreaterThanOrEqualTo(1);
+        } finally {
+            repository.delete(MEMBER_ID);
+        }
+    }
+
+}
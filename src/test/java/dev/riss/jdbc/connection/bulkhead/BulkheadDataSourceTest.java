@@ -0,0 +1,158 @@
+package dev.riss.jdbc.connection.bulkhead;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class BulkheadDataSourceTest {
+
+    public static final String MEMBER_A="memberA";
+
+    List<HikariDataSource> pools = new ArrayList<>();
+    BulkheadDataSource dataSource;
+
+    @BeforeEach
+    void before () {
+        dataSource = new BulkheadDataSource(Workload.INTERACTIVE);
+        dataSource.addBulkhead(Workload.INTERACTIVE, pool("interactive", 2), 2, Duration.ofSeconds(1), 2);
+        dataSource.addBulkhead(Workload.BATCH, pool("batch", 2), 2, Duration.ofMillis(500), 1);
+        dataSource.setSharedPool(pool("shared", 2), 2);
+    }
+
+    @AfterEach
+    void after () {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void routeByContextAndAnnotation () throws Exception {
+        MemberRepository memberRepository = new MemberRepositoryV5(dataSource);
+        SettlementJob job = WorkloadRouting.wrap(new SettlementJob(memberRepository), SettlementJob.class);
+        try {
+            memberRepository.save(new Member(MEMBER_A, 10000));      // 지정 없음 -> INTERACTIVE
+            job.settle(MEMBER_A);                                      // @WorkloadType(BATCH)
+            WorkloadContext.run(Workload.BATCH, () -> memberRepository.findById(MEMBER_A));
+
+            assertThat(dataSource.getBorrowCount(Workload.INTERACTIVE)).isEqualTo(1);
+            assertThat(dataSource.getBorrowCount(Workload.BATCH)).isEqualTo(2);
+            assertThat(WorkloadContext.current()).isNull();
+        } finally {
+            memberRepository.deleteAll(List.of(MEMBER_A));
+        }
+    }
+
+    @Test
+    void batchCannotStarveInteractive () throws Exception {
+        // 배치가 자기 풀 2개 + 공유 한도 1개를 다 잡아도
+        List<Connection> batch = WorkloadContext.call(Workload.BATCH, this::borrowAll);
+        assertThat(batch).hasSize(3);
+        assertThatThrownBy(() -> WorkloadContext.call(Workload.BATCH, () -> borrow()))
+                .hasCauseInstanceOf(SQLTransientConnectionException.class);
+
+        // 이체는 자기 풀 2개 + 남은 공유 1개를 바로 받음
+        long start = System.nanoTime();
+        List<Connection> interactive = new ArrayList<>();
+        for (int i = 0; i < 3; i++) interactive.add(dataSource.getConnection());
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(500);
+        log.info("{}", dataSource);
+
+        for (Connection connection : interactive) connection.close();
+        for (Connection connection : batch) connection.close();
+        assertThat(dataSource.getActiveConnections(Workload.BATCH)).isZero();
+        assertThat(dataSource.getSharedConnections(Workload.BATCH)).isZero();
+        assertThat(dataSource.getTimeoutCount(Workload.BATCH)).isEqualTo(2);
+    }
+
+    @Test
+    void interactiveFirstInSharedQueue () throws Exception {
+        List<Connection> interactive = new ArrayList<>();
+        for (int i = 0; i < 4; i++) interactive.add(dataSource.getConnection());      // 자기 풀 2 + 공유 2
+        List<Connection> batch = WorkloadContext.call(Workload.BATCH, this::borrowAll);
+        assertThat(batch).hasSize(2);       // 공유 풀이 가득이라 자기 풀만
+
+        // 배치가 먼저 공유 자리를 기다리고 있어도 이체가 먼저 받음
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Connection> batchWaiter = executor.submit(() -> WorkloadContext.call(Workload.BATCH, () -> borrow()));
+        Thread.sleep(50);
+        Future<Connection> interactiveWaiter = executor.submit(() -> dataSource.getConnection());
+        Thread.sleep(50);
+        interactive.remove(3).close();      // 공유 자리 하나 반납
+
+        Connection got = interactiveWaiter.get(1, TimeUnit.SECONDS);
+        assertThat(batchWaiter.isDone()).isFalse();
+        got.close();
+        batchWaiter.get(1, TimeUnit.SECONDS).close();
+        executor.shutdown();
+
+        for (Connection connection : interactive) connection.close();
+        for (Connection connection : batch) connection.close();
+    }
+
+    private HikariDataSource pool(String name, int size) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(URL);
+        pool.setUsername(USERNAME);
+        pool.setPassword(PASSWORD);
+        pool.setPoolName(name);
+        pool.setMaximumPoolSize(size);
+        pools.add(pool);
+        return pool;
+    }
+
+    // 타임아웃 날 때까지 빌림
+    private List<Connection> borrowAll() {
+        List<Connection> connections = new ArrayList<>();
+        while (true) {
+            try {
+                connections.add(dataSource.getConnection());
+            } catch (SQLTransientConnectionException e) {
+                return connections;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private Connection borrow() {
+        try {
+            return dataSource.getConnection();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @WorkloadType(Workload.BATCH)
+    static class SettlementJob {
+
+        private final MemberRepository memberRepository;
+
+        SettlementJob(MemberRepository memberRepository) {
+            this.memberRepository = memberRepository;
+        }
+
+        public void settle(String memberId) {
+            memberRepository.addMoney(memberId, 100);
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package dev.riss.jdbc.exception.translator;
+
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepositoryV4_2;
+import dev.riss.jdbc.repository.ex.ErrorCodeTable;
+import dev.riss.jdbc.repository.ex.ErrorCodeTableExceptionTranslator;
+import dev.riss.jdbc.repository.ex.MyDbException;
+import dev.riss.jdbc.repository.ex.MyDuplicateKeyException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLSyntaxErrorException;
+import java.util.List;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 커넥션 없이 DB 이름으로 만든 에러코드 테이블로 변환
+ */
+@Slf4j
+class ErrorCodeTableTranslatorTest {
+
+    public static final String MEMBER_ID = "dupKey";
+
+    MemberRepositoryV4_2 repository;
+
+    @BeforeEach
+    void init() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        repository = new MemberRepositoryV4_2(dataSource, new ErrorCodeTableExceptionTranslator("H2", true));
+    }
+
+    @AfterEach
+    void after() {
+        repository.deleteAll(List.of(MEMBER_ID));
+    }
+
+    @Test
+    void translateWithoutConnection() {
+        ErrorCodeTableExceptionTranslator translator = new ErrorCodeTableExceptionTranslator("H2");
+
+        // H2 기준 42122: 컬럼 없음(문법 오류), 23505: 키 중복
+        DataAccessException grammar = translator.translate("select", "select bad grammar", new SQLSyntaxErrorException("bad", "42S22", 42122));
+        DataAccessException duplicate = translator.translate("insert", null, new SQLIntegrityConstraintViolationException("dup", "23505", 23505));
+
+        assertThat(grammar).isInstanceOf(BadSqlGrammarException.class);
+        assertThat(duplicate.getClass()).isEqualTo(DuplicateKeyException.class);
+        assertThat(duplicate.getStackTrace()).isNotEmpty();
+    }
+
+    @Test
+    void stacklessDuplicateKey() {
+        repository.save(new Member(MEMBER_ID, 0));
+
+        assertThatThrownBy(() -> repository.save(new Member(MEMBER_ID, 0)))
+                .isInstanceOf(DuplicateKeyException.class)
+                .satisfies(e -> assertThat(e.getStackTrace()).isEmpty())
+                .hasCauseInstanceOf(SQLException.class);
+    }
+
+    @Test
+    void stacklessMyDuplicateKey() {
+        SQLException e = new SQLIntegrityConstraintViolationException("dup", "23505", 23505);
+        MyDbException ex = ErrorCodeTable.forDatabase("H2").toMyDbException(e, true);
+
+        assertThat(ex).isInstanceOf(MyDuplicateKeyException.class);
+        assertThat(ex.getStackTrace()).isEmpty();
+        assertThat(ex.getCause()).isSameAs(e);
+    }
+
+}
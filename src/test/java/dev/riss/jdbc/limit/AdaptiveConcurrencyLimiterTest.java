@@ -0,0 +1,179 @@
+package dev.riss.jdbc.limit;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import dev.riss.jdbc.sevice.MemberServiceV4;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class AdaptiveConcurrencyLimiterTest {
+
+    public static final String MEMBER_A="memberA";
+    public static final String MEMBER_B="memberB";
+
+    @Test
+    void aimdGrowsUnderLoadAndBacksOff () {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Algorithm.AIMD,
+                4, 1, 100, Duration.ofSeconds(1), Duration.ZERO, 0);
+
+        // 한도를 꽉 채워서 빠르게 처리 -> +1 씩
+        for (int round = 0; round < 10; round++) {
+            int limit = limiter.getLimit();
+            List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limit; i++) permits.add(limiter.acquire());
+            permits.forEach(AdaptiveConcurrencyLimiter.Permit::success);
+        }
+        int grown = limiter.getLimit();
+        assertThat(grown).isGreaterThan(4);
+
+        // 과부하 신호면 곱으로 줄임
+        limiter.acquire().dropped();
+        assertThat(limiter.getLimit()).isLessThan(grown);
+        assertThat(limiter.getDroppedCount()).isEqualTo(1);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void idleDoesNotGrow () {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Algorithm.AIMD,
+                10, 1, 100, Duration.ofSeconds(1), Duration.ZERO, 0);
+
+        // 한 번에 하나씩만 -> 한도의 절반도 안 씀
+        for (int i = 0; i < 100; i++) limiter.acquire().success();
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void rejectWhenQueueFull () throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Algorithm.AIMD,
+                1, 1, 1, Duration.ofSeconds(1), Duration.ofSeconds(10), 1);
+        AdaptiveConcurrencyLimiter.Permit holding = limiter.acquire();
+
+        // 한 명은 줄을 서고
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch queued = new CountDownLatch(1);
+        Future<?> waiter = executor.submit(() -> {
+            queued.countDown();
+            limiter.acquire().success();
+        });
+        queued.await();
+        while (0 == limiter.getWaiting()) Thread.onSpinWait();
+
+        // 대기열이 가득이면 바로 거절 (대상은 실행되지 않음)
+        assertThatThrownBy(() -> limiter.call(() -> "never")).isInstanceOf(LimitExceededException.class);
+        assertThat(limiter.getRejectedCount()).isEqualTo(1);
+
+        holding.success();
+        waiter.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertThat(limiter.getAcceptedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectAfterMaxWait () {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Algorithm.AIMD,
+                1, 1, 1, Duration.ofSeconds(1), Duration.ofMillis(50), 10);
+        AdaptiveConcurrencyLimiter.Permit holding = limiter.acquire();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(limiter::acquire).isInstanceOf(LimitExceededException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(50);
+        assertThat(limiter.getWaiting()).isZero();
+        holding.success();
+    }
+
+    @Test
+    void vegasShrinksWhenLatencyGrows () throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Algorithm.VEGAS,
+                20, 1, 100, Duration.ofSeconds(1), Duration.ZERO, 0);
+
+        // 부하 없을 때 응답 시간 기록
+        for (int i = 0; i < 20; i++) limiter.acquire().success();
+        int before = limiter.getLimit();
+
+        // 응답 시간이 크게 늘면 DB 앞에 줄이 선 것 -> 줄임
+        for (int i = 0; i < 5; i++) {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+            Thread.sleep(20);
+            permit.success();
+        }
+        log.info("vegas limit {} -> {}", before, limiter.getLimit());
+        assertThat(limiter.getLimit()).isLessThan(before);
+    }
+
+    @Test
+    void overloadExceptionIsDropped () {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Algorithm.AIMD,
+                10, 1, 100, Duration.ofSeconds(1), Duration.ZERO, 0);
+
+        assertThatThrownBy(() -> limiter.call(() -> {
+            throw new IllegalStateException("business");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(limiter.getDroppedCount()).isZero();
+
+        assertThatThrownBy(() -> limiter.call(() -> {
+            throw new CannotGetJdbcConnectionException("pool exhausted");
+        })).isInstanceOf(CannotGetJdbcConnectionException.class);
+        assertThat(limiter.getDroppedCount()).isEqualTo(1);
+        assertThat(limiter.getLimit()).isEqualTo(9);
+    }
+
+    @Test
+    void errorReleasesPermit () {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Algorithm.AIMD,
+                1, 1, 100, Duration.ofSeconds(1), Duration.ZERO, 0);
+
+        assertThatThrownBy(() -> limiter.call(() -> {
+            throw new StackOverflowError("error");
+        })).isInstanceOf(StackOverflowError.class);
+
+        // 반납됐으므로 다음 요청이 들어감
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.getDroppedCount()).isEqualTo(1);
+        assertThat(limiter.call(() -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void wrapRepositoryAndService () {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        MemberRepositoryV5 target = new MemberRepositoryV5(dataSource);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Algorithm.AIMD,
+                10, 1, 100, Duration.ofSeconds(1), Duration.ZERO, 0);
+
+        MemberRepository memberRepository = ConcurrencyLimiting.wrap(target, MemberRepository.class, limiter);
+        MemberServiceV4 memberService = ConcurrencyLimiting.wrap(new MemberServiceV4(target), MemberServiceV4.class, limiter);
+        try {
+            memberRepository.save(new Member(MEMBER_A, 10000));
+            memberRepository.save(new Member(MEMBER_B, 10000));
+            memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+
+            assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+            assertThat(limiter.getAcceptedCount()).isEqualTo(4);
+            assertThat(limiter.getInFlight()).isZero();
+        } finally {
+            target.deleteAll(List.of(MEMBER_A, MEMBER_B));
+            dataSource.close();
+        }
+    }
+
+}
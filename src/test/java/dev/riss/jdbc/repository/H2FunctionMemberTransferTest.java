@@ -0,0 +1,123 @@
+package dev.riss.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * H2 함수(CREATE ALIAS) 이체 - H2 서버가 함수 소스를 컴파일할 수 없으면(JRE 위에서 실행 중) 건너뜀
+ */
+@Slf4j
+class H2FunctionMemberTransferTest {
+
+    public static final String MEMBER_A="memberA";
+    public static final String MEMBER_B="memberB";
+    public static final String MEMBER_EX="ex";
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    H2FunctionMemberTransfer memberTransfer;
+
+    @BeforeEach
+    void before () {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+
+        try {
+            memberTransfer = new H2FunctionMemberTransfer(dataSource);
+        } catch (DataAccessException e) {
+            log.warn("h2 function not available", e);
+            dataSource.close();
+            Assumptions.abort("H2 server cannot compile the function source (needs a JDK): " + e.getMessage());
+        }
+    }
+
+    @AfterEach
+    void after () {
+        if (dataSource.isClosed()) return;
+        memberRepository.deleteAll(List.of(MEMBER_A, MEMBER_B, MEMBER_EX));
+        dataSource.close();
+    }
+
+    @Test
+    void transfer () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        memberTransfer.transfer(MEMBER_A, MEMBER_B, 2000);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    void failuresChangeNothing () {
+        memberRepository.save(new Member(MEMBER_A, 1000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 0));
+
+        assertThatThrownBy(() -> memberTransfer.transfer(MEMBER_A, MEMBER_B, 2000)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> memberTransfer.transfer(MEMBER_A, "none", 100)).isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(() -> memberTransfer.transfer(MEMBER_A, MEMBER_EX, 100)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> memberTransfer.transfer(MEMBER_A, MEMBER_B, -2000)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isZero();
+    }
+
+    @Test
+    void bumpsVersion () {
+        MemberRepository versioned = new MemberRepositoryV5(dataSource, true);
+        versioned.save(new Member(MEMBER_A, 10000));
+        versioned.save(new Member(MEMBER_B, 10000));
+        Member readA = versioned.findById(MEMBER_A);
+        Member readB = versioned.findById(MEMBER_B);
+
+        memberTransfer.transfer(MEMBER_A, MEMBER_B, 2000);
+
+        // 함수가 version 을 올렸으므로 이체 전에 읽은 값으로 덮어쓰지 못함 (갱신 손실 없음)
+        assertThat(versioned.updateIfVersion(MEMBER_A, readA.getMoney() + 500, readA.getVersion())).isFalse();
+        assertThat(versioned.updateIfVersion(MEMBER_B, readB.getMoney() + 500, readB.getVersion())).isFalse();
+        assertThat(versioned.findById(MEMBER_A).getVersion()).isEqualTo(readA.getVersion() + 1);
+        assertThat(versioned.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(versioned.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    void joinsTransaction () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        TransactionTemplate txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        // CALL 은 트랜잭션의 커넥션으로 실행 -> 롤백되면 함수 안의 변경도 취소
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> {
+            memberTransfer.transfer(MEMBER_A, MEMBER_B, 2000);
+            throw new IllegalStateException("rollback");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+}
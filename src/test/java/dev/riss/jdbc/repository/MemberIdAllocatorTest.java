@@ -0,0 +1,93 @@
+package dev.riss.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MemberIdAllocatorTest {
+
+    HikariDataSource dataSource;
+
+    @BeforeEach
+    void beforeEach () {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+    }
+
+    @AfterEach
+    void afterEach () {
+        dataSource.close();
+    }
+
+    @Test
+    void uniqueAcrossThreads () throws Exception {
+        MemberIdAllocator allocator = new MemberIdAllocator(dataSource, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) ids.add(allocator.nextId());
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+
+        assertThat(ids).hasSize(8000);
+        assertThat(ids).allSatisfy(id -> assertThat(id).hasSize(MemberIdAllocator.ID_LENGTH));
+    }
+
+    @Test
+    void ordered () {
+        MemberIdAllocator sequential = new MemberIdAllocator(dataSource, 10);
+        MemberIdAllocator timeOrdered = new MemberIdAllocator(dataSource, 10, true);
+
+        List<String> sequentialIds = new ArrayList<>();
+        List<String> timeOrderedIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sequentialIds.add(sequential.nextId());
+            timeOrderedIds.add(timeOrdered.nextId());
+        }
+        log.info("sequential={}, timeOrdered={}", sequentialIds.get(0), timeOrderedIds.get(0));
+
+        // 한 인스턴스가 발급한 id 는 문자열 순서 = 발급 순서
+        assertThat(sequentialIds).isSorted();
+        assertThat(timeOrderedIds).isSorted();
+    }
+
+    @Test
+    void timeOrderedFailsFastWhenSuffixWouldWrap () {
+        int modulo = 36 * 36 * 36 * 36;
+        Clock fixed = Clock.fixed(Instant.now(), ZoneOffset.UTC);
+        MemberIdAllocator allocator = new MemberIdAllocator(dataSource, modulo, true, fixed);
+
+        // 블록 하나 = 36^4 개 -> 같은 초에 두 번째 블록을 받으면 뒤 4자리가 겹치므로 발급하지 않음
+        String first = allocator.nextId();
+        for (int i = 1; i < modulo; i++) allocator.nextValue();
+
+        assertThatThrownBy(allocator::nextId).isInstanceOf(IllegalStateException.class);
+        assertThat(first).hasSize(MemberIdAllocator.ID_LENGTH);
+    }
+
+}
@@ -0,0 +1,261 @@
+package dev.riss.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.domain.MemberPage;
+import dev.riss.jdbc.repository.ex.MyBatchUpdateException;
+import dev.riss.jdbc.repository.ex.PartialBatchUpdateException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * saveAll, updateAll, deleteAll - JDBC 배치
+ * batchSize 를 일부러 작게(3) 줘서 여러 번 나눠서 executeBatch 되는 경우도 확인
+ */
+@Slf4j
+class MemberRepositoryBatchTest {
+
+    HikariDataSource dataSource;
+    List<Member> members;
+
+    @BeforeEach
+    void beforeEach () {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        // version 컬럼은 schema.sql 에 있음 (리포지토리는 DDL 을 실행하지 않음)
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        members = new ArrayList<>();
+        for (int i = 0; i < 10; i++) members.add(new Member("batch" + i, 1000 * i));
+    }
+
+    @AfterEach
+    void afterEach () {
+        new MemberRepositoryV5(dataSource).deleteAll(members.stream().map(Member::getMemberId).toList());
+        dataSource.close();
+    }
+
+    @Test
+    void batchV4_1 () {
+        batchCrud(new MemberRepositoryV4_1(dataSource, 3));
+    }
+
+    @Test
+    void batchV4_2 () {
+        batchCrud(new MemberRepositoryV4_2(dataSource, 3));
+    }
+
+    @Test
+    void batchV5 () {
+        batchCrud(new MemberRepositoryV5(dataSource, 3));
+    }
+
+    @Test
+    void invalidBatchSize () {
+        assertThatThrownBy(() -> new MemberRepositoryV4_1(dataSource, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MemberRepositoryV4_2(dataSource, -1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MemberRepositoryV5(dataSource, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void batchFailureCountsV4_1 () {
+        MyBatchUpdateException e = (MyBatchUpdateException) catchBatchFailure(new MemberRepositoryV4_1(dataSource, 3));
+        assertFailureCounts(e.getUpdateCounts());
+    }
+
+    @Test
+    void batchFailureCountsV4_2 () {
+        PartialBatchUpdateException e = (PartialBatchUpdateException) catchBatchFailure(new MemberRepositoryV4_2(dataSource, 3));
+        assertThat(e.getCause()).isInstanceOf(DuplicateKeyException.class);
+        assertFailureCounts(e.getUpdateCounts());
+    }
+
+    @Test
+    void batchFailureCountsV5 () {
+        PartialBatchUpdateException e = (PartialBatchUpdateException) catchBatchFailure(new MemberRepositoryV5(dataSource, 3));
+        assertThat(e.getCause()).isInstanceOf(DuplicateKeyException.class);
+        assertFailureCounts(e.getUpdateCounts());
+    }
+
+    // batch4 가 이미 있음 -> 두 번째 executeBatch(3~5) 에서 실패
+    private RuntimeException catchBatchFailure (MemberRepository repository) {
+        repository.save(new Member("batch4", 0));
+        try {
+            repository.saveAll(members);
+        } catch (RuntimeException e) {
+            log.info("batch failure", e);
+            return e;
+        }
+        throw new AssertionError("saveAll should fail");
+    }
+
+    // 입력 순서대로: 첫 배치는 성공, 실패한 배치는 드라이버 결과, 보내지 못한 나머지는 EXECUTE_FAILED
+    private void assertFailureCounts (int[] counts) {
+        assertThat(counts).hasSize(members.size()).startsWith(1, 1, 1);
+        assertThat(counts[4]).isEqualTo(Statement.EXECUTE_FAILED);
+        assertThat(counts).endsWith(Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED);
+    }
+
+    @Test
+    void findAllByIds () {
+        MemberRepository repository = new MemberRepositoryV4_2(dataSource);
+        repository.saveAll(members);
+
+        // 70 개 -> 64 + 16(6 개 + 패딩) 두 번에 나눠서 조회, 없는 id 는 결과에서 빠짐
+        List<String> ids = new ArrayList<>(members.stream().map(Member::getMemberId).toList());
+        for (int i = 0; i < 60; i++) ids.add("none" + i);
+
+        Map<String, Member> found = repository.findAllByIds(ids);
+        assertThat(found).hasSize(members.size());
+        assertThat(found.get("batch3").getMoney()).isEqualTo(3000);
+        assertThat(new MemberRepositoryV5(dataSource).findAllByIds(ids)).isEqualTo(found);
+    }
+
+    @Test
+    void streamAll () {
+        MemberRepository repository = new MemberRepositoryV5(dataSource);
+        repository.saveAll(members);
+
+        // fetchSize 를 작게 줘도 전체를 다 읽음. try-with-resources 로 닫아야 커넥션 반환
+        try (Stream<Member> stream = repository.streamAll(2)) {
+            assertThat(stream.filter(member -> member.getMemberId().startsWith("batch")).count()).isEqualTo(members.size());
+        }
+        try (Stream<Member> stream = new MemberRepositoryV4_2(dataSource).streamAll(2)) {
+            assertThat(stream.filter(member -> member.getMemberId().startsWith("batch")).count()).isEqualTo(members.size());
+        }
+        assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isZero();
+    }
+
+    @Test
+    void findPage () {
+        new MemberRepositoryV5(dataSource).saveAll(members);
+        assertThat(countByPaging(new MemberRepositoryV4_2(dataSource))).isEqualTo(members.size());
+        assertThat(countByPaging(new MemberRepositoryV5(dataSource))).isEqualTo(members.size());
+    }
+
+    // 테이블 전체를 3 개씩 끝까지 넘기면서 이 테스트에서 넣은 회원 수를 셈
+    private int countByPaging (MemberRepository repository) {
+        int count = 0;
+        String token = null;
+        do {
+            MemberPage page = repository.findPage(token, 3);
+            assertThat(page.getMembers()).hasSizeLessThanOrEqualTo(3);
+            count += (int) page.getMembers().stream().filter(member -> member.getMemberId().startsWith("batch")).count();
+            token = page.getNextToken();
+        } while (null != token);
+        return count;
+    }
+
+    @Test
+    void upsertV4_1 () {
+        upsert(new MemberRepositoryV4_1(dataSource, 3));
+    }
+
+    @Test
+    void upsertV4_2 () {
+        upsert(new MemberRepositoryV4_2(dataSource, 3));
+    }
+
+    @Test
+    void upsertV5 () {
+        upsert(new MemberRepositoryV5(dataSource, 3));
+    }
+
+    @Test
+    void lockAll () {
+        new MemberRepositoryV5(dataSource).saveAll(members);
+
+        // 없는 id 까지 70 개 -> 64 개짜리 chunk 하나 + 나머지 chunk
+        List<String> ids = new ArrayList<>(members.stream().map(Member::getMemberId).toList());
+        for (int i = 0; i < 60; i++) ids.add("none" + i);
+
+        for (MemberRepository repository : List.of(new MemberRepositoryV4_1(dataSource, 3), new MemberRepositoryV4_2(dataSource, 3), new MemberRepositoryV5(dataSource, 3))) {
+            Map<String, Member> locked = repository.lockAll(ids);
+            assertThat(locked).hasSize(members.size());
+            assertThat(locked.get("batch7").getMoney()).isEqualTo(7000);
+        }
+    }
+
+    @Test
+    void updateIfVersionV4_1 () {
+        MemberRepository repository = new MemberRepositoryV4_1(dataSource, true);
+        Member first = members.get(0);
+        repository.save(first);
+
+        long version = repository.findById(first.getMemberId()).getVersion();
+        assertThat(repository.updateIfVersion(first.getMemberId(), 500, version)).isTrue();
+        assertThat(repository.updateIfVersion(first.getMemberId(), 600, version)).isFalse();    // 이미 바뀐 version
+
+        // 다른 변경도 version 을 올림 -> 그 전에 읽은 쪽의 updateIfVersion 은 실패
+        long current = repository.findById(first.getMemberId()).getVersion();
+        repository.addMoney(first.getMemberId(), 100);
+        assertThat(repository.updateIfVersion(first.getMemberId(), 700, current)).isFalse();
+        assertThat(repository.findById(first.getMemberId()).getMoney()).isEqualTo(600);
+
+        assertThatThrownBy(() -> new MemberRepositoryV4_1(dataSource).updateIfVersion(first.getMemberId(), 0, 0))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private void upsert (MemberRepository repository) {
+        Member first = members.get(0);
+
+        // 단건: 없으면 INSERT(true), 있으면 예외 없이 false / UPDATE(false)
+        assertThat(repository.insertIfAbsent(first)).isTrue();
+        assertThat(repository.insertIfAbsent(new Member(first.getMemberId(), 777))).isFalse();
+        assertThat(repository.findById(first.getMemberId()).getMoney()).isEqualTo(first.getMoney());
+
+        assertThat(repository.saveOrUpdate(new Member(first.getMemberId(), 777))).isFalse();
+        assertThat(repository.findById(first.getMemberId()).getMoney()).isEqualTo(777);
+        assertThat(repository.saveOrUpdate(members.get(1))).isTrue();
+
+        // 배치: 앞의 두 개는 이미 있음
+        boolean[] inserted = repository.insertIfAbsentAll(members.subList(0, 5));
+        assertThat(inserted).containsExactly(false, false, true, true, true);
+
+        List<Member> changed = members.stream().map(member -> new Member(member.getMemberId(), member.getMoney() + 1)).toList();
+        boolean[] upserted = repository.saveOrUpdateAll(changed);
+        assertThat(upserted).containsExactly(false, false, false, false, false, true, true, true, true, true);
+        assertThat(repository.findById("batch3").getMoney()).isEqualTo(3001);
+        assertThat(repository.findById("batch9").getMoney()).isEqualTo(9001);
+    }
+
+    private void batchCrud (MemberRepository repository) {
+        // saveAll
+        int[] saved = repository.saveAll(members);
+        assertThat(saved).hasSize(members.size()).containsOnly(1);
+        assertThat(repository.findById("batch9").getMoney()).isEqualTo(9000);
+
+        // updateAll: 없는 id 는 0 으로 결과가 나옴 (입력 순서대로)
+        int[] updated = repository.updateAll(List.of(new Member("batch0", 5), new Member("none", 5), new Member("batch1", 7)));
+        assertThat(updated).containsExactly(1, 0, 1);
+        assertThat(repository.findById("batch0").getMoney()).isEqualTo(5);
+        assertThat(repository.findById("batch1").getMoney()).isEqualTo(7);
+
+        // deleteAll
+        int[] deleted = repository.deleteAll(members.stream().map(Member::getMemberId).toList());
+        assertThat(deleted).hasSize(members.size()).containsOnly(1);
+        // V4_x 는 NoSuchElementException, V5(JdbcTemplate) 는 EmptyResultDataAccessException
+        assertThatThrownBy(() -> repository.findById("batch0"))
+                .isInstanceOfAny(NoSuchElementException.class, EmptyResultDataAccessException.class);
+    }
+
+}
@@ -0,0 +1,144 @@
+package dev.riss.jdbc.repository.cache;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class CachingMemberRepositoryTest {
+
+    public static final String MEMBER_A="memberA";
+    public static final String MEMBER_B="memberB";
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    CachingMemberRepository cachingRepository;
+    TransactionTemplate txTemplate;
+
+    @BeforeEach
+    void before () {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        memberRepository = new MemberRepositoryV5(dataSource);
+        cachingRepository = new CachingMemberRepository(memberRepository, 100, Duration.ofMinutes(1));
+        txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+    }
+
+    @AfterEach
+    void after () {
+        memberRepository.deleteAll(List.of(MEMBER_A, MEMBER_B));
+        dataSource.close();
+    }
+
+    @Test
+    void readThrough () {
+        cachingRepository.findById(MEMBER_A);
+        cachingRepository.findById(MEMBER_A);
+
+        assertThat(cachingRepository.stats().getHitCount()).isEqualTo(1);
+        assertThat(cachingRepository.stats().getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void commitInvalidates () {
+        cachingRepository.findById(MEMBER_A);       // 캐시에 10000
+
+        txTemplate.executeWithoutResult(status -> {
+            cachingRepository.addMoney(MEMBER_A, 100);
+            // 이 트랜잭션에서 쓴 키는 DB(같은 커넥션)에서 읽음 -> 자기 변경이 보임, 캐시에는 넣지 않음
+            assertThat(cachingRepository.findById(MEMBER_A).getMoney()).isEqualTo(10100);
+        });
+
+        assertThat(cachingRepository.findById(MEMBER_A).getMoney()).isEqualTo(10100);
+    }
+
+    @Test
+    void insertIfAbsentAllKeepsExistingEntries () {
+        cachingRepository.findById(MEMBER_A);       // 캐시에 10000
+        try {
+            boolean[] inserted = cachingRepository.insertIfAbsentAll(List.of(new Member(MEMBER_A, 0), new Member("memberC", 0)));
+            assertThat(inserted).containsExactly(false, true);
+
+            // 이미 있던 memberA 는 바뀌지 않았으므로 캐시에 그대로 남아있음
+            cachingRepository.findById(MEMBER_A);
+            assertThat(cachingRepository.stats().getHitCount()).isEqualTo(1);
+        } finally {
+            memberRepository.delete("memberC");
+        }
+    }
+
+    @Test
+    void rollbackDoesNotPoison () {
+        cachingRepository.findById(MEMBER_A);
+
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> {
+            cachingRepository.addMoney(MEMBER_A, 100);
+            assertThat(cachingRepository.findById(MEMBER_A).getMoney()).isEqualTo(10100);
+            throw new IllegalStateException("rollback");
+        })).isInstanceOf(IllegalStateException.class);
+
+        // 커밋 전 값(10100)은 캐시에 들어가지 않았음
+        assertThat(cachingRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void staleLoadDuringTransactionIsEvictedOnCommit () {
+        txTemplate.executeWithoutResult(status -> {
+            cachingRepository.addMoney(MEMBER_A, 100);
+            // 다른 쓰레드는 커밋 전이라 예전 값(10000)을 읽어서 캐시에 채움
+            Member other = CompletableFuture.supplyAsync(() -> cachingRepository.findById(MEMBER_A)).join();
+            assertThat(other.getMoney()).isEqualTo(10000);
+        });
+
+        // 커밋 시점에 한 번 더 무효화 -> 예전 값이 남지 않음
+        assertThat(cachingRepository.findById(MEMBER_A).getMoney()).isEqualTo(10100);
+    }
+
+    @Test
+    void otherAccountWriteDuringLoadDoesNotBlockCaching () {
+        // A 를 DB 에서 읽는 사이(stamp 를 받은 뒤, put 하기 전) B 가 바뀜 - 이체가 몰리는 상황
+        CachingMemberRepository[] caching = new CachingMemberRepository[1];
+        MemberRepository loadWithConcurrentWrite = (MemberRepository) Proxy.newProxyInstance(MemberRepository.class.getClassLoader(),
+                new Class<?>[]{MemberRepository.class}, (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(memberRepository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                    if ("findById".equals(method.getName()) && MEMBER_A.equals(args[0])) caching[0].addMoney(MEMBER_B, 1);
+                    return result;
+                });
+        caching[0] = new CachingMemberRepository(loadWithConcurrentWrite, 100, Duration.ofMinutes(1));
+
+        caching[0].findById(MEMBER_A);
+        caching[0].findById(MEMBER_A);
+
+        // 키별 stamp 라 B 의 무효화가 A 의 적재를 막지 않음 (전역 stamp 였다면 두 번 다 miss)
+        assertThat(caching[0].stats().getHitCount()).isEqualTo(1);
+    }
+
+}
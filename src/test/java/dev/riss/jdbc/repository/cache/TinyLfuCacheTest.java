@@ -0,0 +1,85 @@
+package dev.riss.jdbc.repository.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TinyLfuCacheTest {
+
+    @Test
+    void hitAndMiss () {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(100, Duration.ofMinutes(1));
+
+        assertThat(cache.get("a")).isNull();
+        cache.put("a", 1, cache.stamp("a"));
+        assertThat(cache.get("a")).isEqualTo(1);
+
+        CacheStats stats = cache.stats();
+        assertThat(stats.getHitCount()).isEqualTo(1);
+        assertThat(stats.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void putIgnoredWhenInvalidatedWhileLoading () {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(100, Duration.ofMinutes(1));
+
+        long stamp = cache.stamp("a");     // DB 조회 시작
+        cache.invalidate("a");          // 그 사이 다른 쓰레드가 변경
+        assertThat(cache.put("a", 1, stamp)).isFalse();
+        assertThat(cache.get("a")).isNull();
+    }
+
+    @Test
+    void otherKeyInvalidationDoesNotBlockLoad () {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(100, Duration.ofMinutes(1));
+
+        long stamp = cache.stamp("a");      // "a" 조회 시작
+        cache.invalidate("b");              // 그 사이 다른 계좌가 변경 ("a", "b" 는 해시 97, 98 -> 다른 칸)
+        assertThat(cache.put("a", 1, stamp)).isTrue();
+
+        stamp = cache.stamp("a");
+        cache.invalidateAll();
+        assertThat(cache.put("a", 2, stamp)).isFalse();
+    }
+
+    @Test
+    void frequentKeysSurviveScan () {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(100, Duration.ofMinutes(1));
+
+        // 인기 키 50개를 여러 번 조회
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                String key = "hot" + i;
+                if (null == cache.get(key)) cache.put(key, i, cache.stamp(key));
+            }
+        }
+        // 한 번씩만 쓰는 키 1000개 (스캔)
+        for (int i = 0; i < 1000; i++) {
+            String key = "scan" + i;
+            if (null == cache.get(key)) cache.put(key, i, cache.stamp(key));
+        }
+
+        int hotHits = 0;
+        for (int i = 0; i < 50; i++) {
+            if (null != cache.get("hot" + i)) hotHits++;
+        }
+        // 빈도는 추정치라 해시 충돌로 일부는 밀려날 수 있음. LRU 였다면 스캔에 전부 밀려나서 0
+        assertThat(hotHits).isGreaterThanOrEqualTo(40);
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        assertThat(cache.stats().getRejectionCount()).isPositive();
+    }
+
+    @Test
+    void expire () throws InterruptedException {
+        TinyLfuCache<String, Integer> cache = new TinyLfuCache<>(100, Duration.ofMillis(10));
+        cache.put("a", 1, cache.stamp("a"));
+
+        Thread.sleep(20);
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.stats().getExpirationCount()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,183 @@
+package dev.riss.jdbc.repository.writebehind;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.DeltaMemberTransfer;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class WriteBehindMemberRepositoryTest {
+
+    public static final String MEMBER_A="memberA";
+    public static final String MEMBER_B="memberB";
+
+    HikariDataSource dataSource;
+    DataSourceTransactionManager transactionManager;
+    MemberRepository memberRepository;
+    WriteBehindMemberRepository writeBehind;
+
+    @BeforeEach
+    void before () {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        // 타이머로는 반영되지 않도록 길게 -> 테스트에서 flush 시점을 직접 제어
+        writeBehind = new WriteBehindMemberRepository(memberRepository, transactionManager, Duration.ofMinutes(10), 100);
+    }
+
+    @AfterEach
+    void after () {
+        writeBehind.close();
+        memberRepository.deleteAll(List.of(MEMBER_A, MEMBER_B));
+        dataSource.close();
+    }
+
+    @Test
+    void coalesceUntilFlush () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+
+        for (int i = 0; i < 100; i++) writeBehind.addMoney(MEMBER_A, 10);
+        writeBehind.update(MEMBER_A, 5000);
+        writeBehind.addMoney(MEMBER_A, 1);
+
+        // DB 에는 아직 없지만 데코레이터로 읽으면 보임
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(writeBehind.findById(MEMBER_A).getMoney()).isEqualTo(5001);
+        assertThat(writeBehind.getPendingCount()).isEqualTo(1);
+        assertThat(writeBehind.getCoalescedWriteCount()).isEqualTo(101);
+
+        writeBehind.flush();
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(5001);
+        assertThat(writeBehind.getPendingCount()).isZero();
+        assertThat(writeBehind.getFlushedRowCount()).isEqualTo(1);
+        log.info("avgFlush={}ms", writeBehind.averageFlushMillis());
+    }
+
+    @Test
+    void flushOnThreshold () {
+        WriteBehindMemberRepository small = new WriteBehindMemberRepository(memberRepository, transactionManager, Duration.ofMinutes(10), 2);
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        small.addMoney(MEMBER_A, 100);
+        small.addMoney(MEMBER_B, 100);      // 대기 계좌 2개 -> 이 쓰기에서 반영
+
+        assertThat(small.getFlushCount()).isEqualTo(1);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10100);
+        small.close();
+    }
+
+    @Test
+    void flushOnCommit () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+
+        txTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 10; i++) writeBehind.addMoney(MEMBER_A, 100);
+            assertThat(writeBehind.findById(MEMBER_A).getMoney()).isEqualTo(11000);
+        });
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(11000);
+
+        // 롤백되면 버퍼의 변경도 버려짐
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> {
+            writeBehind.addMoney(MEMBER_A, 100);
+            throw new IllegalStateException("rollback");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(writeBehind.findById(MEMBER_A).getMoney()).isEqualTo(11000);
+        assertThat(writeBehind.getPendingCount()).isZero();
+    }
+
+    @Test
+    void missingMemberRollsBackTransaction () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+        DeltaMemberTransfer transfer = new DeltaMemberTransfer(writeBehind);
+
+        // 입금은 버퍼에 쌓여서 true 지만, 커밋 직전 쓰기에서 없는 회원으로 확인 -> 출금까지 롤백
+        assertThatThrownBy(() -> txTemplate.executeWithoutResult(status -> transfer.transfer(MEMBER_A, "nobody", 3000)))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(writeBehind.getPendingCount()).isZero();
+    }
+
+    @Test
+    void flushBeforeUnbufferedWrite () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        writeBehind.addMoney(MEMBER_A, -3000);
+
+        // 잔액 조건부 출금은 DB 값을 봐야 하므로 대기 중인 변경부터 반영
+        assertThat(writeBehind.addMoney(MEMBER_A, -8000, 8000)).isFalse();
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(7000);
+    }
+
+    @Test
+    void flushOnClose () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        writeBehind.update(MEMBER_A, 1);
+        writeBehind.close();
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1);
+    }
+
+    @Test
+    void writeAfterClose () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        writeBehind.close();
+
+        // 타이머가 멈췄으므로 버퍼에 남기지 않고 바로 반영
+        writeBehind.addMoney(MEMBER_A, 500);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10500);
+        assertThat(writeBehind.getPendingCount()).isZero();
+    }
+
+    @Test
+    void readDuringFlush () throws InterruptedException {
+        memberRepository.save(new Member(MEMBER_A, 0));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger written = new AtomicInteger();
+
+        // 잔액은 늘어나기만 함 -> flush 가 버퍼에서 옮기는 도중 조회해도 이미 쓴 값보다 작게 보이면 안 됨
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                writeBehind.addMoney(MEMBER_A, 1);
+                written.incrementAndGet();
+                writeBehind.flush();
+            }
+            done.set(true);
+        });
+        writer.start();
+
+        int violations = 0;
+        while (!done.get()) {
+            int before = written.get();
+            int money = writeBehind.findById(MEMBER_A).getMoney();
+            if (money < before) violations++;
+        }
+        writer.join();
+
+        assertThat(violations).isZero();
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(200);
+    }
+
+}
@@ -0,0 +1,131 @@
+package dev.riss.jdbc.sevice;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.DeltaMemberTransfer;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class GroupCommitTransferExecutorTest {
+
+    public static final String MEMBER_A="memberA";
+    public static final String MEMBER_B="memberB";
+    public static final String MEMBER_EX="ex";
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    GroupCommitTransferExecutor executor;
+
+    @BeforeEach
+    void before () {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        memberRepository = new MemberRepositoryV5(dataSource);
+        executor = new GroupCommitTransferExecutor(new DataSourceTransactionManager(dataSource),
+                new DeltaMemberTransfer(memberRepository), Duration.ofMillis(20), 32);
+    }
+
+    @AfterEach
+    void after () {
+        executor.close();
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+        dataSource.close();
+    }
+
+    @Test
+    void failureRollsBackOnlyThatTransfer () throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) futures.add(executor.submit(MEMBER_A, MEMBER_B, 10));
+        CompletableFuture<Void> ex = executor.submit(MEMBER_A, MEMBER_EX, 10);
+        CompletableFuture<Void> insufficient = executor.submit(MEMBER_B, MEMBER_A, 1_000_000);
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        assertThatThrownBy(ex::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(insufficient::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IllegalStateException.class);
+
+        log.info("batches={}, averageBatchSize={}", executor.getBatchCount(), executor.averageBatchSize());
+        assertThat(executor.getBatchCount()).isLessThan(52);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9500);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10500);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void closeWhileSubmitting () throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 1_000_000));
+        memberRepository.save(new Member(MEMBER_B, 0));
+
+        ExecutorService submitters = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<Void>> futures = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            submitters.submit(() -> {
+                started.countDown();
+                for (int i = 0; i < 500; i++) futures.add(executor.submit(MEMBER_A, MEMBER_B, 1));
+            });
+        }
+        started.await();
+        executor.close();
+        submitters.shutdown();
+        assertThat(submitters.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // 모든 future 가 완료돼야 함 -> 처리됐거나(커밋) 닫힌 뒤라서 거절됐거나
+        int applied = 0;
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                applied++;
+            } catch (ExecutionException e) {
+                assertThat(e).hasCauseInstanceOf(RejectedExecutionException.class);
+            }
+        }
+        log.info("applied={}, rejected={}", applied, futures.size() - applied);
+        assertThat(futures).hasSize(2000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(applied);
+    }
+
+    @Test
+    void errorFailsBatchAndWorkerSurvives () throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        executor.close();
+
+        DeltaMemberTransfer delta = new DeltaMemberTransfer(memberRepository);
+        executor = new GroupCommitTransferExecutor(new DataSourceTransactionManager(dataSource), (fromId, toId, money) -> {
+            if (money == 13) throw new AssertionError("boom");
+            delta.transfer(fromId, toId, money);
+        }, Duration.ofMillis(20), 32);
+
+        CompletableFuture<Void> error = executor.submit(MEMBER_A, MEMBER_B, 13);
+        assertThatThrownBy(() -> error.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(AssertionError.class);
+
+        // 쓰레드가 죽지 않고 다음 배치를 처리
+        executor.submit(MEMBER_A, MEMBER_B, 100).get(5, TimeUnit.SECONDS);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10100);
+    }
+
+}
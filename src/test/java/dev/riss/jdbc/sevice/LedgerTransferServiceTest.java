@@ -0,0 +1,163 @@
+package dev.riss.jdbc.sevice;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberLedgerRepository;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import dev.riss.jdbc.repository.TransferDeadLetterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static dev.riss.jdbc.repository.MemberLedgerRepository.BalanceRead.EXACT;
+import static dev.riss.jdbc.repository.MemberLedgerRepository.BalanceRead.MATERIALIZED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class LedgerTransferServiceTest {
+
+    public static final String MEMBER_A="memberA";
+    public static final String MEMBER_B="memberB";
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    MemberLedgerRepository ledgerRepository;
+    TransferDeadLetterRepository deadLetters;
+    LedgerTransferService ledgerService;
+    LedgerProjector projector;
+
+    @BeforeEach
+    void before () {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        memberRepository = new MemberRepositoryV5(dataSource);
+        ledgerRepository = new MemberLedgerRepository(dataSource);
+        deadLetters = new TransferDeadLetterRepository(dataSource);
+        deadLetters.deleteBySource(LedgerProjector.DEAD_LETTER_SOURCE);
+        ledgerService = new LedgerTransferService(transactionManager, ledgerRepository, Duration.ofMillis(5), 64);
+        // 타이머로는 반영되지 않도록 길게 -> 테스트에서 projectAll 로 직접 반영
+        projector = new LedgerProjector(transactionManager, ledgerRepository, memberRepository, deadLetters, Duration.ofMinutes(10), 100);
+    }
+
+    @AfterEach
+    void after () {
+        ledgerService.close();
+        projector.projectAll();     // 남은 원장을 반영해두고 회원 삭제 (다음 테스트의 정확한 잔액에 섞이지 않도록)
+        projector.close();
+        memberRepository.deleteAll(List.of(MEMBER_A, MEMBER_B));
+        deadLetters.deleteBySource(LedgerProjector.DEAD_LETTER_SOURCE);
+        dataSource.close();
+    }
+
+    @Test
+    void exactBalanceIncludesUnprojectedTail () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        ledgerService.accountTransfer(MEMBER_A, MEMBER_B, 3000);
+
+        // 원장에만 있고 아직 member.money 에는 반영 안 됨
+        assertThat(ledgerService.findById(MEMBER_A, MATERIALIZED).getMoney()).isEqualTo(10000);
+        assertThat(ledgerService.findById(MEMBER_A, EXACT).getMoney()).isEqualTo(7000);
+        assertThat(ledgerService.findById(MEMBER_B, EXACT).getMoney()).isEqualTo(13000);
+
+        assertThat(projector.projectAll()).isEqualTo(1);
+        assertThat(ledgerService.findById(MEMBER_A, MATERIALIZED).getMoney()).isEqualTo(7000);
+        assertThat(ledgerService.findById(MEMBER_B, MATERIALIZED).getMoney()).isEqualTo(13000);
+        assertThat(ledgerService.findById(MEMBER_A, EXACT).getMoney()).isEqualTo(7000);
+    }
+
+    @Test
+    void rejectedTransfersNotAppended () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        ledgerService.accountTransfer(MEMBER_A, MEMBER_B, 8000);
+        // 반영 전이어도 정확한 잔액(2000)으로 검증
+        assertThatThrownBy(() -> ledgerService.accountTransfer(MEMBER_A, MEMBER_B, 3000))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> ledgerService.accountTransfer(MEMBER_A, "nobody", 1000))
+                .isInstanceOf(NoSuchElementException.class);
+
+        assertThat(ledgerService.getAppendedCount()).isEqualTo(1);
+        assertThat(ledgerService.getRejectedCount()).isEqualTo(2);
+        assertThat(ledgerService.findById(MEMBER_A, EXACT).getMoney()).isEqualTo(2000);
+    }
+
+    @Test
+    void concurrentTransfersBatched () {
+        memberRepository.save(new Member(MEMBER_A, 100000));
+        memberRepository.save(new Member(MEMBER_B, 100000));
+
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(0 == i % 2
+                    ? ledgerService.submit(MEMBER_A, MEMBER_B, 10)
+                    : ledgerService.submit(MEMBER_B, MEMBER_A, 30));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        log.info("batches={}, appended={}", ledgerService.getBatchCount(), ledgerService.getAppendedCount());
+
+        assertThat(ledgerService.getBatchCount()).isLessThan(500);
+        assertThat(ledgerService.findById(MEMBER_A, EXACT).getMoney()).isEqualTo(100000 - 250 * 10 + 250 * 30);
+
+        projector.projectAll();
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(105000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(95000);
+    }
+
+    @Test
+    void deletedMemberQuarantined () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        ledgerService.accountTransfer(MEMBER_A, MEMBER_B, 3000);
+        memberRepository.delete(MEMBER_B);
+
+        // 지워진 회원 몫은 dead letter 로 남기고 나머지는 반영, 체크포인트는 넘어감
+        assertThat(projector.projectAll()).isEqualTo(1);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(7000);
+        assertThat(projector.getQuarantinedEntryCount()).isEqualTo(1);
+        List<TransferDeadLetterRepository.DeadLetter> recorded = deadLetters.findBySource(LedgerProjector.DEAD_LETTER_SOURCE);
+        assertThat(recorded).hasSize(1);
+        assertThat(recorded.get(0).toId()).isEqualTo(MEMBER_B);
+        assertThat(recorded.get(0).money()).isEqualTo(3000);
+
+        // 이후 원장은 막히지 않고 반영됨
+        memberRepository.save(new Member(MEMBER_B, 0));
+        ledgerService.accountTransfer(MEMBER_A, MEMBER_B, 1000);
+        assertThat(projector.projectAll()).isEqualTo(1);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(1000);
+        assertThat(ledgerRepository.lag()).isZero();
+    }
+
+    @Test
+    void submitAfterCloseRejected () {
+        ledgerService.close();
+
+        assertThatThrownBy(() -> ledgerService.submit(MEMBER_A, MEMBER_B, 1000).join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+}
@@ -1,7 +1,11 @@
 package dev.riss.jdbc.sevice;
 
 import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.domain.Transfer;
+import dev.riss.jdbc.domain.TransferResult;
+import dev.riss.jdbc.repository.DeltaMemberTransfer;
 import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberTransfer;
 import dev.riss.jdbc.repository.MemberRepositoryV4_1;
 import dev.riss.jdbc.repository.MemberRepositoryV4_2;
 import dev.riss.jdbc.repository.MemberRepositoryV5;
@@ -16,6 +20,11 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -61,9 +70,14 @@ class MemberServiceV4Test {
             return new MemberRepositoryV5(dataSource);        // JdbcTemplate 사용
         }
 
+        @Bean
+        MemberTransfer memberTransfer () {
+            return new DeltaMemberTransfer(memberRepository());      // 증감 UPDATE 두 번 (H2 함수 전략은 H2FunctionMemberTransferTest)
+        }
+
         @Bean
         MemberServiceV4 memberServiceV4 () {
-            return new MemberServiceV4(memberRepository());
+            return new MemberServiceV4(memberRepository(), memberTransfer());
         }
     }
 
@@ -131,4 +145,109 @@ class MemberServiceV4Test {
         assertThat(findMemberEx.getMoney()).isEqualTo(10000);
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("증감 UPDATE 이체")
+    void accountTransferByDelta () {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when
+        memberService.accountTransferByDelta(MEMBER_A, MEMBER_B, 2000);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    @DisplayName("증감 UPDATE 이체 - 잔액 부족")
+    void accountTransferByDeltaInsufficient () {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 1000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when
+        assertThatThrownBy(() -> memberService.accountTransferByDelta(MEMBER_A, MEMBER_B, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(1000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("증감 UPDATE 이체 - 0 이하 금액은 거절 (거꾸로 빼가기 방지)")
+    void accountTransferByDeltaNonPositive () {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when
+        assertThatThrownBy(() -> memberService.accountTransferByDelta(MEMBER_A, MEMBER_B, -2000))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberService.accountTransferByDelta(MEMBER_A, MEMBER_B, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // then
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("비관적 락 이체 - 양방향 동시 이체에도 데드락 없음")
+    void accountTransferPessimistic () throws Exception {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        // when - 절반은 A->B, 절반은 B->A (락 순서가 요청 순서라면 데드락이 나는 패턴)
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            boolean forward = 0 == t % 2;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20; i++) {
+                    if (forward) memberService.accountTransferPessimistic(MEMBER_A, MEMBER_B, 1);
+                    else memberService.accountTransferPessimistic(MEMBER_B, MEMBER_A, 2);
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+
+        // then - A: -80 +160, B: +80 -160
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10080);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(9920);
+    }
+
+    @Test
+    @DisplayName("일괄 이체 - 계좌별 상계 후 반영, 건별 결과")
+    void accountTransferAll () {
+        // given
+        memberRepository.save(new Member(MEMBER_A, 1000));
+        memberRepository.save(new Member(MEMBER_B, 0));
+        memberRepository.save(new Member(MEMBER_EX, 0));
+
+        List<Transfer> transfers = List.of(
+                new Transfer(MEMBER_A, MEMBER_B, 700),
+                new Transfer(MEMBER_A, MEMBER_B, 700),      // 앞의 이체 반영 후 잔액 300 -> 부족
+                new Transfer(MEMBER_B, MEMBER_A, 200),
+                new Transfer(MEMBER_A, "none", 100),
+                new Transfer(MEMBER_A, MEMBER_EX, 100));
+
+        // when
+        List<TransferResult> results = memberService.accountTransferAll(transfers);
+
+        // then
+        assertThat(results).extracting(TransferResult::getStatus).containsExactly(
+                TransferResult.Status.APPLIED,
+                TransferResult.Status.INSUFFICIENT_FUNDS,
+                TransferResult.Status.APPLIED,
+                TransferResult.Status.MEMBER_NOT_FOUND,
+                TransferResult.Status.INVALID);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(500);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(500);
+    }
+
+}
@@ -0,0 +1,100 @@
+package dev.riss.jdbc.sevice;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 낙관적 락 + 재시도 - 동시에 같은 회원으로 이체해도 갱신 손실 없음
+ */
+@Slf4j
+class MemberServiceV5Test {
+
+    public static final String MEMBER_A="memberA";
+    public static final String MEMBER_B="memberB";
+    public static final String MEMBER_EX="ex";
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    MemberServiceV5 memberService;
+
+    @BeforeEach
+    void before () {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        memberRepository = new MemberRepositoryV5(dataSource, true);
+        memberService = new MemberServiceV5(new DataSourceTransactionManager(dataSource), memberRepository, 100);
+    }
+
+    @AfterEach
+    void after () {
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("동시 이체 - 충돌하면 재시도")
+    void concurrentTransfer () throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 25; i++) memberService.accountTransfer(MEMBER_A, MEMBER_B, 1);
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+
+        log.info("attempts={}, conflicts={}, conflictRate={}",
+                memberService.getAttemptCount(), memberService.getConflictCount(), memberService.conflictRate());
+
+        Member findMemberA = memberRepository.findById(MEMBER_A);
+        assertThat(findMemberA.getMoney()).isEqualTo(9800);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10200);
+        assertThat(findMemberA.getVersion()).isEqualTo(200);
+        assertThat(memberService.getTransferCount()).isEqualTo(200);
+        assertThat(memberService.getFailureCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("이체 중 예외 발생 - 재시도하지 않고 롤백")
+    void accountTransferEx () {
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberService.getAttemptCount()).isEqualTo(1);
+    }
+
+}
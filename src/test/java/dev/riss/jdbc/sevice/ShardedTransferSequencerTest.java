@@ -0,0 +1,211 @@
+package dev.riss.jdbc.sevice;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import dev.riss.jdbc.repository.TransferDeadLetterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class ShardedTransferSequencerTest {
+
+    static final List<String> MEMBER_IDS = List.of("lane0", "lane1", "lane2", "lane3", "lane4", "lane5");
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    TransferDeadLetterRepository deadLetters;
+    ShardedTransferSequencer sequencer;
+
+    @BeforeEach
+    void before () {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        memberRepository = new MemberRepositoryV5(dataSource);
+        deadLetters = new TransferDeadLetterRepository(dataSource);
+        MEMBER_IDS.forEach(memberId -> memberRepository.save(new Member(memberId, 10000)));
+        sequencer = newSequencer(memberRepository);
+    }
+
+    @AfterEach
+    void after () {
+        sequencer.close();
+        memberRepository.deleteAll(MEMBER_IDS);
+        deadLetters.deleteBySource(ShardedTransferSequencer.DEAD_LETTER_SOURCE);
+        dataSource.close();
+    }
+
+    private ShardedTransferSequencer newSequencer (MemberRepository repository) {
+        return new ShardedTransferSequencer(new DataSourceTransactionManager(dataSource), repository, deadLetters, 4, 64);
+    }
+
+    @Test
+    void totalPreserved () throws Exception {
+        // 같은 lane, 다른 lane 이체가 섞여 있음 (링 용량 64 보다 많이 넣어서 가득 차는 경우도 확인)
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            String fromId = MEMBER_IDS.get(i % MEMBER_IDS.size());
+            String toId = MEMBER_IDS.get((i * 7 + 1) % MEMBER_IDS.size());
+            if (!fromId.equals(toId)) futures.add(sequencer.submit(fromId, toId, 10));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+
+        int total = memberRepository.findAllByIds(MEMBER_IDS).values().stream().mapToInt(Member::getMoney).sum();
+        assertThat(total).isEqualTo(10000 * MEMBER_IDS.size());
+    }
+
+    @Test
+    void missingTargetRefunded () {
+        // lane 이 다른 없는 회원 찾기 -> 출금 후 입금 실패 -> 환불
+        String missing = "none0";
+        for (int i = 1; sequencer.laneIndex(missing) == sequencer.laneIndex("lane0"); i++) missing = "none" + i;
+
+        CompletableFuture<Void> future = sequencer.submit("lane0", missing, 100);
+
+        assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(NoSuchElementException.class);
+        assertThat(memberRepository.findById("lane0").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    void creditExceptionRefunded () {
+        String toId = otherLaneMember("lane0");
+        sequencer.close();
+        sequencer = newSequencer(failingCredit(Set.of(toId)));
+
+        CompletableFuture<Void> future = sequencer.submit("lane0", toId, 100);
+
+        // 입금 중 예외 -> 출금 lane 에서 환불, future 는 입금 실패 원인으로 완료
+        assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(TransientDataAccessResourceException.class);
+        assertThat(memberRepository.findById("lane0").getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(toId).getMoney()).isEqualTo(10000);
+        assertThat(deadLetters.findBySource(ShardedTransferSequencer.DEAD_LETTER_SOURCE)).isEmpty();
+    }
+
+    @Test
+    void refundFailureRecorded () {
+        String toId = otherLaneMember("lane0");
+        sequencer.close();
+        sequencer = newSequencer(failingCredit(Set.of("lane0", toId)));     // 입금도 환불도 실패
+
+        CompletableFuture<Void> future = sequencer.submit("lane0", toId, 100);
+
+        // 환불을 재시도해도 실패 -> 로그가 아니라 dead letter 테이블에 남음
+        assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(TransientDataAccessResourceException.class);
+        List<TransferDeadLetterRepository.DeadLetter> recorded = deadLetters.findBySource(ShardedTransferSequencer.DEAD_LETTER_SOURCE);
+        assertThat(recorded).hasSize(1);
+        assertThat(recorded.get(0).fromId()).isEqualTo("lane0");
+        assertThat(recorded.get(0).toId()).isEqualTo(toId);
+        assertThat(recorded.get(0).money()).isEqualTo(100);
+        assertThat(memberRepository.findById("lane0").getMoney()).isEqualTo(9900);
+    }
+
+    @Test
+    void closeWhileSubmitting () throws Exception {
+        ExecutorService submitters = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<Void>> futures = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            submitters.submit(() -> {
+                started.countDown();
+                for (int i = 0; i < 300; i++) {
+                    futures.add(sequencer.submit(MEMBER_IDS.get((i + offset) % MEMBER_IDS.size()), MEMBER_IDS.get((i + offset + 1) % MEMBER_IDS.size()), 1));
+                }
+            });
+        }
+        started.await();
+        sequencer.close();
+        submitters.shutdown();
+        assertThat(submitters.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // 처리됐거나 거절됐거나 -> 완료되지 않고 남는 future 없음
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertThat(e).hasCauseInstanceOf(RejectedExecutionException.class);
+            }
+        }
+        int total = memberRepository.findAllByIds(MEMBER_IDS).values().stream().mapToInt(Member::getMoney).sum();
+        assertThat(total).isEqualTo(10000 * MEMBER_IDS.size());
+    }
+
+    @Test
+    void insufficient () {
+        CompletableFuture<Void> future = sequencer.submit("lane0", "lane1", 1_000_000);
+
+        assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void nonPositiveMoneyRejected () {
+        // 회원 6명, lane 4개 -> 같은 lane 인 두 회원이 반드시 있음
+        String sameLaneFrom = null;
+        String sameLaneTo = null;
+        for (String fromId : MEMBER_IDS) {
+            for (String toId : MEMBER_IDS) {
+                if (!fromId.equals(toId) && sequencer.laneIndex(fromId) == sequencer.laneIndex(toId)) {
+                    sameLaneFrom = fromId;
+                    sameLaneTo = toId;
+                }
+            }
+        }
+
+        List<CompletableFuture<Void>> futures = List.of(
+                sequencer.submit(sameLaneFrom, sameLaneTo, -5000),
+                sequencer.submit("lane0", otherLaneMember("lane0"), -5000),
+                sequencer.submit("lane0", otherLaneMember("lane0"), 0));
+
+        for (CompletableFuture<Void> future : futures) {
+            assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IllegalArgumentException.class);
+        }
+        // 어느 계좌도 바뀌지 않음
+        memberRepository.findAllByIds(MEMBER_IDS).values().forEach(member -> assertThat(member.getMoney()).isEqualTo(10000));
+    }
+
+    private String otherLaneMember (String memberId) {
+        return MEMBER_IDS.stream().filter(id -> sequencer.laneIndex(id) != sequencer.laneIndex(memberId)).findFirst().orElseThrow();
+    }
+
+    /**
+     * memberIds 로의 입금(addMoney(memberId, 양수))만 예외를 던지는 리포지토리 (출금은 잔액 조건부 addMoney 라서 그대로)
+     */
+    private MemberRepository failingCredit (Set<String> memberIds) {
+        return (MemberRepository) Proxy.newProxyInstance(MemberRepository.class.getClassLoader(), new Class<?>[]{MemberRepository.class},
+                (proxy, method, args) -> {
+                    if ("addMoney".equals(method.getName()) && 2 == args.length
+                            && memberIds.contains((String) args[0]) && 0 < (int) args[1]) {
+                        throw new TransientDataAccessResourceException("injected credit failure memberId=" + args[0]);
+                    }
+                    try {
+                        return method.invoke(memberRepository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+}
@@ -0,0 +1,112 @@
+package dev.riss.jdbc.sevice;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.riss.jdbc.domain.Member;
+import dev.riss.jdbc.repository.DeltaMemberTransfer;
+import dev.riss.jdbc.repository.MemberRepository;
+import dev.riss.jdbc.repository.MemberRepositoryV5;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static dev.riss.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class StripedLockTransferServiceTest {
+
+    public static final String MEMBER_A="memberA";
+    public static final String MEMBER_B="memberB";
+    public static final String MEMBER_C="memberC";
+
+    HikariDataSource dataSource;
+    MemberRepository memberRepository;
+    StripedAccountLocks locks;
+    StripedLockTransferService transferService;
+
+    @BeforeEach
+    void before () {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setConnectionTimeout(1000);      // 대기가 커넥션을 물고 있으면 여기서 타임아웃
+
+        memberRepository = new MemberRepositoryV5(dataSource);
+        locks = new StripedAccountLocks(64);
+        transferService = new StripedLockTransferService(locks, new DataSourceTransactionManager(dataSource),
+                new DeltaMemberTransfer(memberRepository), Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void after () {
+        memberRepository.deleteAll(List.of(MEMBER_A, MEMBER_B, MEMBER_C));
+        dataSource.close();
+    }
+
+    @Test
+    void hotAccountWaitsInMemory () throws Exception {
+        memberRepository.save(new Member(MEMBER_A, 100000));
+        memberRepository.save(new Member(MEMBER_B, 100000));
+        memberRepository.save(new Member(MEMBER_C, 100000));
+
+        // 16 쓰레드가 같은 인기 계좌(A)로 양방향 이체 - 풀은 2개
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            String other = 0 == t % 2 ? MEMBER_B : MEMBER_C;
+            boolean forward = t % 4 < 2;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20; i++) {
+                    if (forward) transferService.accountTransfer(MEMBER_A, other, 1);
+                    else transferService.accountTransfer(other, MEMBER_A, 1);
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+
+        log.info("acquisitions={}, contended={}, avgWait={}ms, maxWait={}ns", locks.getAcquisitionCount(),
+                locks.getContendedCount(), locks.averageContendedWaitMillis(), locks.getMaxWaitNanos());
+
+        int total = memberRepository.findAllByIds(List.of(MEMBER_A, MEMBER_B, MEMBER_C)).values().stream()
+                .mapToInt(Member::getMoney).sum();
+        assertThat(total).isEqualTo(300000);
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(100000);
+        assertThat(locks.getTimeoutCount()).isZero();
+    }
+
+    @Test
+    void stripesSortedAndDeduplicated () {
+        StripedAccountLocks single = new StripedAccountLocks(1);
+        assertThat(single.stripeCount()).isEqualTo(1);
+        assertThat(single.stripesOf(MEMBER_A, MEMBER_B)).containsExactly(0);
+        try (StripedAccountLocks.Handle ignored = single.lock(Duration.ofSeconds(1), MEMBER_A, MEMBER_B)) {
+            // stripe 가 하나라 A, B 가 같은 락 -> 한 번만 잡음
+            assertThat(single.getAcquisitionCount()).isEqualTo(1);
+        }
+
+        assertThat(new StripedAccountLocks(16).stripeCount()).isEqualTo(16);
+        assertThat(new StripedAccountLocks(17).stripeCount()).isEqualTo(32);
+
+        // 입력 순서와 상관없이 오름차순, 같은 stripe 는 한 번만
+        StripedAccountLocks striped = new StripedAccountLocks(8);
+        String[] memberIds = new String[40];
+        for (int i = 0; i < memberIds.length; i++) memberIds[i] = "member" + (memberIds.length - i);
+        int[] stripes = striped.stripesOf(memberIds);
+        assertThat(stripes).isSorted().doesNotHaveDuplicates().hasSizeLessThanOrEqualTo(8);
+        assertThat(stripes).containsOnly(Arrays.stream(memberIds).mapToInt(striped::stripeOf).distinct().toArray());
+    }
+
+}